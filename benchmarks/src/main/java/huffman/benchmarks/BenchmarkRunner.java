@@ -0,0 +1,34 @@
+/**
+ * 
+ */
+package huffman.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmark jar. Takes the usual JMH command line arguments,
+ * and turns on the GC profiler unless other profilers are asked for, so every run
+ * reports the allocation rate along with the throughput.
+ * Usage: java -jar benchmarks/target/benchmarks.jar [JMH OPTIONS] [BENCHMARK REGEX]
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if(commandLine.getProfilers().isEmpty()){
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * 
+ */
+package huffman.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * The kinds of generated input the benchmarks run over.
+ * Every corpus is generated from a fixed seed, so runs are comparable.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public enum Corpus {
+	/**
+	 * Lower case letters, all equally likely - about 4.7 bits per character
+	 */
+	UNIFORM,
+	/**
+	 * Printable characters with geometrically falling frequencies, giving long codes for the rare ones
+	 */
+	SKEWED,
+	/**
+	 * English words with Zipf-like frequencies, spaces and line breaks
+	 */
+	ENGLISH,
+	/**
+	 * Random bytes, which do not compress
+	 */
+	RANDOM;
+
+	private static final String[] WORDS = {
+		"the", "of", "and", "to", "a", "in", "is", "it", "you", "that", "he", "was", "for", "on",
+		"are", "with", "as", "his", "they", "be", "at", "one", "have", "this", "from", "or", "had",
+		"by", "hot", "word", "but", "what", "some", "we", "can", "out", "other", "were", "all",
+		"there", "when", "up", "use", "your", "how", "said", "an", "each", "she", "which", "do",
+		"their", "time", "if", "will", "way", "about", "many", "then", "them", "write", "would",
+		"like", "so", "these", "her", "long", "make", "thing", "see", "him", "two", "has", "look",
+		"more", "day", "could", "go", "come", "did", "number", "sound", "no", "most", "people",
+		"my", "over", "know", "water", "than", "call", "first", "who", "may", "down", "side",
+		"been", "now", "find", "Huffman", "code", "tree", "file", "encode", "decode", "binary"
+	};
+
+	/**
+	 * Method to write the corpus to a file
+	 * @param file - a string representing the name of the file
+	 * @param size - the number of bytes to write
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(String file, int size) throws IOException{
+		Random random = new Random(size * 31L + ordinal());
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+		try {
+			int written = 0;
+			int lineLength = 0;
+			while(written < size){
+				switch(this){
+				case UNIFORM:
+					out.write('a' + random.nextInt(26));
+					written++;
+					break;
+				case SKEWED:
+					int c = 0;
+					while(c < 94 && random.nextInt(3) != 0){
+						c++;
+					}
+					out.write(' ' + c);
+					written++;
+					break;
+				case ENGLISH:
+					//Zipf-like: word k is picked about 1/k as often as the first word
+					double u = random.nextDouble();
+					int k = (int) Math.pow(WORDS.length, u) - 1;
+					String word = WORDS[Math.min(k, WORDS.length - 1)];
+					for(int i = 0; i < word.length() && written < size; i++){
+						out.write(word.charAt(i));
+						written++;
+					}
+					lineLength += word.length() + 1;
+					if(written < size){
+						out.write(lineLength > 72 ? '\n' : ' ');
+						lineLength = lineLength > 72 ? 0 : lineLength;
+						written++;
+					}
+					break;
+				case RANDOM:
+					out.write(random.nextInt(256));
+					written++;
+					break;
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
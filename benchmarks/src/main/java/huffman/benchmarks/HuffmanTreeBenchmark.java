@@ -0,0 +1,185 @@
+/**
+ * 
+ */
+package huffman.benchmarks;
+
+import huffman.CharCode;
+import huffman.HuffmanTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the phases of the single table encoder and decoder.
+ * Every benchmark also reports the megabytes of input it got through per second
+ * as the "megabytes" counter. Run through BenchmarkRunner to get the allocation rate as well.
+ *
+ * @author Christopher Barnett
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HuffmanTreeBenchmark {
+
+	/**
+	 * Counts the megabytes of input processed, reported by JMH as a rate per second
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Throughput {
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+	}
+
+	@Param({"UNIFORM", "SKEWED", "ENGLISH", "RANDOM"})
+	public Corpus corpus;
+
+	@Param({"65536", "1048576", "16777216"})
+	public int size;
+
+	private File directory;
+	private String sourceFile;
+	private String encodedFile;
+	private String interleavedFile;
+	private String scratchFile;
+	private HuffmanTree tree;
+	private PriorityQueue<CharCode> codes;
+	private PrintStream console;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		//The encoder and decoder print progress messages on every call
+		console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		directory = File.createTempFile("huffman-bench", "");
+		directory.delete();
+		directory.mkdir();
+		sourceFile = new File(directory, "source.txt").getPath();
+		encodedFile = new File(directory, "source.huf").getPath();
+		interleavedFile = new File(directory, "interleaved.huf").getPath();
+		scratchFile = new File(directory, "scratch").getPath();
+		corpus.write(sourceFile, size);
+
+		tree = new HuffmanTree();
+		tree.setRetainInput(false);
+		tree.buildTree(sourceFile);
+		codes = tree.canonicalCodes();
+		tree.canonize(encodedFile, sourceFile);
+		tree.setInterleaved(true);
+		tree.canonize(interleavedFile, sourceFile);
+		tree.setInterleaved(false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(console);
+		for(File f : directory.listFiles()){
+			f.delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Counting the source file and sorting its characters by count
+	 */
+	@Benchmark
+	public HuffmanTree buildTree(Throughput throughput) {
+		HuffmanTree t = new HuffmanTree();
+		t.setRetainInput(false);
+		t.buildTree(sourceFile);
+		throughput.megabytes += size / 1048576.0;
+		return t;
+	}
+
+	/**
+	 * Computing code lengths from the sorted counts and assigning canonical codes
+	 */
+	@Benchmark
+	public PriorityQueue<CharCode> generateCodes(Throughput throughput) {
+		throughput.megabytes += size / 1048576.0;
+		return tree.canonicalCodes();
+	}
+
+	/**
+	 * Canonizing the tree and encoding the source file
+	 */
+	@Benchmark
+	public HuffmanTree canonize(Throughput throughput) {
+		throughput.megabytes += size / 1048576.0;
+		return tree.canonize(scratchFile, sourceFile);
+	}
+
+	/**
+	 * Encoding the source file with codes that are already known
+	 */
+	@Benchmark
+	public void writeBinaryOutFile(Throughput throughput) {
+		new HuffmanTree().writeBinaryOutFile(scratchFile, sourceFile, new PriorityQueue<CharCode>(codes));
+		throughput.megabytes += size / 1048576.0;
+	}
+
+	/**
+	 * Decoding the encoded file
+	 */
+	@Benchmark
+	public HuffmanTree readBinaryInFile(Throughput throughput) {
+		HuffmanTree t = new HuffmanTree();
+		t.readBinaryInFile(encodedFile, scratchFile);
+		throughput.megabytes += size / 1048576.0;
+		return t;
+	}
+
+	/**
+	 * Decoding the encoded file several short codes per table lookup
+	 */
+	@Benchmark
+	public HuffmanTree readBinaryInFileMultiSymbol(Throughput throughput) {
+		HuffmanTree t = new HuffmanTree();
+		t.setMultiSymbol(true);
+		t.readBinaryInFile(encodedFile, scratchFile);
+		throughput.megabytes += size / 1048576.0;
+		return t;
+	}
+
+	/**
+	 * Decoding the encoded file written as four interleaved bitstreams, four codes at a time
+	 */
+	@Benchmark
+	public HuffmanTree readBinaryInFileInterleaved(Throughput throughput) {
+		HuffmanTree t = new HuffmanTree();
+		t.readBinaryInFile(interleavedFile, scratchFile);
+		throughput.megabytes += size / 1048576.0;
+		return t;
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * 
+ */
+package huffman.benchmarks;
+
+import huffman.Decoder;
+import huffman.Encoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for encoding and decoding small records in memory with reused
+ * Encoder and Decoder instances. The allocation rate reported by the GC profiler
+ * should stay at zero bytes per operation.
+ *
+ * @author Christopher Barnett
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordCodecBenchmark {
+
+	@Param({"UNIFORM", "SKEWED", "ENGLISH", "RANDOM"})
+	public Corpus corpus;
+
+	@Param({"64", "512", "4096"})
+	public int size;
+
+	private Encoder encoder;
+	private Decoder decoder;
+	private byte[] record;
+	private byte[] encoded;
+	private int encodedLength;
+	private byte[] decoded;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		File file = File.createTempFile("huffman-record", "");
+		try {
+			corpus.write(file.getPath(), size);
+			record = new byte[size];
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			in.readFully(record);
+			in.close();
+		} finally {
+			file.delete();
+		}
+		encoder = new Encoder();
+		decoder = new Decoder();
+		encoded = new byte[Encoder.maxEncodedLength(size)];
+		encodedLength = encoder.encode(record, 0, size, encoded, 0);
+		decoded = new byte[size];
+	}
+
+	/**
+	 * Encoding a record into a reused array
+	 */
+	@Benchmark
+	public int encode() {
+		return encoder.encode(record, 0, size, encoded, 0);
+	}
+
+	/**
+	 * Decoding a record into a reused array
+	 */
+	@Benchmark
+	public int decode() throws IOException {
+		return decoder.decode(encoded, 0, encodedLength, decoded, 0);
+	}
+}
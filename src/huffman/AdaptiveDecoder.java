@@ -0,0 +1,145 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A class for decoding a stream written by AdaptiveEncoder.
+ * Bits are read from the input one byte at a time, never more than the next code needs,
+ * so every byte sent before a flush can be decoded without waiting for more input.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class AdaptiveDecoder {
+	private InputStream in;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private int bitBuffer;
+	private int bitCount;
+	private AdaptiveHuffmanTree tree;
+	private boolean endOfStream;
+
+	/**
+	 * Constructor for the adaptive decoder, which reads the header straight away
+	 * @param in - the stream of encoded bytes
+	 * @throws IOException if the header can not be read or is not an adaptive stream header
+	 */
+	public AdaptiveDecoder(InputStream in) throws IOException {
+		this.in = in;
+		this.buffer = new byte[1 << 16];
+		this.position = 0;
+		this.limit = 0;
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+		this.tree = new AdaptiveHuffmanTree(8);
+		this.endOfStream = false;
+		for(int i = 0; i < AdaptiveEncoder.MAGIC.length; i++){
+			if(readBits(8) != (AdaptiveEncoder.MAGIC[i] & 0xff)){
+				throw new IOException("Not an adaptive Huffman stream");
+			}
+		}
+		if(readBits(8) != AdaptiveEncoder.VERSION){
+			throw new IOException("Unsupported adaptive Huffman stream version");
+		}
+	}
+
+	/**
+	 * Method to read the next bit of the input
+	 * @return the bit
+	 * @throws IOException if the input can not be read or ends before the end of stream marker
+	 */
+	int readBit() throws IOException{
+		if(bitCount == 0){
+			//Only wait for more input when there are no bits left at all
+			while(position == limit){
+				limit = in.read(buffer, 0, buffer.length);
+				position = 0;
+				if(limit < 0){
+					limit = 0;
+					throw new EOFException("Adaptive Huffman stream ends before its end marker");
+				}
+			}
+			bitBuffer = buffer[position] & 0xff;
+			position++;
+			bitCount = 8;
+		}
+		bitCount--;
+		return (bitBuffer >>> bitCount) & 1;
+	}
+
+	/**
+	 * Method to read the next bits of the input
+	 * @param n - the number of bits to read, at most 31
+	 * @return the bits as the low bits of an int
+	 * @throws IOException if the input can not be read or ends before the end of stream marker
+	 */
+	int readBits(int n) throws IOException{
+		int bits = 0;
+		for(int i = 0; i < n; i++){
+			bits = (bits << 1) | readBit();
+		}
+		return bits;
+	}
+
+	/**
+	 * Method to decode the next byte
+	 * @return the byte, or -1 at the end of the stream
+	 * @throws IOException if the input can not be read or is corrupt
+	 */
+	public int read() throws IOException{
+		while(!endOfStream){
+			int symbol = tree.decode(this);
+			if(symbol == tree.getEndOfStream()){
+				endOfStream = true;
+			}else if(symbol == tree.getFlush()){
+				//The encoder padded the rest of the byte
+				bitCount = 0;
+			}else{
+				return symbol;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Method to decode bytes, up to the next flush point at the most
+	 * @param b - the array to decode into
+	 * @param offset - the index to decode the first byte to
+	 * @param length - the most bytes to decode
+	 * @return the number of bytes decoded, or -1 at the end of the stream
+	 * @throws IOException if the input can not be read or is corrupt
+	 */
+	public int read(byte[] b, int offset, int length) throws IOException{
+		int n = 0;
+		while(n < length && !endOfStream){
+			int symbol = tree.decode(this);
+			if(symbol == tree.getEndOfStream()){
+				endOfStream = true;
+			}else if(symbol == tree.getFlush()){
+				bitCount = 0;
+				if(n > 0){
+					//Hand back what was sent before the flush rather than wait for more
+					break;
+				}
+			}else{
+				b[offset + n] = (byte) symbol;
+				n++;
+			}
+		}
+		return n == 0 && endOfStream ? -1 : n;
+	}
+
+	/**
+	 * Method to close the input
+	 * @throws IOException if the input can not be closed
+	 */
+	public void close() throws IOException{
+		in.close();
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class for encoding a stream of bytes in a single pass with adaptive Huffman codes.
+ * Bytes are encoded as they are written, with no first pass over the input and no table
+ * in the output, so streams of any length can be encoded as they arrive.
+ * The output starts with a header and ends with an end of stream marker:
+ * <pre>
+ * header: 00 'H' 'U' 'A', version (byte)
+ * </pre>
+ * Calling flush ends the current byte with a flush marker and sends everything written
+ * so far, so the decoder can produce every byte written before the flush without
+ * waiting for more input.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class AdaptiveEncoder {
+	/**
+	 * The first bytes of every adaptive stream
+	 */
+	public static final byte[] MAGIC = {0, 'H', 'U', 'A'};
+	/**
+	 * The version of the format written by the encoder
+	 */
+	public static final int VERSION = 1;
+	private OutputStream out;
+	private BitWriter bits;
+	private AdaptiveHuffmanTree tree;
+
+	/**
+	 * Constructor for the adaptive encoder, which writes the header straight away
+	 * @param out - the stream to write the encoded bytes to
+	 * @throws IOException if the header can not be written
+	 */
+	public AdaptiveEncoder(OutputStream out) throws IOException {
+		this.out = out;
+		this.bits = new BitWriter(Channels.newChannel(out), 1 << 16);
+		this.tree = new AdaptiveHuffmanTree(8);
+		for(int i = 0; i < MAGIC.length; i++){
+			bits.write(MAGIC[i], 8);
+		}
+		bits.write(VERSION, 8);
+	}
+
+	/**
+	 * Method to encode a byte
+	 * @param b - the byte to encode, in the low 8 bits
+	 * @throws IOException if the stream can not be written
+	 */
+	public void write(int b) throws IOException{
+		tree.encode(bits, b & 0xff);
+	}
+
+	/**
+	 * Method to encode bytes
+	 * @param b - the bytes to encode
+	 * @param offset - the index of the first byte to encode
+	 * @param length - the number of bytes to encode
+	 * @throws IOException if the stream can not be written
+	 */
+	public void write(byte[] b, int offset, int length) throws IOException{
+		for(int i = offset; i < offset + length; i++){
+			tree.encode(bits, b[i] & 0xff);
+		}
+	}
+
+	/**
+	 * Method to send everything encoded so far
+	 * @throws IOException if the stream can not be written
+	 */
+	public void flush() throws IOException{
+		tree.encodeEscape(bits, tree.getFlush());
+		bits.flush();
+		out.flush();
+	}
+
+	/**
+	 * Method to write the end of stream marker and close the stream
+	 * @throws IOException if the stream can not be written or closed
+	 */
+	public void close() throws IOException{
+		tree.encodeEscape(bits, tree.getEndOfStream());
+		bits.flush();
+		out.close();
+	}
+
+	/**
+	 * Returns true if the file starts with the adaptive stream magic bytes
+	 * @param fileName - a string representing the name of the file
+	 * @return isAdaptiveFile
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isAdaptiveFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ByteBuffer b = ByteBuffer.allocate(MAGIC.length);
+		while(b.hasRemaining()){
+			if(channel.read(b) < 0){
+				break;
+			}
+		}
+		channel.close();
+		if(b.hasRemaining()){
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++){
+			if(b.get(i) != MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,263 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A class for the adaptive Huffman Tree object, updated one symbol at a time
+ * with the FGK algorithm. The encoder and decoder start from the same tree holding
+ * only the NYT (not yet transmitted) node and update it the same way after every
+ * symbol, so no table is ever sent and nothing has to be read ahead.
+ * A symbol seen for the first time is sent as the code of the NYT node followed
+ * by the symbol itself in symbolBits + 1 bits. The extra bit leaves room for escape
+ * values after the alphabet, which mark the end of the stream and flush points.
+ * The tree keeps the sibling property: listing the nodes in order, from the root
+ * down, gives non-increasing weights and siblings next to each other. The order is
+ * kept in a list so the first node of a weight can be found with a binary search.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class AdaptiveHuffmanTree {
+	/**
+	 * A class for the adaptive Huffman Tree Node object.
+	 */
+	private class AdaptiveNode {
+		private AdaptiveNode leftChild;
+		private AdaptiveNode rightChild;
+		private AdaptiveNode parent;
+		private int symbol;
+		private long freq;
+		private int order;
+
+		/**
+		 * Parameterized constructor for the adaptive Huffman Tree Node
+		 * @param symbol - the symbol for a leaf node, or -1 for an internal node or the NYT node
+		 * @param parent - the parent node, null for the root
+		 */
+		public AdaptiveNode(int symbol, AdaptiveNode parent){
+			this.leftChild = null;
+			this.rightChild = null;
+			this.parent = parent;
+			this.symbol = symbol;
+			this.freq = 0;
+			this.order = 0;
+		}
+
+		/**
+		 * Returns true if node is a leaf node
+		 * @return isLeaf
+		 */
+		public boolean isLeaf(){
+			return leftChild == null && rightChild == null;
+		}
+	}
+	//-------------------------------------------------------------
+	private AdaptiveNode root;
+	private AdaptiveNode nyt;
+	private AdaptiveNode[] leaves;
+	private ArrayList<AdaptiveNode> order;
+	private int symbolBits;
+	private int[] path;
+
+	/**
+	 * Constructor for the adaptive Huffman Tree object
+	 * @param symbolBits - the number of bits in a symbol, 8 for bytes
+	 */
+	public AdaptiveHuffmanTree(int symbolBits) {
+		this.symbolBits = symbolBits;
+		this.leaves = new AdaptiveNode[1 << symbolBits];
+		this.order = new ArrayList<AdaptiveNode>();
+		this.path = new int[64];
+		this.root = new AdaptiveNode(-1, null);
+		this.nyt = root;
+		order.add(root);
+	}
+
+	/**
+	 * @return the escape value that marks the end of the stream
+	 */
+	public int getEndOfStream() {
+		return 1 << symbolBits;
+	}
+
+	/**
+	 * @return the escape value that marks a flush point, after which the stream continues at the next byte
+	 */
+	public int getFlush() {
+		return (1 << symbolBits) + 1;
+	}
+
+	/**
+	 * Method to write the code of a symbol and update the tree
+	 * @param out - the bit writer to write the code to
+	 * @param symbol - the symbol to encode
+	 * @throws IOException if the bit writer's channel can not be written
+	 */
+	public void encode(BitWriter out, int symbol) throws IOException{
+		AdaptiveNode leaf = leaves[symbol];
+		if(leaf == null){
+			writePath(out, nyt);
+			out.write(symbol, symbolBits + 1);
+		}else{
+			writePath(out, leaf);
+		}
+		update(symbol);
+	}
+
+	/**
+	 * Method to write an escape value, such as the end of the stream. The tree is not updated.
+	 * @param out - the bit writer to write the code to
+	 * @param value - the escape value
+	 * @throws IOException if the bit writer's channel can not be written
+	 */
+	public void encodeEscape(BitWriter out, int value) throws IOException{
+		writePath(out, nyt);
+		out.write(value, symbolBits + 1);
+	}
+
+	/**
+	 * Method to read the next symbol and update the tree
+	 * @param in - the decoder to read bits from
+	 * @return the symbol, or an escape value
+	 * @throws IOException if the stream can not be read or is corrupt
+	 */
+	public int decode(AdaptiveDecoder in) throws IOException{
+		AdaptiveNode curr = root;
+		while(!curr.isLeaf()){
+			curr = in.readBit() == 0 ? curr.leftChild : curr.rightChild;
+		}
+		if(curr != nyt){
+			update(curr.symbol);
+			return curr.symbol;
+		}
+		int value = in.readBits(symbolBits + 1);
+		if(value < leaves.length){
+			if(leaves[value] != null){
+				throw new IOException("Corrupt stream: symbol " + value + " sent as new twice");
+			}
+			update(value);
+		}else if(value != getEndOfStream() && value != getFlush()){
+			throw new IOException("Corrupt stream: unknown escape " + value);
+		}
+		return value;
+	}
+
+	/**
+	 * Method to write the code of a node - AKA the path from the root down to it
+	 * @param out - the bit writer to write the code to
+	 * @param node - the node
+	 * @throws IOException if the bit writer's channel can not be written
+	 */
+	private void writePath(BitWriter out, AdaptiveNode node) throws IOException{
+		//Walk up to the root, then write the bits from the top down
+		int length = 0;
+		for(AdaptiveNode curr = node; curr.parent != null; curr = curr.parent){
+			if(length == path.length){
+				int[] longer = new int[path.length * 2];
+				System.arraycopy(path, 0, longer, 0, length);
+				path = longer;
+			}
+			path[length] = curr.parent.rightChild == curr ? 1 : 0;
+			length++;
+		}
+		long bits = 0;
+		int count = 0;
+		for(int i = length - 1; i >= 0; i--){
+			bits = (bits << 1) | path[i];
+			count++;
+			if(count == 32){
+				out.write(bits, count);
+				bits = 0;
+				count = 0;
+			}
+		}
+		out.write(bits, count);
+	}
+
+	/**
+	 * Method to add one to the weight of a symbol, adding it to the tree if it is new,
+	 * and restore the sibling property
+	 * @param symbol - the symbol
+	 */
+	private void update(int symbol){
+		AdaptiveNode node = leaves[symbol];
+		if(node == null){
+			//Split the NYT node into a new NYT node and a leaf for the symbol
+			AdaptiveNode parent = nyt;
+			node = new AdaptiveNode(symbol, parent);
+			nyt = new AdaptiveNode(-1, parent);
+			parent.rightChild = node;
+			parent.leftChild = nyt;
+			node.order = order.size();
+			order.add(node);
+			nyt.order = order.size();
+			order.add(nyt);
+			leaves[symbol] = node;
+		}
+		while(node != null){
+			//Move the node to the front of the nodes with its weight before adding one
+			AdaptiveNode leader = leader(node);
+			if(leader != node && leader != node.parent){
+				swap(node, leader);
+			}
+			node.freq++;
+			node = node.parent;
+		}
+	}
+
+	/**
+	 * Method to find the first node in order with the same weight as a node
+	 * @param node - the node
+	 * @return the first node with its weight, maybe the node itself
+	 */
+	private AdaptiveNode leader(AdaptiveNode node){
+		//Weights do not increase from the root down to the node, so binary search
+		int low = 0;
+		int high = node.order;
+		while(low < high){
+			int middle = (low + high) >>> 1;
+			if(order.get(middle).freq > node.freq){
+				low = middle + 1;
+			}else{
+				high = middle;
+			}
+		}
+		return order.get(low);
+	}
+
+	/**
+	 * Method to swap two nodes, with their subtrees, in the tree and in the order
+	 * @param a - a node
+	 * @param b - a node that is not an ancestor of a
+	 */
+	private void swap(AdaptiveNode a, AdaptiveNode b){
+		AdaptiveNode parentA = a.parent;
+		AdaptiveNode parentB = b.parent;
+		if(parentA == parentB){
+			parentA.leftChild = parentA.rightChild;
+			parentA.rightChild = parentA.leftChild == a ? b : a;
+		}else{
+			if(parentA.leftChild == a){
+				parentA.leftChild = b;
+			}else{
+				parentA.rightChild = b;
+			}
+			if(parentB.leftChild == b){
+				parentB.leftChild = a;
+			}else{
+				parentB.rightChild = a;
+			}
+			a.parent = parentB;
+			b.parent = parentA;
+		}
+		int orderA = a.order;
+		a.order = b.order;
+		b.order = orderA;
+		order.set(a.order, a);
+		order.set(b.order, b);
+	}
+}
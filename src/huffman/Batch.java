@@ -0,0 +1,456 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Method to encode or decode many files in one run, on a work-stealing pool of THREADS threads
+ * set by the -p argument, instead of starting a new JVM for every file.
+ * Each SOURCE is a file or a directory, whose files are all processed, and more can be listed one per line
+ * in FILE_LIST using the -f argument. Encoded files get the extension .huf, which decoding removes.
+ * Outputs are written next to their sources, or under OUTPUT_DIR using the -o argument, keeping the layout
+ * of the source directories. When encoding, .huf files found in directories are skipped, and when decoding
+ * with the -x argument, only .huf files found in directories are decoded.
+ * Files are encoded the same way Encode encodes them, with the -b, -l, -raw, -t, -d, -a, -i, -ctx, -crc and -append arguments.
+ * Decoding recognizes every format, as Decode does. A line is printed for every file as it is finished,
+ * followed by a summary of the whole run
+ * Usage: java huffman.Batch [-x] [-p THREADS] [-o OUTPUT_DIR] [-f FILE_LIST] [-b BLOCK_SIZE] [-l MAX_CODE_LENGTH] [-raw] [-t TABLE_ID] [-d TABLE_DIR] [-a] [-i] [-ctx] [-crc] [-append] SOURCE...
+ * @author Christopher Barnett
+ */
+public class Batch {
+	/**
+	 * The extension given to encoded files
+	 */
+	public static final String EXTENSION = ".huf";
+	private static final String USAGE = "Usage: java huffman.Batch [-x] [-p THREADS] [-o OUTPUT_DIR] [-f FILE_LIST] [-b BLOCK_SIZE] [-l MAX_CODE_LENGTH] [-raw] [-t TABLE_ID] [-d TABLE_DIR] [-a] [-i] [-ctx] [-crc] [-append] SOURCE...";
+
+	/**
+	 * A class for one file of the batch and the result of processing it
+	 */
+	private static class Job {
+		private File source;
+		private File target;
+		private long bytesIn;
+		private long bytesOut;
+		private long nanos;
+		private IOException error;
+
+		/**
+		 * Constructor for the job
+		 * @param source - the file to process
+		 * @param target - the file to write
+		 */
+		public Job(File source, File target) {
+			this.source = source;
+			this.target = target;
+		}
+	}
+
+	/**
+	 * A task to process a range of the jobs, split in half until one job is left
+	 */
+	private static class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private Batch batch;
+		private ArrayList<Job> jobs;
+		private int from;
+		private int to;
+
+		/**
+		 * Constructor for the batch task
+		 * @param batch - the settings of the batch
+		 * @param jobs - all of the jobs
+		 * @param from - the index of the first job to process
+		 * @param to - the index after the last job to process
+		 */
+		public BatchTask(Batch batch, ArrayList<Job> jobs, int from, int to) {
+			this.batch = batch;
+			this.jobs = jobs;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from == 1){
+				batch.process(jobs.get(from));
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new BatchTask(batch, jobs, from, middle), new BatchTask(batch, jobs, middle, to));
+		}
+	}
+
+	private boolean decode = false;
+	private int blockSize = 0;
+	private int maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+	private boolean binary = false;
+	private String tableId = "";
+	private String tableDirectory = ".";
+	private boolean adaptive = false;
+	private boolean interleaved = false;
+	private boolean context = false;
+	private boolean checksums = false;
+	private boolean append = false;
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		Batch batch = new Batch();
+		String outputDirectory = "";
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		ArrayList<String> sources = new ArrayList<String>();
+		//Process the command line arguments
+				for(int i = 0; i < args.length; i++){
+					int last;
+					try {
+						last = batch.parseArgument(args, i);
+					} catch (IllegalArgumentException e) {
+						System.err.println(e.getMessage());
+						System.err.println(USAGE);
+						return;
+					}
+					if(last >= 0){
+						i = last;
+					}else if(args[i].equals("-p")){
+						i++;
+						parallelism = Integer.parseInt(args[i]);
+					}else if(args[i].equals("-o")){
+						i++;
+						outputDirectory = args[i];
+					}else if(args[i].equals("-f")){
+						i++;
+						try {
+							sources.addAll(readFileList(args[i]));
+						} catch (IOException e) {
+							// TODO Auto-generated catch block
+							e.printStackTrace();
+							return;
+						}
+					}else{
+						sources.add(args[i]);
+					}
+				}
+		ArrayList<Job> jobs;
+		try {
+			jobs = batch.collectJobs(sources, outputDirectory);
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+			return;
+		}
+		//Start the largest files first, so a large file is not left running alone at the end
+		Collections.sort(jobs, new Comparator<Job>() {
+			@Override
+			public int compare(Job a, Job b) {
+				return Long.compare(b.source.length(), a.source.length());
+			}
+		});
+
+		long start = System.nanoTime();
+		if(jobs.size() > 0){
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(new BatchTask(batch, jobs, 0, jobs.size()));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		long nanos = System.nanoTime() - start;
+
+		//Print the summary of the whole batch
+		int failed = 0;
+		long bytesIn = 0;
+		long bytesOut = 0;
+		for(Job job : jobs){
+			if(job.error != null){
+				failed++;
+			}else{
+				bytesIn += job.bytesIn;
+				bytesOut += job.bytesOut;
+			}
+		}
+		System.out.println(String.format("%d files, %d failed, %d -> %d bytes (%s) in %.3f s, %.1f MB/s",
+				jobs.size(), failed, bytesIn, bytesOut,
+				batch.decode ? ratio(bytesOut, bytesIn) : ratio(bytesIn, bytesOut), nanos / 1e9,
+				bytesIn / 1048576.0 / Math.max(nanos / 1e9, 1e-9)));
+		if(failed > 0){
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Method to read an argument that sets how files are encoded or decoded: -x, -b, -l, -raw, -t, -d, -a, -i, -ctx, -crc or -append
+	 * @param args - the command line arguments
+	 * @param i - the index of the argument
+	 * @return the index of the argument's value, or of the argument if it has none,
+	 * or -1 if it is not one of these arguments
+	 * @throws IllegalArgumentException if the value of -b is not from 1 to BlockFormat.MAX_BLOCK_SIZE
+	 * or the value of -l is not from 1 to CodeLengths.MAX_LENGTH
+	 */
+	int parseArgument(String[] args, int i){
+		if(args[i].equals("-x")){
+			decode = true;
+		}else if(args[i].equals("-b")){
+			i++;
+			blockSize = BlockFormat.parseBlockSize(args[i]);
+		}else if(args[i].equals("-l")){
+			i++;
+			maxCodeLength = CodeLengths.parseMaxLength(args[i]);
+		}else if(args[i].equals("-raw")){
+			binary = true;
+		}else if(args[i].equals("-t")){
+			i++;
+			tableId = args[i];
+		}else if(args[i].equals("-d")){
+			i++;
+			tableDirectory = args[i];
+		}else if(args[i].equals("-a")){
+			adaptive = true;
+		}else if(args[i].equals("-i")){
+			interleaved = true;
+		}else if(args[i].equals("-ctx")){
+			context = true;
+		}else if(args[i].equals("-crc")){
+			checksums = true;
+		}else if(args[i].equals("-append")){
+			append = true;
+		}else{
+			return -1;
+		}
+		return i;
+	}
+
+	/**
+	 * Method to read a list of files, one per line
+	 * @param listFile - a string representing the name of the list
+	 * @return the names of the files in the list
+	 * @throws IOException if the list can not be read
+	 */
+	private static ArrayList<String> readFileList(String listFile) throws IOException{
+		ArrayList<String> files = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(listFile));
+		try {
+			String line;
+			while((line = reader.readLine()) != null){
+				line = line.trim();
+				if(line.length() > 0){
+					files.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	}
+
+	/**
+	 * Method to make a job for every file to process
+	 * @param sources - the names of the files and directories to process
+	 * @param outputDirectory - a string representing the directory to write to, or "" to write next to the sources
+	 * @return the jobs
+	 * @throws IOException if a directory can not be read
+	 */
+	private ArrayList<Job> collectJobs(ArrayList<String> sources, final String outputDirectory) throws IOException{
+		final ArrayList<Job> jobs = new ArrayList<Job>();
+		for(String source : sources){
+			final Path root = Paths.get(source);
+			if(Files.isDirectory(root)){
+				Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+						boolean encoded = file.getFileName().toString().endsWith(EXTENSION);
+						if(attributes.isRegularFile() && encoded == decode){
+							String relative = root.relativize(file).toString();
+							File directory = outputDirectory == "" ? root.toFile() : new File(outputDirectory);
+							jobs.add(new Job(file.toFile(), new File(directory, targetName(relative))));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}else{
+				File file = new File(source);
+				File directory = outputDirectory == "" ? file.getAbsoluteFile().getParentFile() : new File(outputDirectory);
+				jobs.add(new Job(file, new File(directory, targetName(file.getName()))));
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Method to get the name of the file to write for a source file
+	 * @param name - the name of the source file
+	 * @return the name of the target file
+	 */
+	private String targetName(String name){
+		if(!decode){
+			return name + EXTENSION;
+		}
+		if(name.endsWith(EXTENSION) && name.length() > EXTENSION.length()){
+			return name.substring(0, name.length() - EXTENSION.length());
+		}
+		return name + ".out";
+	}
+
+	/**
+	 * Method to process one file and print its result. Each file is processed on a single thread,
+	 * since the batch already keeps every thread of the pool busy
+	 * @param job - the file to process
+	 */
+	private void process(Job job){
+		long start = System.nanoTime();
+		try {
+			File parent = job.target.getAbsoluteFile().getParentFile();
+			if(parent != null){
+				Files.createDirectories(parent.toPath());
+			}
+			transcode(job.source.getPath(), job.target.getPath());
+			job.bytesIn = job.source.length();
+			job.bytesOut = job.target.length();
+		} catch (IOException e) {
+			job.error = e;
+		}
+		job.nanos = System.nanoTime() - start;
+		String line;
+		if(job.error == null){
+			long original = decode ? job.bytesOut : job.bytesIn;
+			long encoded = decode ? job.bytesIn : job.bytesOut;
+			line = String.format("OK     %s -> %s  %d -> %d bytes (%s) %d ms", job.source, job.target,
+					job.bytesIn, job.bytesOut, ratio(original, encoded), job.nanos / 1000000);
+		}else{
+			line = String.format("FAILED %s  %s", job.source, job.error);
+		}
+		synchronized(System.out){
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Method to encode or decode one file, depending on the -x argument
+	 * @param source - a string representing the input file name
+	 * @param target - a string representing the output file name
+	 * @throws IOException if a file can not be read or written, or the input is corrupt
+	 */
+	void transcode(String source, String target) throws IOException{
+		if(decode){
+			decodeFile(source, target);
+		}else{
+			encodeFile(source, target);
+		}
+	}
+
+	/**
+	 * Method to encode one file the way Encode would with the same arguments
+	 * @param source - a string representing the input file name
+	 * @param target - a string representing the output file name
+	 * @throws IOException if a file can not be read or written
+	 */
+	private void encodeFile(String source, String target) throws IOException{
+		if(append){
+			HuffmanTree huffmanTree = new HuffmanTree();
+			huffmanTree.setParallelism(1);
+			huffmanTree.setMaxCodeLength(maxCodeLength);
+			huffmanTree.appendFile(source, target);
+		}else if(adaptive){
+			InputStream in = new FileInputStream(source);
+			try {
+				AdaptiveEncoder encoder = new AdaptiveEncoder(new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+				byte[] buffer = new byte[1 << 16];
+				int n;
+				while((n = in.read(buffer)) != -1){
+					encoder.write(buffer, 0, n);
+				}
+				encoder.close();
+			} finally {
+				in.close();
+			}
+		}else if(context){
+			ContextModel.encode(source, target);
+		}else if(tableId != ""){
+			StaticTable table = StaticTable.load(tableDirectory, tableId);
+			if(table.isBinary() != binary){
+				throw new IOException("Table " + tableId + (table.isBinary() ? " is for -raw files" : " is not for -raw files"));
+			}
+			table.encode(source, target);
+		}else if(blockSize > 0 || binary || checksums){
+			//Raw files and files with checksums are always written as block files
+			BlockWriter writer = new BlockWriter(blockSize > 0 ? blockSize : BlockWriter.DEFAULT_BLOCK_SIZE, 1);
+			writer.setMaxCodeLength(maxCodeLength);
+			writer.setBinary(binary);
+			writer.setChecksums(checksums);
+			writer.write(source, target);
+		}else{
+			HuffmanTree huffmanTree = new HuffmanTree();
+			huffmanTree.setParallelism(1);
+			huffmanTree.setMaxCodeLength(maxCodeLength);
+			huffmanTree.setInterleaved(interleaved);
+			huffmanTree.encodeFile(source, target);
+		}
+	}
+
+	/**
+	 * Method to decode one file, whatever format it was encoded in
+	 * @param source - a string representing the encoded file name
+	 * @param target - a string representing the output file name
+	 * @throws IOException if a file can not be read or written, or the encoded file is corrupt
+	 */
+	private void decodeFile(String source, String target) throws IOException{
+		if(AdaptiveEncoder.isAdaptiveFile(source)){
+			AdaptiveDecoder decoder = new AdaptiveDecoder(new FileInputStream(source));
+			try {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(target), 1 << 16);
+				byte[] buffer = new byte[1 << 16];
+				int n;
+				while((n = decoder.read(buffer, 0, buffer.length)) != -1){
+					out.write(buffer, 0, n);
+				}
+				out.close();
+			} finally {
+				decoder.close();
+			}
+		}else if(ContextModel.isContextFile(source)){
+			ContextModel.decode(source, target);
+		}else if(StaticTable.isStaticFile(source)){
+			StaticTable.load(tableDirectory, StaticTable.readTableId(source)).decode(source, target);
+		}else if(BlockFormat.isBlockFile(source)){
+			new BlockReader(source).decode(target);
+		}else{
+			new HuffmanTree().decodeFile(source, target);
+		}
+	}
+
+	/**
+	 * Method to describe how much smaller the encoded data is
+	 * @param original - the size of the original data
+	 * @param encoded - the size of the encoded data
+	 * @return the size of the encoded data as a percentage of the original
+	 */
+	private static String ratio(long original, long encoded){
+		if(original == 0){
+			return "-";
+		}
+		return String.format("%.1f%%", 100.0 * encoded / original);
+	}
+}
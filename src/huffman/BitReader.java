@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A class for reading a stream of bits, most significant bit first.
+ * The next bits of the input are kept left aligned in a 64-bit buffer so that
+ * several bits can be looked at and consumed with a single shift.
+ * The input is either a byte array or a channel, which is read one chunk at a time
+ * so memory use does not depend on the size of the input.
+ * Reading past the end of the input returns zero bits, which is how the
+ * encoder pads the final byte.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BitReader {
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+	private boolean endOfChannel;
+	private long bitBuffer;
+	private int bitCount;
+	private int fillBits;
+	private boolean pastEnd;
+	private long loaded;
+
+	/**
+	 * Constructor for a bit reader over part of a byte array
+	 * @param buffer - the bytes to read
+	 * @param offset - the index of the first byte to read
+	 * @param length - the number of bytes to read
+	 */
+	public BitReader(byte[] buffer, int offset, int length) {
+		this.channel = null;
+		this.buffer = ByteBuffer.wrap(buffer, offset, length);
+		this.endOfChannel = true;
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+		this.fillBits = 0;
+		this.pastEnd = false;
+		this.loaded = 0;
+	}
+
+	/**
+	 * Constructor for a bit reader over a channel
+	 * @param channel - the channel to read
+	 * @param bufferSize - the number of bytes to read from the channel at a time
+	 */
+	public BitReader(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buffer.flip();
+		this.endOfChannel = false;
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+		this.fillBits = 0;
+		this.pastEnd = false;
+		this.loaded = 0;
+	}
+
+	/**
+	 * Method to read the next chunk of the channel into the byte buffer
+	 * @return true if there are bytes left to read
+	 * @throws IOException if the channel can not be read
+	 */
+	private boolean fillBuffer() throws IOException{
+		while(!endOfChannel && !buffer.hasRemaining()){
+			buffer.clear();
+			if(channel.read(buffer) < 0){
+				endOfChannel = true;
+			}
+			buffer.flip();
+		}
+		return buffer.hasRemaining();
+	}
+
+	/**
+	 * Method to top up the bit buffer so that at least 57 bits are available
+	 * @throws IOException if the channel can not be read
+	 */
+	private void refill() throws IOException{
+		while(bitCount <= 56){
+			if(buffer.hasRemaining() || fillBuffer()){
+				bitBuffer |= (long) (buffer.get() & 0xff) << (56 - bitCount);
+			}else{
+				fillBits += 8;
+			}
+			bitCount += 8;
+			loaded++;
+		}
+	}
+
+	/**
+	 * Method to look at the next bits without consuming them
+	 * @param n - the number of bits to look at, at most 57
+	 * @return the next n bits as the low bits of a long
+	 * @throws IOException if the channel can not be read
+	 */
+	public long peek(int n) throws IOException{
+		if(n == 0){
+			return 0;
+		}
+		if(bitCount < n){
+			refill();
+		}
+		return bitBuffer >>> (64 - n);
+	}
+
+	/**
+	 * Method to consume bits that have already been looked at with peek
+	 * @param n - the number of bits to consume
+	 */
+	public void skip(int n){
+		bitBuffer <<= n;
+		bitCount -= n;
+		if(bitCount < fillBits){
+			pastEnd = true;
+			fillBits = bitCount;
+		}
+	}
+
+	/**
+	 * Method to read the next bits
+	 * @param n - the number of bits to read, at most 57
+	 * @return the bits as the low bits of a long
+	 * @throws IOException if the channel can not be read
+	 */
+	public long read(int n) throws IOException{
+		long bits = peek(n);
+		skip(n);
+		return bits;
+	}
+
+	/**
+	 * Method to read a number written by BitWriter.writeVarint
+	 * @return the number
+	 * @throws IOException if the channel can not be read or the number is longer than 63 bits
+	 */
+	public long readVarint() throws IOException{
+		long value = 0;
+		for(int shift = 0; shift < 63; shift += 7){
+			long b = read(8);
+			value |= (b & 0x7f) << shift;
+			if(b < 0x80){
+				return value;
+			}
+		}
+		throw new IOException("Corrupt varint");
+	}
+
+	/**
+	 * Method to skip the rest of the current byte, so the next read starts on a byte boundary
+	 */
+	public void alignToByte(){
+		skip(bitCount & 7);
+	}
+
+	/**
+	 * Method to check that the next bits are all part of the input, not zero bits past its end
+	 * @param n - the number of bits to check, at most 57
+	 * @return true if n more bits can be read without going past the end of the input
+	 * @throws IOException if the channel can not be read
+	 */
+	public boolean hasBits(int n) throws IOException{
+		if(bitCount < n){
+			refill();
+		}
+		return bitCount - fillBits >= n;
+	}
+
+	/**
+	 * @return the number of bits read or skipped since the reader was made
+	 */
+	public long getPosition(){
+		return 8 * loaded - bitCount;
+	}
+
+	/**
+	 * Returns true once bits beyond the end of the input have been consumed
+	 * @return pastEnd
+	 */
+	public boolean isPastEnd(){
+		return pastEnd;
+	}
+}
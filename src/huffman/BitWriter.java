@@ -0,0 +1,188 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A class for writing a stream of bits, most significant bit first.
+ * Bits are collected in a 64-bit accumulator and moved into a byte buffer
+ * 32 bits at a time. The byte buffer is either written to a channel whenever
+ * it fills up, or grows to hold the whole output in memory.
+ * Writing bits allocates nothing.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BitWriter {
+	private WritableByteChannel channel;
+	private ByteBuffer buffer;
+	private long bitBuffer;
+	private int bitCount;
+
+	/**
+	 * Constructor for a bit writer that keeps its output in memory
+	 * @param initialCapacity - the number of bytes to allocate up front
+	 */
+	public BitWriter(int initialCapacity) {
+		this.channel = null;
+		this.buffer = ByteBuffer.allocate(Math.max(initialCapacity, 16));
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+	}
+
+	/**
+	 * Constructor for a bit writer over a channel
+	 * @param channel - the channel to write to
+	 * @param bufferSize - the number of bytes to collect before writing to the channel
+	 */
+	public BitWriter(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 16));
+		this.bitBuffer = 0;
+		this.bitCount = 0;
+	}
+
+	/**
+	 * Method to make room for at least n more bytes in the byte buffer
+	 * @param n - the number of bytes needed
+	 * @throws IOException if the channel can not be written
+	 */
+	private void ensureRemaining(int n) throws IOException{
+		if(buffer.remaining() >= n){
+			return;
+		}
+		if(channel != null){
+			drain();
+		}else{
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + n));
+			buffer.flip();
+			larger.put(buffer);
+			buffer = larger;
+		}
+	}
+
+	/**
+	 * Method to write the contents of the byte buffer to the channel
+	 * @throws IOException if the channel can not be written
+	 */
+	private void drain() throws IOException{
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Method to write bits
+	 * @param bits - the bits to write, in the low bits of the value
+	 * @param n - the number of bits to write, at most 32
+	 * @throws IOException if the channel can not be written
+	 */
+	public void write(long bits, int n) throws IOException{
+		if(n == 0){
+			return;
+		}
+		bitBuffer |= (bits & ((1L << n) - 1)) << (64 - bitCount - n);
+		bitCount += n;
+		if(bitCount >= 32){
+			ensureRemaining(4);
+			buffer.putInt((int) (bitBuffer >>> 32));
+			bitBuffer <<= 32;
+			bitCount -= 32;
+		}
+	}
+
+	/**
+	 * Method to write a number in as few bytes as it needs, seven bits to a byte, lowest bits first,
+	 * with the top bit of every byte but the last set
+	 * @param value - the number to write, not negative
+	 * @throws IOException if the channel can not be written
+	 */
+	public void writeVarint(long value) throws IOException{
+		while(value >= 0x80){
+			write((value & 0x7f) | 0x80, 8);
+			value >>>= 7;
+		}
+		write(value, 8);
+	}
+
+	/**
+	 * Method to pad the current byte with zeroes so the next write starts on a byte boundary
+	 * @throws IOException if the channel can not be written
+	 */
+	public void alignToByte() throws IOException{
+		ensureRemaining(4);
+		while(bitCount > 0){
+			buffer.put((byte) (bitBuffer >>> 56));
+			bitBuffer <<= 8;
+			bitCount = Math.max(bitCount - 8, 0);
+		}
+		bitBuffer = 0;
+	}
+
+	/**
+	 * Method to pad the last byte with zeroes and write everything out to the channel
+	 * @throws IOException if the channel can not be written
+	 */
+	public void flush() throws IOException{
+		alignToByte();
+		if(channel != null){
+			drain();
+		}
+	}
+
+	/**
+	 * Method to write bytes, starting on a byte boundary
+	 * @param bytes - the bytes to write
+	 * @param offset - the index of the first byte to write
+	 * @param length - the number of bytes to write
+	 * @throws IOException if the channel can not be written
+	 */
+	public void writeBytes(byte[] bytes, int offset, int length) throws IOException{
+		alignToByte();
+		while(length > 0){
+			ensureRemaining(channel == null ? length : 1);
+			int n = Math.min(length, buffer.remaining());
+			buffer.put(bytes, offset, n);
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * @return the number of whole bytes a bit writer that keeps its output in memory holds,
+	 * not counting bits after the last byte boundary
+	 */
+	public int getByteCount() {
+		return buffer.position() + bitCount / 8;
+	}
+
+	/**
+	 * Method to write the output of a bit writer that keeps its output in memory to another bit writer,
+	 * padding its last byte with zeroes, and then empty it, so the same memory takes the next output
+	 * @param out - the bit writer to write the bytes to
+	 * @throws IOException if the channel of out can not be written
+	 */
+	public void writeTo(BitWriter out) throws IOException{
+		alignToByte();
+		out.writeBytes(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+	/**
+	 * Method to get the output of a bit writer that keeps its output in memory
+	 * @return a copy of the bytes written so far, with the last byte padded with zeroes
+	 * @throws IOException never for an in-memory bit writer
+	 */
+	public byte[] toByteArray() throws IOException{
+		alignToByte();
+		byte[] bytes = new byte[buffer.position()];
+		System.arraycopy(buffer.array(), 0, bytes, 0, bytes.length);
+		return bytes;
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * 
+ */
+package huffman;
+
+/**
+ * This is a class for the Block object which stores the index entry
+ * of one block of a block file, such as where its record starts and how many symbols it holds.
+ * 
+ * @author Christopher Barnett
+ *
+ */
+public class Block {
+	private long offset;
+	private int payloadSize;
+	private int symbolCount;
+	private long firstSymbol;
+	/**
+	 * @param offset
+	 * @param payloadSize
+	 * @param symbolCount
+	 * @param firstSymbol
+	 */
+	public Block(long offset, int payloadSize, int symbolCount, long firstSymbol) {
+		super();
+		this.offset = offset;
+		this.payloadSize = payloadSize;
+		this.symbolCount = symbolCount;
+		this.firstSymbol = firstSymbol;
+	}
+	/**
+	 * @return the offset of the block's record in the file
+	 */
+	public long getOffset() {
+		return offset;
+	}
+	/**
+	 * @return the size of the block's payload in bytes
+	 */
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+	/**
+	 * @return the number of symbols in the block
+	 */
+	public int getSymbolCount() {
+		return symbolCount;
+	}
+	/**
+	 * @return the position of the block's first symbol in the uncompressed data
+	 */
+	public long getFirstSymbol() {
+		return firstSymbol;
+	}
+	
+	/**
+	 * Overrides the default toString method
+	 * @return a string representation of the Block object
+	 */
+	public String toString(){
+		return "Offset: " + offset + " Payload: " + payloadSize + " Symbols: " + firstSymbol + "-" + (firstSymbol + symbolCount);
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+
+/**
+ * A class for decoding one block payload written by BlockEncoder.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BlockDecoder {
+
+	/**
+	 * Private constructor, the class only holds static methods
+	 */
+	private BlockDecoder() {
+	}
+
+	/**
+	 * Method to decode a block payload
+	 * @param payload - the bytes of the payload
+	 * @param symbolCount - the number of symbols in the block
+	 * @param symbols - the array to decode the symbols into, at least symbolCount long
+	 * @throws IOException if the payload is not a valid block
+	 */
+	public static void decode(byte[] payload, int symbolCount, int[] symbols) throws IOException{
+		BitReader in = new BitReader(payload, 0, payload.length);
+		
+		//Read the code table
+		int tableSize = (int) in.read(32);
+		if(tableSize <= 0 || tableSize > FrequencyCounter.ALPHABET_SIZE){
+			throw new IOException("Corrupt block: code table of " + tableSize + " symbols");
+		}
+		int[] chars = new int[tableSize];
+		int[] lengths = new int[tableSize];
+		boolean[] seen = new boolean[FrequencyCounter.ALPHABET_SIZE];
+		for(int i = 0; i < tableSize; i++){
+			chars[i] = (int) in.read(16);
+			lengths[i] = (int) in.read(8);
+			if(seen[chars[i]] || in.isPastEnd()){
+				throw new IOException("Corrupt block: bad code table");
+			}
+			seen[chars[i]] = true;
+		}
+		CodeLengths.checkLengths(lengths, tableSize);
+		DecodeTable table = new DecodeTable(new CodeTable(chars, lengths, tableSize));
+		
+		//Read the symbols
+		for(int i = 0; i < symbolCount; i++){
+			int symbol = table.decodeSymbol(in);
+			if(symbol == -1 || in.isPastEnd()){
+				throw new IOException("Corrupt block: expected " + symbolCount + " symbols, found " + i);
+			}
+			symbols[i] = symbol;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+
+/**
+ * A class for encoding one block of symbols with its own canonical code table.
+ * The payload of a block is laid out as:
+ * <pre>
+ * number of symbols in the table (32 bits)
+ * for each symbol, in canonical order: the symbol (16 bits), its code length (8 bits)
+ * the code of every symbol of the block, padded with zeroes to a whole byte
+ * </pre>
+ * The number of symbols in the block is stored outside of the payload, so no EOF symbol is needed.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BlockEncoder {
+
+	/**
+	 * Private constructor, the class only holds static methods
+	 */
+	private BlockEncoder() {
+	}
+
+	/**
+	 * Method to encode a block of symbols
+	 * @param symbols - the symbols of the block
+	 * @param length - the number of symbols in the block
+	 * @param maxCodeLength - the longest code to give a symbol
+	 * @return the payload of the block
+	 * @throws IOException if the payload can not be written
+	 */
+	public static byte[] encode(int[] symbols, int length, int maxCodeLength) throws IOException{
+		return encode(symbols, length, FrequencyCounter.ALPHABET_SIZE, maxCodeLength);
+	}
+
+	/**
+	 * Method to encode a block of symbols that are all below alphabetSize,
+	 * so the histogram of a block of bytes only needs 256 counts
+	 * @param symbols - the symbols of the block
+	 * @param length - the number of symbols in the block
+	 * @param alphabetSize - one more than the largest symbol the block can hold
+	 * @param maxCodeLength - the longest code to give a symbol
+	 * @return the payload of the block
+	 * @throws IOException if the payload can not be written
+	 */
+	public static byte[] encode(int[] symbols, int length, int alphabetSize, int maxCodeLength) throws IOException{
+		long[] counts = new long[alphabetSize];
+		for(int i = 0; i < length; i++){
+			counts[symbols[i]]++;
+		}
+		HuffmanTree tree = new HuffmanTree();
+		tree.setMaxCodeLength(maxCodeLength);
+		tree.buildTree(counts);
+		CodeTable codes = tree.canonicalTable();
+		EncodeTable table = new EncodeTable(codes);
+		
+		BitWriter out = new BitWriter(length / 2 + 3 * codes.size() + 16);
+		//Write the code table
+		out.write(codes.size(), 32);
+		for(int s = 0; s < codes.size(); s++){
+			out.write(codes.getSymbol(s), 16);
+			out.write(codes.getCodeLength(s), 8);
+		}
+		//Write the symbols
+		for(int i = 0; i < length; i++){
+			table.writeSymbol(out, symbols[i]);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A class for the constants of the block container format.
+ * A block file starts with a header, followed by one record per block
+ * and an index of the blocks:
+ * <pre>
+ * header:  00 'H' 'U' 'F', version (byte), flags (byte), block size (int)
+ * block:   symbol count (int), payload size (int), [checksum (int)], payload
+ * index:   -1 (int), block count (int),
+ *          then for each block: record offset (long), payload size (int), symbol count (int)
+ * trailer: index offset (long)
+ * </pre>
+ * A file with FLAG_NO_INDEX ends with the -1 after the last block record, without the index
+ * and trailer, and readers that need the index rebuild it by walking the block records.
+ * FLAG_BINARY is set when the symbols are bytes rather than characters.
+ * FLAG_CHECKSUM is set when every block record holds a CRC-32 of the block's uncompressed symbols,
+ * so a decoder can tell a damaged block from a good one. Files with checksums are version 2,
+ * files without are still written as version 1 so older readers can read them.
+ * Files without an index are version 3, so older readers reject them rather than fail on the missing index.
+ * Each payload holds its own canonical code table followed by the codes of its symbols,
+ * see BlockEncoder. A block file can never be mistaken for the single table format,
+ * whose first byte is the number of characters in its header and so never 0.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public final class BlockFormat {
+	/**
+	 * The first bytes of every block file
+	 */
+	public static final byte[] MAGIC = {0, 'H', 'U', 'F'};
+	/**
+	 * The version of the format written by BlockWriter
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * The version of files without checksums
+	 */
+	public static final int VERSION_WITHOUT_CHECKSUMS = 1;
+	/**
+	 * The version of files without an index
+	 */
+	public static final int VERSION_WITHOUT_INDEX = 3;
+	/**
+	 * The flag set when the symbols are the bytes of a binary file rather than characters
+	 */
+	public static final int FLAG_BINARY = 1;
+	/**
+	 * The flag set when every block record holds a checksum of the block's symbols
+	 */
+	public static final int FLAG_CHECKSUM = 2;
+	/**
+	 * The flag set when the file has no index or trailer after its block records
+	 */
+	public static final int FLAG_NO_INDEX = 4;
+	/**
+	 * The size of the file header in bytes
+	 */
+	public static final int HEADER_SIZE = 10;
+	/**
+	 * The size of a block record before its payload in bytes
+	 */
+	public static final int RECORD_HEADER_SIZE = 8;
+	/**
+	 * The size of the checksum of a block record in bytes, when the file has checksums
+	 */
+	public static final int CHECKSUM_SIZE = 4;
+	/**
+	 * The size of an index entry in bytes
+	 */
+	public static final int INDEX_ENTRY_SIZE = 16;
+	/**
+	 * The size of the trailer in bytes
+	 */
+	public static final int TRAILER_SIZE = 8;
+	/**
+	 * The symbol count that marks the end of the block records and the start of the index
+	 */
+	public static final int END_OF_BLOCKS = -1;
+	/**
+	 * The most symbols a block can hold, so an encoder holding a few blocks at a time stays within a modest heap
+	 */
+	public static final int MAX_BLOCK_SIZE = 1 << 22;
+
+	/**
+	 * Private constructor, the class only holds constants
+	 */
+	private BlockFormat() {
+	}
+
+	/**
+	 * Method to check a block size given by the user
+	 * @param blockSize - the number of symbols in each block
+	 * @return the block size
+	 * @throws IllegalArgumentException if it is not from 1 to MAX_BLOCK_SIZE
+	 */
+	public static int checkBlockSize(int blockSize){
+		if(blockSize < 1 || blockSize > MAX_BLOCK_SIZE){
+			throw new IllegalArgumentException("Block size must be from 1 to " + MAX_BLOCK_SIZE + ", not " + blockSize);
+		}
+		return blockSize;
+	}
+
+	/**
+	 * Method to read a block size from a command line argument
+	 * @param value - the argument
+	 * @return the block size
+	 * @throws IllegalArgumentException if it is not a number from 1 to MAX_BLOCK_SIZE
+	 */
+	public static int parseBlockSize(String value){
+		int blockSize;
+		try {
+			blockSize = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Block size must be a number from 1 to " + MAX_BLOCK_SIZE + ", not " + value);
+		}
+		return checkBlockSize(blockSize);
+	}
+
+	/**
+	 * Method to write the file header
+	 * @param out - the output to write to
+	 * @param flags - the format flags
+	 * @param blockSize - the number of symbols in each block, except maybe the last
+	 * @throws IOException if the header can not be written
+	 */
+	public static void writeHeader(DataOutput out, int flags, int blockSize) throws IOException{
+		out.write(MAGIC);
+		out.writeByte(version(flags));
+		out.writeByte(flags);
+		out.writeInt(blockSize);
+	}
+
+	/**
+	 * Method to get the version a file with some flags is written as, the oldest that supports them
+	 * @param flags - the format flags
+	 * @return the version
+	 */
+	public static int version(int flags){
+		if((flags & FLAG_NO_INDEX) != 0){
+			return VERSION_WITHOUT_INDEX;
+		}
+		return (flags & FLAG_CHECKSUM) != 0 ? VERSION : VERSION_WITHOUT_CHECKSUMS;
+	}
+
+	/**
+	 * Method to check the version and flags read from a file header
+	 * @param version - the version of the file
+	 * @param flags - the format flags of the file
+	 * @throws IOException if the version is not supported or has flags it does not support
+	 */
+	public static void checkVersion(int version, int flags) throws IOException{
+		if(version < VERSION_WITHOUT_CHECKSUMS || version > VERSION_WITHOUT_INDEX){
+			throw new IOException("Unsupported block file version " + version);
+		}
+		if(version < version(flags)){
+			throw new IOException("Corrupt block file: flags " + flags + " in a version " + version + " file");
+		}
+	}
+
+	/**
+	 * Method to get the size of a block record before its payload
+	 * @param flags - the format flags of the file
+	 * @return the size in bytes, including the checksum if the file has checksums
+	 */
+	public static int recordHeaderSize(int flags){
+		return RECORD_HEADER_SIZE + ((flags & FLAG_CHECKSUM) != 0 ? CHECKSUM_SIZE : 0);
+	}
+
+	/**
+	 * Method to get the largest payload a block can have, a code table of every symbol
+	 * followed by a code of the longest length for each symbol of the block
+	 * @param symbolCount - the number of symbols in the block
+	 * @return the size in bytes
+	 */
+	public static long maxPayloadSize(int symbolCount){
+		return 4 + 3L * FrequencyCounter.ALPHABET_SIZE + ((long) symbolCount * CodeLengths.MAX_LENGTH + 7) / 8;
+	}
+
+	/**
+	 * Method to compute the checksum of a block's uncompressed symbols, a CRC-32 of the bytes
+	 * of a binary file or of the characters of a text file as big-endian 32-bit numbers
+	 * @param symbols - the symbols of the block
+	 * @param length - the number of symbols in the block
+	 * @param binary - true if the symbols are bytes rather than characters
+	 * @return the checksum
+	 */
+	public static int checksum(int[] symbols, int length, boolean binary){
+		CRC32 crc = new CRC32();
+		byte[] bytes = new byte[8192];
+		if(binary){
+			for(int start = 0; start < length; start += bytes.length){
+				int n = Math.min(bytes.length, length - start);
+				for(int i = 0; i < n; i++){
+					bytes[i] = (byte) symbols[start + i];
+				}
+				crc.update(bytes, 0, n);
+			}
+		}else{
+			//A bulk copy through an int view is much faster than splitting each character into bytes
+			IntBuffer view = ByteBuffer.wrap(bytes).asIntBuffer();
+			for(int start = 0; start < length; start += view.capacity()){
+				int n = Math.min(view.capacity(), length - start);
+				view.clear();
+				view.put(symbols, start, n);
+				crc.update(bytes, 0, 4 * n);
+			}
+		}
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns true if the file starts with the block file magic bytes
+	 * @param fileName - a string representing the name of the file
+	 * @return isBlockFile
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isBlockFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ByteBuffer b = ByteBuffer.allocate(MAGIC.length);
+		while(b.hasRemaining()){
+			if(channel.read(b) < 0){
+				break;
+			}
+		}
+		channel.close();
+		if(b.hasRemaining()){
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++){
+			if(b.get(i) != MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,434 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class for reading a block file written by BlockWriter.
+ * A block file can be decoded from start to end as a stream, or through its index,
+ * which lets blocks be decoded in parallel or just the blocks covering a range
+ * of the uncompressed data be decoded.
+ * Positions in the uncompressed data are counted in symbols, which are characters
+ * for a text file and bytes for a binary file.
+ * If the file has checksums every decoded block is checked against its checksum:
+ * on a thread of its own while the next block is decoded when decoding as a stream,
+ * and by the thread that decoded it when decoding through the index.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BlockReader {
+	private String fileName;
+	private int flags;
+
+	/**
+	 * Constructor for the block reader
+	 * @param fileName - a string representing the name of the block file
+	 */
+	public BlockReader(String fileName) {
+		this.fileName = fileName;
+		this.flags = 0;
+	}
+
+	/**
+	 * Method to decode the whole block file, one block after the other.
+	 * A block whose checksum does not match is only reported after it has been written
+	 * @param outputFile - a string representing the output file name
+	 * @throws IOException if a file can not be read or written, or the block file is corrupt
+	 */
+	public void decode(String outputFile) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 1 << 16));
+		ChecksumVerifier verifier = null;
+		try {
+			int blockSize = readHeader(in);
+			boolean checksums = (flags & BlockFormat.FLAG_CHECKSUM) != 0;
+			if(checksums){
+				verifier = new ChecksumVerifier((flags & BlockFormat.FLAG_BINARY) != 0);
+			}
+			SymbolWriter output = openOutput(outputFile);
+			try {
+				//Two arrays in turn, so one block is checked while the next is decoded,
+				//made as big as the blocks turn out to be rather than trusting the block size
+				int[][] buffers = new int[2][];
+				int symbolCount;
+				long blocks = 0;
+				while((symbolCount = in.readInt()) != BlockFormat.END_OF_BLOCKS){
+					if(symbolCount < 0 || symbolCount > blockSize){
+						throw new IOException("Corrupt block file: block of " + symbolCount + " symbols");
+					}
+					int payloadSize = in.readInt();
+					if(payloadSize < 0 || payloadSize > BlockFormat.maxPayloadSize(symbolCount)){
+						throw new IOException("Corrupt block file: payload of " + payloadSize + " bytes");
+					}
+					byte[] payload = new byte[payloadSize];
+					int checksum = checksums ? in.readInt() : 0;
+					in.readFully(payload);
+					int buffer = checksums ? (int) (blocks & 1) : 0;
+					if(buffers[buffer] == null || buffers[buffer].length < symbolCount){
+						buffers[buffer] = new int[symbolCount];
+					}
+					int[] symbols = buffers[buffer];
+					BlockDecoder.decode(payload, symbolCount, symbols);
+					output.write(symbols, 0, symbolCount);
+					if(checksums){
+						verifier.verify(symbols, symbolCount, checksum, Long.toString(blocks));
+					}
+					blocks++;
+				}
+				if(checksums){
+					verifier.finish();
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			if(verifier != null){
+				verifier.close();
+			}
+			in.close();
+		}
+	}
+
+	/**
+	 * Method to decode the whole block file, decoding several blocks at the same time
+	 * @param outputFile - a string representing the output file name
+	 * @param parallelism - the number of blocks to decode at the same time
+	 * @throws IOException if a file can not be read or written, or the block file is corrupt
+	 */
+	public void decode(String outputFile, int parallelism) throws IOException{
+		final FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		try {
+			ArrayList<Block> index = readIndex(channel);
+			SymbolWriter output = openOutput(outputFile);
+			try {
+				LinkedList<Future<int[]>> pending = new LinkedList<Future<int[]>>();
+				for(final Block b : index){
+					pending.add(pool.submit(new Callable<int[]>() {
+						@Override
+						public int[] call() throws IOException {
+							return decodeBlock(channel, b);
+						}
+					}));
+					//Keep a bounded number of blocks in memory
+					if(pending.size() >= 2 * parallelism){
+						int[] symbols = waitFor(pending.poll());
+						output.write(symbols, 0, symbols.length);
+					}
+				}
+				while(pending.size() > 0){
+					int[] symbols = waitFor(pending.poll());
+					output.write(symbols, 0, symbols.length);
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			pool.shutdownNow();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Method to decode part of the uncompressed data, only decoding the blocks that cover it
+	 * @param from - the position of the first symbol to decode
+	 * @param to - the position after the last symbol to decode
+	 * @param output - the output to write the symbols to, left open
+	 * @throws IOException if the file can not be read, the block file is corrupt or the range is out of bounds
+	 */
+	public void decodeRange(long from, long to, SymbolWriter output) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try {
+			ArrayList<Block> index = readIndex(channel);
+			long length = 0;
+			if(index.size() > 0){
+				Block last = index.get(index.size() - 1);
+				length = last.getFirstSymbol() + last.getSymbolCount();
+			}
+			if(from < 0 || to > length || from > to){
+				throw new IOException("Range " + from + "-" + to + " is outside of 0-" + length);
+			}
+			for(int i = findBlock(index, from); i < index.size() && index.get(i).getFirstSymbol() < to; i++){
+				Block b = index.get(i);
+				int[] symbols = decodeBlock(channel, b);
+				int start = (int) Math.max(from - b.getFirstSymbol(), 0);
+				int end = (int) Math.min(to - b.getFirstSymbol(), symbols.length);
+				output.write(symbols, start, end - start);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Method to decode part of the uncompressed text of a text block file
+	 * @param from - the position of the first character to decode
+	 * @param to - the position after the last character to decode
+	 * @return the characters from position from up to position to
+	 * @throws IOException if the file can not be read, the block file is corrupt or the range is out of bounds
+	 */
+	public String decodeRange(long from, long to) throws IOException{
+		StringWriter output = new StringWriter();
+		decodeRange(from, to, new TextSymbolWriter(output));
+		return output.toString();
+	}
+
+	/**
+	 * Returns true if every block of the file holds a checksum of its symbols
+	 * @return hasChecksums
+	 * @throws IOException if the file can not be read or is not a block file
+	 */
+	public boolean hasChecksums() throws IOException{
+		DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+		try {
+			readHeader(in);
+		} finally {
+			in.close();
+		}
+		return (flags & BlockFormat.FLAG_CHECKSUM) != 0;
+	}
+
+	/**
+	 * Returns true if the block file holds the bytes of a binary file rather than text
+	 * @return isBinary
+	 * @throws IOException if the file can not be read or is not a block file
+	 */
+	public boolean isBinary() throws IOException{
+		DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+		try {
+			readHeader(in);
+		} finally {
+			in.close();
+		}
+		return (flags & BlockFormat.FLAG_BINARY) != 0;
+	}
+
+	/**
+	 * Method to open an output file for the decoded symbols of this block file,
+	 * as bytes for a binary file or as characters for a text file
+	 * @param outputFile - a string representing the output file name
+	 * @return the output
+	 * @throws IOException if a file can not be read or opened
+	 */
+	public SymbolWriter openOutput(String outputFile) throws IOException{
+		if(isBinary()){
+			return new ByteSymbolWriter(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16));
+		}
+		return new TextSymbolWriter(new BufferedWriter(new FileWriter(outputFile), 1 << 16));
+	}
+
+	/**
+	 * Method to read the block index from the end of the file
+	 * @return the index entries of the blocks, in order
+	 * @throws IOException if the file can not be read or the index is corrupt
+	 */
+	public ArrayList<Block> readIndex() throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try {
+			return readIndex(channel);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Method to read the block index from the end of the file
+	 * @param channel - the block file
+	 * @return the index entries of the blocks, in order
+	 * @throws IOException if the file can not be read or the index is corrupt
+	 */
+	private ArrayList<Block> readIndex(FileChannel channel) throws IOException{
+		int blockSize = readHeader(new DataInputStream(new ByteArrayInputStream(readFully(channel, 0, BlockFormat.HEADER_SIZE).array())));
+		if((flags & BlockFormat.FLAG_NO_INDEX) != 0){
+			return scanIndex(channel, blockSize);
+		}
+		long size = channel.size();
+		long indexOffset = readFully(channel, size - BlockFormat.TRAILER_SIZE, BlockFormat.TRAILER_SIZE).getLong();
+		if(indexOffset < BlockFormat.HEADER_SIZE || indexOffset > size - BlockFormat.TRAILER_SIZE - 8){
+			throw new IOException("Corrupt block file: index offset " + indexOffset);
+		}
+		ByteBuffer b = readFully(channel, indexOffset, 8);
+		int marker = b.getInt();
+		int blockCount = b.getInt();
+		if(marker != BlockFormat.END_OF_BLOCKS || blockCount < 0
+				|| indexOffset + 8 + (long) blockCount * BlockFormat.INDEX_ENTRY_SIZE + BlockFormat.TRAILER_SIZE != size){
+			throw new IOException("Corrupt block file: bad index");
+		}
+		b = readFully(channel, indexOffset + 8, blockCount * BlockFormat.INDEX_ENTRY_SIZE);
+		ArrayList<Block> index = new ArrayList<Block>(blockCount);
+		long firstSymbol = 0;
+		for(int i = 0; i < blockCount; i++){
+			Block block = new Block(b.getLong(), b.getInt(), b.getInt(), firstSymbol);
+			if(block.getOffset() < BlockFormat.HEADER_SIZE || block.getSymbolCount() < 0 || block.getSymbolCount() > blockSize
+					|| block.getPayloadSize() < 0 || block.getPayloadSize() > BlockFormat.maxPayloadSize(block.getSymbolCount())
+					|| block.getOffset() + BlockFormat.recordHeaderSize(flags) + block.getPayloadSize() > indexOffset){
+				throw new IOException("Corrupt block file: bad index entry " + block);
+			}
+			index.add(block);
+			firstSymbol += block.getSymbolCount();
+		}
+		return index;
+	}
+
+	/**
+	 * Method to rebuild the block index of a file without one by walking its block records
+	 * @param channel - the block file
+	 * @param blockSize - the block size of the file
+	 * @return the index entries of the blocks, in order
+	 * @throws IOException if the file can not be read or a block record is corrupt
+	 */
+	private ArrayList<Block> scanIndex(FileChannel channel, int blockSize) throws IOException{
+		long size = channel.size();
+		int recordHeaderSize = BlockFormat.recordHeaderSize(flags);
+		ArrayList<Block> index = new ArrayList<Block>();
+		long offset = BlockFormat.HEADER_SIZE;
+		long firstSymbol = 0;
+		while(true){
+			int symbolCount = readFully(channel, offset, 4).getInt();
+			if(symbolCount == BlockFormat.END_OF_BLOCKS){
+				break;
+			}
+			int payloadSize = readFully(channel, offset + 4, 4).getInt();
+			if(symbolCount < 0 || symbolCount > blockSize || payloadSize < 0
+					|| offset + recordHeaderSize + payloadSize > size){
+				throw new IOException("Corrupt block file: bad block record at " + offset);
+			}
+			Block block = new Block(offset, payloadSize, symbolCount, firstSymbol);
+			index.add(block);
+			offset += recordHeaderSize + payloadSize;
+			firstSymbol += symbolCount;
+		}
+		if(offset + 4 != size){
+			throw new IOException("Corrupt block file: data after the last block");
+		}
+		return index;
+	}
+
+	/**
+	 * Method to find the block holding a position of the uncompressed text
+	 * @param index - the index entries of the blocks, in order
+	 * @param position - the position of a character
+	 * @return the index of the block holding the character
+	 */
+	private int findBlock(ArrayList<Block> index, long position){
+		int low = 0;
+		int high = index.size() - 1;
+		while(low < high){
+			int middle = (low + high + 1) >>> 1;
+			if(index.get(middle).getFirstSymbol() <= position){
+				low = middle;
+			}else{
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Method to decode one block, checking its checksum if the file has checksums
+	 * @param channel - the block file
+	 * @param b - the index entry of the block
+	 * @return the symbols of the block
+	 * @throws IOException if the file can not be read or the block is corrupt
+	 */
+	private int[] decodeBlock(FileChannel channel, Block b) throws IOException{
+		ByteBuffer record = readFully(channel, b.getOffset(), BlockFormat.recordHeaderSize(flags) + b.getPayloadSize());
+		if(record.getInt() != b.getSymbolCount() || record.getInt() != b.getPayloadSize()){
+			throw new IOException("Corrupt block file: block record does not match index entry " + b);
+		}
+		boolean checksums = (flags & BlockFormat.FLAG_CHECKSUM) != 0;
+		int checksum = checksums ? record.getInt() : 0;
+		int[] symbols = new int[b.getSymbolCount()];
+		byte[] payload = new byte[b.getPayloadSize()];
+		record.get(payload);
+		BlockDecoder.decode(payload, symbols.length, symbols);
+		if(checksums && BlockFormat.checksum(symbols, symbols.length, (flags & BlockFormat.FLAG_BINARY) != 0) != checksum){
+			throw new IOException("Corrupt block file: checksum does not match for block " + b);
+		}
+		return symbols;
+	}
+
+	/**
+	 * Method to read part of a file
+	 * @param channel - the file
+	 * @param position - the position of the first byte to read
+	 * @param length - the number of bytes to read
+	 * @return a buffer holding the bytes, ready to be read
+	 * @throws IOException if the file can not be read or is too short
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException{
+		ByteBuffer b = ByteBuffer.allocate(length);
+		while(b.hasRemaining()){
+			int n = channel.read(b, position + b.position());
+			if(n < 0){
+				throw new IOException("Corrupt block file: unexpected end of file");
+			}
+		}
+		b.flip();
+		return b;
+	}
+
+	/**
+	 * Method to wait for a block to be decoded
+	 * @param symbols - the block being decoded
+	 * @return the symbols of the block
+	 * @throws IOException if the block could not be decoded
+	 */
+	private static int[] waitFor(Future<int[]> symbols) throws IOException{
+		try {
+			return symbols.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to decode block", e.getCause());
+		}
+	}
+
+	/**
+	 * Method to read and check the file header
+	 * @param in - the input positioned at the start of the file
+	 * @return the block size of the file
+	 * @throws IOException if the header is not a supported block file header
+	 */
+	private int readHeader(DataInputStream in) throws IOException{
+		for(int i = 0; i < BlockFormat.MAGIC.length; i++){
+			if(in.readByte() != BlockFormat.MAGIC[i]){
+				throw new IOException(fileName + " is not a block file");
+			}
+		}
+		int version = in.readUnsignedByte();
+		flags = in.readUnsignedByte();
+		BlockFormat.checkVersion(version, flags);
+		int blockSize = in.readInt();
+		if(blockSize <= 0 || blockSize > BlockFormat.MAX_BLOCK_SIZE){
+			throw new IOException("Corrupt block file: block size " + blockSize);
+		}
+		return blockSize;
+	}
+}
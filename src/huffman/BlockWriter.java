@@ -0,0 +1,234 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class for writing a text file, or any file read as raw bytes, as a block file.
+ * The input is cut into blocks of a fixed number of symbols and the blocks are encoded
+ * in parallel, each with its own canonical code table, so the tables follow the local
+ * statistics of the input. Encoded blocks are written in order as they finish, followed
+ * by an index of their offsets and sizes. Optionally each record also holds a checksum
+ * of the block's symbols. See BlockFormat for the layout.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BlockWriter {
+	/**
+	 * The default number of symbols in a block
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	private int blockSize;
+	private int parallelism;
+	private int maxCodeLength;
+	private boolean binary;
+	private boolean checksums;
+
+	/**
+	 * A class for a block encoded by one task: its payload, and the checksum of its symbols
+	 * computed on the same thread
+	 */
+	private static class EncodedBlock {
+		private byte[] payload;
+		private int symbolCount;
+		private int checksum;
+
+		/**
+		 * Constructor for the encoded block
+		 * @param payload - the encoded symbols
+		 * @param symbolCount - the number of symbols in the block
+		 * @param checksum - the checksum of the block's symbols, or 0 if the file has no checksums
+		 */
+		public EncodedBlock(byte[] payload, int symbolCount, int checksum) {
+			this.payload = payload;
+			this.symbolCount = symbolCount;
+			this.checksum = checksum;
+		}
+	}
+
+	/**
+	 * Constructor for the block writer
+	 * @param blockSize - the number of symbols in each block
+	 * @param parallelism - the number of blocks to encode at the same time
+	 * @throws IllegalArgumentException if the block size is not from 1 to BlockFormat.MAX_BLOCK_SIZE
+	 */
+	public BlockWriter(int blockSize, int parallelism) {
+		this.blockSize = BlockFormat.checkBlockSize(blockSize);
+		this.parallelism = parallelism;
+		this.maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		this.binary = false;
+		this.checksums = false;
+	}
+
+	/**
+	 * @return the number of symbols in each block
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * @return the number of blocks encoded at the same time
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the longest code given to a symbol
+	 */
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	/**
+	 * @param maxCodeLength the longest code to give a symbol
+	 * @throws IllegalArgumentException if it is not from 1 to CodeLengths.MAX_LENGTH
+	 */
+	public void setMaxCodeLength(int maxCodeLength) {
+		this.maxCodeLength = CodeLengths.checkMaxLength(maxCodeLength);
+	}
+
+	/**
+	 * @return whether the input is read as raw bytes rather than as text
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * @param binary true to read the input as raw bytes, with no character decoding
+	 * and no line terminator handling, so any file can be encoded
+	 */
+	public void setBinary(boolean binary) {
+		this.binary = binary;
+	}
+
+	/**
+	 * @return whether every block record holds a checksum of the block's symbols
+	 */
+	public boolean isChecksums() {
+		return checksums;
+	}
+
+	/**
+	 * @param checksums true to store a CRC-32 of each block's symbols, so decoders can detect damaged blocks
+	 */
+	public void setChecksums(boolean checksums) {
+		this.checksums = checksums;
+	}
+
+	/**
+	 * Method to encode a file as a block file
+	 * @param sourceFile - a string representing the input file name
+	 * @param targetFile - a string representing the output file name
+	 * @throws IOException if a file can not be read or written
+	 */
+	public void write(String sourceFile, String targetFile) throws IOException{
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		SymbolReader reader = binary ? new ByteSymbolReader(sourceFile) : new TextSymbolReader(sourceFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(targetFile), 1 << 16));
+		try {
+			LinkedList<Future<EncodedBlock>> pending = new LinkedList<Future<EncodedBlock>>();
+			ArrayList<Block> index = new ArrayList<Block>();
+			long offset = BlockFormat.HEADER_SIZE;
+			long firstSymbol = 0;
+			int flags = (binary ? BlockFormat.FLAG_BINARY : 0) | (checksums ? BlockFormat.FLAG_CHECKSUM : 0);
+			int recordHeaderSize = BlockFormat.recordHeaderSize(flags);
+			
+			BlockFormat.writeHeader(out, flags, blockSize);
+			while(true){
+				//Read the next block
+				final int[] symbols = new int[blockSize];
+				int n = reader.read(symbols, blockSize);
+				if(n == 0){
+					break;
+				}
+				final int length = n;
+				final int maxLength = maxCodeLength;
+				pending.add(pool.submit(new Callable<EncodedBlock>() {
+					@Override
+					public EncodedBlock call() throws IOException {
+						byte[] payload = BlockEncoder.encode(symbols, length, binary ? 256 : FrequencyCounter.ALPHABET_SIZE, maxLength);
+						return new EncodedBlock(payload, length, checksums ? BlockFormat.checksum(symbols, length, binary) : 0);
+					}
+				}));
+				
+				//Keep a bounded number of blocks in memory
+				if(pending.size() >= 2 * parallelism){
+					Block b = writeBlock(out, pending.poll(), offset, firstSymbol);
+					index.add(b);
+					offset += recordHeaderSize + b.getPayloadSize();
+					firstSymbol += b.getSymbolCount();
+				}
+				if(n < blockSize){
+					break;
+				}
+			}
+			while(pending.size() > 0){
+				Block b = writeBlock(out, pending.poll(), offset, firstSymbol);
+				index.add(b);
+				offset += recordHeaderSize + b.getPayloadSize();
+				firstSymbol += b.getSymbolCount();
+			}
+			
+			//Write the index and trailer
+			out.writeInt(BlockFormat.END_OF_BLOCKS);
+			out.writeInt(index.size());
+			for(Block b : index){
+				out.writeLong(b.getOffset());
+				out.writeInt(b.getPayloadSize());
+				out.writeInt(b.getSymbolCount());
+			}
+			out.writeLong(offset);
+		} finally {
+			pool.shutdownNow();
+			reader.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Method to wait for a block to be encoded and write its record
+	 * @param out - the output to write to
+	 * @param encoded - the block being encoded
+	 * @param offset - the offset of the record in the file
+	 * @param firstSymbol - the position of the block's first symbol in the input
+	 * @return the index entry for the block
+	 * @throws IOException if the block could not be encoded or written
+	 */
+	private Block writeBlock(DataOutputStream out, Future<EncodedBlock> encoded, long offset, long firstSymbol) throws IOException{
+		EncodedBlock block;
+		try {
+			block = encoded.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to encode block", e.getCause());
+		}
+		out.writeInt(block.symbolCount);
+		out.writeInt(block.payload.length);
+		if(checksums){
+			out.writeInt(block.checksum);
+		}
+		out.write(block.payload);
+		return new Block(offset, block.payload.length, block.symbolCount, firstSymbol);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class for reading the bytes of any file as symbols 0 to 255.
+ * There is no character decoding or line terminator handling, so every byte
+ * of the file comes back exactly as it is.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ByteSymbolReader implements SymbolReader {
+	private ReadableByteChannel channel;
+	private ByteBuffer buffer;
+	private boolean endOfChannel;
+
+	/**
+	 * Constructor for the byte symbol reader
+	 * @param fileName - a string representing the name of the file to read
+	 * @throws IOException if the file can not be opened
+	 */
+	public ByteSymbolReader(String fileName) throws IOException {
+		this(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+	}
+
+	/**
+	 * Constructor for the byte symbol reader
+	 * @param channel - the channel to read
+	 */
+	public ByteSymbolReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(1 << 16);
+		this.buffer.flip();
+		this.endOfChannel = false;
+	}
+
+	/**
+	 * Method to read the next chunk of the channel
+	 * @return true if there are bytes left to read
+	 * @throws IOException if the channel can not be read
+	 */
+	private boolean fillBuffer() throws IOException{
+		while(!endOfChannel && !buffer.hasRemaining()){
+			buffer.clear();
+			if(channel.read(buffer) < 0){
+				endOfChannel = true;
+			}
+			buffer.flip();
+		}
+		return buffer.hasRemaining();
+	}
+
+	@Override
+	public int next() throws IOException{
+		if(!buffer.hasRemaining() && !fillBuffer()){
+			return -1;
+		}
+		return buffer.get() & 0xff;
+	}
+
+	@Override
+	public int read(int[] symbols, int length) throws IOException{
+		int n = 0;
+		while(n < length && (buffer.hasRemaining() || fillBuffer())){
+			byte[] bytes = buffer.array();
+			int position = buffer.position();
+			int count = Math.min(length - n, buffer.remaining());
+			for(int i = 0; i < count; i++){
+				symbols[n + i] = bytes[position + i] & 0xff;
+			}
+			buffer.position(position + count);
+			n += count;
+		}
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException{
+		channel.close();
+	}
+}
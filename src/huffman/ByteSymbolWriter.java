@@ -0,0 +1,45 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A class for writing symbols 0 to 255 to a file as bytes.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ByteSymbolWriter implements SymbolWriter {
+	private OutputStream out;
+	private byte[] buffer;
+
+	/**
+	 * Constructor for the byte symbol writer
+	 * @param out - the stream to write to
+	 */
+	public ByteSymbolWriter(OutputStream out) {
+		this.out = out;
+		this.buffer = new byte[8192];
+	}
+
+	@Override
+	public void write(int[] symbols, int offset, int length) throws IOException{
+		while(length > 0){
+			int count = Math.min(length, buffer.length);
+			for(int i = 0; i < count; i++){
+				buffer[i] = (byte) symbols[offset + i];
+			}
+			out.write(buffer, 0, count);
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public void close() throws IOException{
+		out.close();
+	}
+}
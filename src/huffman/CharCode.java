@@ -11,8 +11,8 @@ package huffman;
  *
  */
 public class CharCode implements Comparable<CharCode> {
-	private String character;
-	private byte code;
+	private int symbol;
+	private int code;
 	private int codeLength;
 	/**
 	 * @param character
@@ -20,33 +20,47 @@ public class CharCode implements Comparable<CharCode> {
 	 * @param codeLength
 	 */
 	public CharCode(String character, int codeLength) {
+		this(character.codePointAt(0), codeLength);
+	}
+	/**
+	 * Constructor for a CharCode from a Unicode code point
+	 * @param symbol - the code point of the character
+	 * @param codeLength - the length of the character's code
+	 */
+	public CharCode(int symbol, int codeLength) {
 		super();
-		this.character = character;
+		this.symbol = symbol;
 		this.code = -1;
 		this.codeLength = codeLength;
 	}
 	/**
-	 * @return the character
+	 * @return the character, made from its code point
 	 */
 	public String getCharacter() {
-		return character;
+		return new String(Character.toChars(symbol));
+	}
+	/**
+	 * @return the code point of the character, which may be outside of the Basic Multilingual Plane
+	 */
+	public int getSymbol() {
+		return symbol;
 	}
 	/**
 	 * @param character the character to set
 	 */
 	public void setCharacter(String character) {
-		this.character = character;
+		this.symbol = character.codePointAt(0);
 	}
 	/**
 	 * @return the code
 	 */
-	public byte getCode() {
+	public int getCode() {
 		return code;
 	}
 	/**
 	 * @param code the code to set
 	 */
-	public void setCode(byte code) {
+	public void setCode(int code) {
 		this.code = code;
 	}
 	/**
@@ -70,7 +84,8 @@ public class CharCode implements Comparable<CharCode> {
 			return 1;
 		}
 		if(this.codeLength == c.getCodeLength()){
-			return this.character.compareTo(c.getCharacter());
+			//Code point order, which is not the same as UTF-16 order for supplementary characters
+			return this.symbol - c.symbol;
 		}
 		System.err.println("Something went wrong comparing CharCodes.");
 		return 0;
@@ -81,6 +96,6 @@ public class CharCode implements Comparable<CharCode> {
 	 * @return a string representation of the CharCode object
 	 */
 	public String toString(){
-		return character + " Code: " + Integer.toBinaryString(code) + " Length: " + codeLength;
+		return getCharacter() + " Code: " + Integer.toBinaryString(code) + " Length: " + codeLength;
 	}
 }
@@ -0,0 +1,91 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A class for checking the checksums of decoded blocks on a thread of its own,
+ * so a block is checked while the next one is being decoded.
+ * Only one block is checked at a time, and verify waits for the last block to be checked
+ * before taking the next, so a decoder that reuses two arrays in turn never overwrites
+ * symbols that are still being checked. A bad checksum is reported by the next call
+ * to verify or finish.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ChecksumVerifier {
+	private ExecutorService thread;
+	private Future<Void> pending;
+	private boolean binary;
+
+	/**
+	 * Constructor for the checksum verifier
+	 * @param binary - true if the symbols are bytes rather than characters
+	 */
+	public ChecksumVerifier(boolean binary) {
+		this.thread = Executors.newSingleThreadExecutor();
+		this.pending = null;
+		this.binary = binary;
+	}
+
+	/**
+	 * Method to start checking a decoded block, once the last block has been checked
+	 * @param symbols - the symbols of the block, left untouched until the next call to verify or finish
+	 * @param length - the number of symbols in the block
+	 * @param expected - the checksum stored with the block
+	 * @param block - a description of the block for the error message
+	 * @throws IOException if the last block's checksum did not match
+	 */
+	public void verify(final int[] symbols, final int length, final int expected, final String block) throws IOException{
+		finish();
+		pending = thread.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				int actual = BlockFormat.checksum(symbols, length, binary);
+				if(actual != expected){
+					throw new IOException("Corrupt block file: checksum of block " + block + " is "
+							+ Integer.toHexString(actual) + ", expected " + Integer.toHexString(expected));
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Method to wait for the last block to be checked
+	 * @throws IOException if its checksum did not match
+	 */
+	public void finish() throws IOException{
+		if(pending == null){
+			return;
+		}
+		Future<Void> last = pending;
+		pending = null;
+		try {
+			last.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while checking a block", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Failed to check a block", e.getCause());
+		}
+	}
+
+	/**
+	 * Method to stop the verifier's thread, without waiting for a block being checked
+	 */
+	public void close(){
+		thread.shutdownNow();
+	}
+}
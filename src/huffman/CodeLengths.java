@@ -0,0 +1,230 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+
+/**
+ * A class for computing code lengths that are no longer than a given maximum.
+ * Lengths are computed with the package-merge algorithm, which gives the best
+ * code possible under the limit. Keeping codes short keeps the decoder's lookup
+ * table small.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class CodeLengths {
+	/**
+	 * The default maximum code length
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 15;
+	/**
+	 * The longest maximum code length that can be asked for. Decoders build lookup tables
+	 * of up to 2^MAX_LENGTH entries, and codes are written and held in ints.
+	 */
+	public static final int MAX_LENGTH = 24;
+
+	/**
+	 * Private constructor, the class only holds static methods
+	 */
+	private CodeLengths() {
+	}
+
+	/**
+	 * Method to check a maximum code length given by the user
+	 * @param maxLength - the maximum code length
+	 * @return the maximum code length
+	 * @throws IllegalArgumentException if it is not from 1 to MAX_LENGTH
+	 */
+	public static int checkMaxLength(int maxLength){
+		if(maxLength < 1 || maxLength > MAX_LENGTH){
+			throw new IllegalArgumentException("Maximum code length must be from 1 to " + MAX_LENGTH + ", not " + maxLength);
+		}
+		return maxLength;
+	}
+
+	/**
+	 * Method to read a maximum code length from a command line argument
+	 * @param value - the argument
+	 * @return the maximum code length
+	 * @throws IllegalArgumentException if it is not a number from 1 to MAX_LENGTH
+	 */
+	public static int parseMaxLength(String value){
+		int maxLength;
+		try {
+			maxLength = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Maximum code length must be a number from 1 to " + MAX_LENGTH + ", not " + value);
+		}
+		return checkMaxLength(maxLength);
+	}
+
+	/**
+	 * Method to check the code lengths of a table read from a file before a decode table is built
+	 * from them, so a corrupt file can not make the decoder allocate a huge table or give two
+	 * symbols overlapping codes. A lone symbol may have a code length of 0.
+	 * @param lengths - the code lengths of the symbols of the table
+	 * @param n - the number of symbols
+	 * @throws IOException if a length is 0 in a table of more than one symbol or longer than MAX_LENGTH,
+	 * or the lengths do not form a prefix code
+	 */
+	public static void checkLengths(int[] lengths, int n) throws IOException{
+		long kraft = 0;
+		for(int i = 0; i < n; i++){
+			int length = lengths[i];
+			if(length < 0 || length > MAX_LENGTH || (length == 0 && n > 1)){
+				throw new IOException("Corrupt code table: code length " + length);
+			}
+			kraft += 1L << (MAX_LENGTH - length);
+		}
+		if(kraft > 1L << MAX_LENGTH){
+			throw new IOException("Corrupt code table: code lengths do not form a prefix code");
+		}
+	}
+
+	/**
+	 * Method to get the shortest maximum code length that can hold an alphabet
+	 * @param n - the number of symbols in the alphabet
+	 * @return the smallest length L with 2^L >= n
+	 */
+	public static int minimumMaxLength(int n){
+		int length = 0;
+		while((1L << length) < n){
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Method to compute optimal code lengths with no limit, without building a tree,
+	 * using the in-place method of Moffat and Katajainen. A copy of the frequencies is
+	 * turned into parent pointers, then into the depths of the internal nodes, and
+	 * then into the depths of the leaves, which are the code lengths.
+	 * @param freqs - the frequencies of the symbols, sorted in increasing order
+	 * @return the code length of every symbol, in the same order as freqs
+	 */
+	public static int[] huffmanLengths(long[] freqs){
+		int n = freqs.length;
+		int[] lengths = new int[n];
+		if(n < 2){
+			return lengths;
+		}
+		long[] a = freqs.clone();
+
+		//Left to right: combine the two lightest items, either leaves from the front of the
+		//unused leaves or internal nodes from root, leaving a pointer to the parent behind
+		a[0] += a[1];
+		int root = 0;
+		int leaf = 2;
+		for(int next = 1; next < n - 1; next++){
+			if(leaf >= n || a[root] < a[leaf]){
+				a[next] = a[root];
+				a[root] = next;
+				root++;
+			}else{
+				a[next] = a[leaf];
+				leaf++;
+			}
+			if(leaf >= n || (root < next && a[root] < a[leaf])){
+				a[next] += a[root];
+				a[root] = next;
+				root++;
+			}else{
+				a[next] += a[leaf];
+				leaf++;
+			}
+		}
+
+		//Right to left: turn the parent pointers into the depths of the internal nodes
+		a[n - 2] = 0;
+		for(int next = n - 3; next >= 0; next--){
+			a[next] = a[(int) a[next]] + 1;
+		}
+
+		//Right to left: every level has room for twice the internal nodes of the level above,
+		//and the room not taken by internal nodes is taken by leaves
+		int available = 1;
+		int used = 0;
+		int depth = 0;
+		root = n - 2;
+		int next = n - 1;
+		while(available > 0){
+			while(root >= 0 && a[root] == depth){
+				used++;
+				root--;
+			}
+			while(available > used){
+				lengths[next] = depth;
+				next--;
+				available--;
+			}
+			available = 2 * used;
+			depth++;
+			used = 0;
+		}
+		return lengths;
+	}
+
+	/**
+	 * Method to compute optimal code lengths no longer than maxLength with the package-merge algorithm
+	 * @param freqs - the frequencies of the symbols, sorted in increasing order
+	 * @param maxLength - the maximum code length, raised if it is too short for the alphabet
+	 * @return the code length of every symbol, in the same order as freqs
+	 */
+	public static int[] limitedLengths(long[] freqs, int maxLength){
+		int n = freqs.length;
+		int[] lengths = new int[n];
+		if(n < 2){
+			return lengths;
+		}
+		maxLength = Math.max(maxLength, minimumMaxLength(n));
+
+		//Build the list of every level, from the deepest up. The deepest level only holds
+		//the symbols, every other level holds the symbols merged with packages of two
+		//items of the level below. isLeaf records which items are symbols.
+		boolean[][] isLeaf = new boolean[maxLength][];
+		long[] list = freqs;
+		isLeaf[maxLength - 1] = new boolean[n];
+		for(int i = 0; i < n; i++){
+			isLeaf[maxLength - 1][i] = true;
+		}
+		for(int level = maxLength - 2; level >= 0; level--){
+			int packages = list.length / 2;
+			long[] merged = new long[n + packages];
+			boolean[] leaf = new boolean[n + packages];
+			int i = 0;
+			int j = 0;
+			for(int k = 0; k < merged.length; k++){
+				long packageWeight = j < packages ? list[2 * j] + list[2 * j + 1] : Long.MAX_VALUE;
+				if(i < n && freqs[i] <= packageWeight){
+					merged[k] = freqs[i];
+					leaf[k] = true;
+					i++;
+				}else{
+					merged[k] = packageWeight;
+					j++;
+				}
+			}
+			list = merged;
+			isLeaf[level] = leaf;
+		}
+
+		//Select the first 2n - 2 items of the top level and follow the packages down.
+		//Every time a symbol is selected its code gets one bit longer.
+		int selected = 2 * n - 2;
+		for(int level = 0; level < maxLength && selected > 0; level++){
+			int leaves = 0;
+			for(int k = 0; k < selected; k++){
+				if(isLeaf[level][k]){
+					leaves++;
+				}
+			}
+			for(int k = 0; k < leaves; k++){
+				lengths[k]++;
+			}
+			selected = 2 * (selected - leaves);
+		}
+		return lengths;
+	}
+}
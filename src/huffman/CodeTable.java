@@ -0,0 +1,161 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+/**
+ * A class for a table of canonical codes held in int arrays: the symbols in code point order,
+ * with the code length and the code of each. Codes are assigned the same way as generateCodes
+ * and canonicalCodes, the longest codes first starting at 0 and codes of the same length going
+ * up with the symbol, by sorting packed longs rather than a priority queue of CharCodes.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public final class CodeTable {
+	private int[] symbols;
+	private int[] lengths;
+	private int[] codes;
+	private int maxLength;
+
+	/**
+	 * Constructor for a code table from code lengths, assigning canonical codes
+	 * @param symbols - the symbols, in any order
+	 * @param lengths - the code length of each symbol
+	 * @param n - the number of symbols
+	 */
+	public CodeTable(int[] symbols, int[] lengths, int n) {
+		//A symbol is at most 21 bits and a length at most 8, so sorting the packed pairs sorts by symbol
+		long[] sorted = new long[n];
+		for(int i = 0; i < n; i++){
+			sorted[i] = (long) symbols[i] << 8 | lengths[i];
+		}
+		Arrays.sort(sorted);
+		this.symbols = new int[n];
+		this.lengths = new int[n];
+		this.codes = new int[n];
+		this.maxLength = 0;
+		for(int i = 0; i < n; i++){
+			this.symbols[i] = (int) (sorted[i] >>> 8);
+			this.lengths[i] = (int) (sorted[i] & 0xff);
+			maxLength = Math.max(maxLength, this.lengths[i]);
+		}
+		assignCodes(this.lengths, codes, n, new int[maxLength + 1]);
+	}
+
+	/**
+	 * Method to assign canonical codes to code lengths given in symbol order: the longest codes come first,
+	 * starting at 0, and codes of the same length go up with the symbol. Every canonical code of the
+	 * program is assigned here, so encoders and decoders of every format agree on the codes.
+	 * @param lengths - the code length of every symbol, 0 for a symbol with no code or a lone symbol
+	 * @param codes - the array to store the code of every symbol in, 0 for a length of 0
+	 * @param n - the number of symbols
+	 * @param nextCode - scratch space for more ints than the longest code length
+	 */
+	static void assignCodes(int[] lengths, int[] codes, int n, int[] nextCode){
+		for(int l = 0; l < nextCode.length; l++){
+			nextCode[l] = 0;
+		}
+		for(int i = 0; i < n; i++){
+			nextCode[lengths[i]]++;
+		}
+		//nextCode holds the number of codes of each length, turn it into the first code of each length.
+		//Moving up a length drops a bit, rounding up so codes stay prefix free when the code is not complete.
+		int code = 0;
+		for(int l = nextCode.length - 1; l > 0; l--){
+			int count = nextCode[l];
+			nextCode[l] = code;
+			code = (code + count + 1) >> 1;
+		}
+		for(int i = 0; i < n; i++){
+			codes[i] = lengths[i] > 0 ? nextCode[lengths[i]]++ : 0;
+		}
+	}
+
+	/**
+	 * Constructor for a code table from CharCodes that already have codes, keeping their codes
+	 * @param charCodes - the CharCodes of the alphabet, with codes assigned by generateCodes
+	 */
+	public CodeTable(Collection<CharCode> charCodes) {
+		int n = charCodes.size();
+		this.symbols = new int[n];
+		this.lengths = new int[n];
+		this.codes = new int[n];
+		this.maxLength = 0;
+		int i = 0;
+		for(CharCode c : charCodes){
+			symbols[i] = c.getSymbol();
+			lengths[i] = c.getCodeLength();
+			codes[i] = c.getCode() & ((1 << lengths[i]) - 1);
+			maxLength = Math.max(maxLength, lengths[i]);
+			i++;
+		}
+	}
+
+	/**
+	 * @return the number of symbols in the table
+	 */
+	public int size() {
+		return symbols.length;
+	}
+
+	/**
+	 * @param i - the index of the symbol
+	 * @return the symbol
+	 */
+	public int getSymbol(int i) {
+		return symbols[i];
+	}
+
+	/**
+	 * @param i - the index of the symbol
+	 * @return the code length of the symbol
+	 */
+	public int getCodeLength(int i) {
+		return lengths[i];
+	}
+
+	/**
+	 * @param i - the index of the symbol
+	 * @return the code of the symbol, in its low getCodeLength(i) bits
+	 */
+	public int getCode(int i) {
+		return codes[i];
+	}
+
+	/**
+	 * @return the longest code length of the table
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @return the largest symbol of the table, 0 if it is empty
+	 */
+	public int getMaxSymbol() {
+		int maxSymbol = 0;
+		for(int i = 0; i < symbols.length; i++){
+			maxSymbol = Math.max(maxSymbol, symbols[i]);
+		}
+		return maxSymbol;
+	}
+
+	/**
+	 * Method to make a CharCode with its code for every symbol, for the methods that take CharCodes
+	 * @return a priority queue of CharCodes with their code lengths and codes set
+	 */
+	public PriorityQueue<CharCode> toCharCodes(){
+		PriorityQueue<CharCode> q = new PriorityQueue<CharCode>(Math.max(symbols.length, 1));
+		for(int i = 0; i < symbols.length; i++){
+			CharCode c = new CharCode(symbols[i], lengths[i]);
+			c.setCode(codes[i]);
+			q.add(c);
+		}
+		return q;
+	}
+}
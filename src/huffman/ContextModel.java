@@ -0,0 +1,525 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A class for encoding text with order-1 context modeling: each character is coded with a table
+ * chosen by the character before it, so text that repeats the same pairs of characters, such as logs,
+ * gets shorter codes than one table for the whole file can give it.
+ * The first MAX_CONTEXTS different characters of the file each get a context, and every other character,
+ * and the start of the file, share one more. A context only gets its own table when that costs fewer bits,
+ * table included, than coding it with the whole file's table; the rest are clustered into one shared table.
+ * The histogram of every context is gathered in the same pass that counts the characters.
+ * <pre>
+ * header:  00 'H' 'U' 'C', version (byte), symbol count (long),
+ *          alphabet size N (int), the code points of the alphabet (varints), in order of first appearance
+ *          table count T (16 bits), the table of every context (just enough bits for T), the start context last
+ *          for each table, the code length of every character of the alphabet, see writeLengths
+ * codes:   the code of every character, from the table of the context of the character before it
+ * </pre>
+ * Characters are Unicode code points, coded by their index in the alphabet, so the tables stay small
+ * however large the characters are. Version 1 files, with 16-bit characters, are still decoded.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ContextModel {
+	/**
+	 * The first bytes of every context modeled file
+	 */
+	public static final byte[] MAGIC = {0, 'H', 'U', 'C'};
+	/**
+	 * The version of the format written by this class
+	 */
+	public static final int VERSION = 2;
+	/**
+	 * The number of characters that get a context of their own
+	 */
+	public static final int MAX_CONTEXTS = 255;
+	/**
+	 * The longest code of any table, raised if the alphabet does not fit,
+	 * so the decode table of every context stays small
+	 */
+	public static final int MAX_CODE_LENGTH = 12;
+	private static final int LENGTH_BITS = 5;
+	private static final int RUN_BITS = 7;
+	private static final int PAGE_BITS = 8;
+
+	private int[] alphabet;
+	private int alphabetSize;
+	private int[][] pages;
+	private long[][] counts;
+	private long symbolCount;
+	private int contexts;
+	private int[] tableOf;
+	private int[][] lengths;
+
+	/**
+	 * Private constructor, use encode and decode
+	 */
+	private ContextModel() {
+		this.alphabet = new int[16];
+		this.alphabetSize = 0;
+		this.pages = new int[(Character.MAX_CODE_POINT >> PAGE_BITS) + 1][];
+		this.counts = new long[MAX_CONTEXTS + 1][];
+		this.symbolCount = 0;
+	}
+
+	/**
+	 * Method to encode a text file with a table for each context
+	 * @param sourceFile - a string representing the input file name
+	 * @param targetFile - a string representing the output file name
+	 * @return the number of tables written, including the shared table
+	 * @throws IOException if a file can not be read or written
+	 */
+	public static int encode(String sourceFile, String targetFile) throws IOException{
+		ContextModel model = new ContextModel();
+		model.count(sourceFile);
+		model.buildTables();
+
+		FileChannel outFile = FileChannel.open(Paths.get(targetFile), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			BitWriter out = new BitWriter(outFile, 1 << 16);
+			model.writeHeader(out);
+			EncodeTable[] byContext = new EncodeTable[model.contexts + 1];
+			EncodeTable[] tables = new EncodeTable[model.lengths.length];
+			for(int t = 0; t < tables.length; t++){
+				CodeTable codes = model.codes(t);
+				tables[t] = codes.size() == 0 ? null : new EncodeTable(codes);
+			}
+			for(int c = 0; c <= model.contexts; c++){
+				byContext[c] = tables[model.tableOf[c]];
+			}
+
+			//Encode the file a second time, the same way it was counted
+			int k = model.contexts;
+			TextSymbolReader reader = new TextSymbolReader(sourceFile, true);
+			try {
+				int context = k;
+				int c;
+				while((c = reader.next()) != -1){
+					int i = model.indexOf(c);
+					byContext[context].writeSymbol(out, i);
+					context = i < k ? i : k;
+				}
+			} finally {
+				reader.close();
+			}
+			out.flush();
+		} finally {
+			outFile.close();
+		}
+		return model.lengths.length;
+	}
+
+	/**
+	 * Method to count the characters of a text file, and the characters that follow each context
+	 * @param sourceFile - a string representing the input file name
+	 * @throws IOException if the file can not be read
+	 */
+	private void count(String sourceFile) throws IOException{
+		TextSymbolReader reader = new TextSymbolReader(sourceFile, true);
+		try {
+			//Until the alphabet is known, the shared context is counted in the last row
+			int context = MAX_CONTEXTS;
+			int c;
+			while((c = reader.next()) != -1){
+				int i = indexOf(c);
+				if(i < 0){
+					i = add(c);
+				}
+				long[] row = counts[context];
+				if(row == null || i >= row.length){
+					row = Arrays.copyOf(row == null ? new long[0] : row, Math.max(i + 1, 2 * (row == null ? 8 : row.length)));
+					counts[context] = row;
+				}
+				row[i]++;
+				context = i < MAX_CONTEXTS ? i : MAX_CONTEXTS;
+				symbolCount++;
+			}
+		} finally {
+			reader.close();
+		}
+		contexts = Math.min(alphabetSize, MAX_CONTEXTS);
+		counts[contexts] = counts[MAX_CONTEXTS];
+		counts = Arrays.copyOf(counts, contexts + 1);
+		for(int c = 0; c <= contexts; c++){
+			counts[c] = Arrays.copyOf(counts[c] == null ? new long[0] : counts[c], alphabetSize);
+		}
+	}
+
+	/**
+	 * Method to get the index of a character in the alphabet. The indexes are kept in pages
+	 * of 256 code points, made when a character of the page is first added
+	 * @param c - the code point of the character
+	 * @return the index, or -1 if the character is not in the alphabet
+	 */
+	private int indexOf(int c){
+		int[] page = pages[c >> PAGE_BITS];
+		return page == null ? -1 : page[c & ((1 << PAGE_BITS) - 1)] - 1;
+	}
+
+	/**
+	 * Method to add a character to the end of the alphabet
+	 * @param c - the code point of the character
+	 * @return the index of the character
+	 */
+	private int add(int c){
+		int[] page = pages[c >> PAGE_BITS];
+		if(page == null){
+			page = new int[1 << PAGE_BITS];
+			pages[c >> PAGE_BITS] = page;
+		}
+		if(alphabetSize == alphabet.length){
+			alphabet = Arrays.copyOf(alphabet, 2 * alphabetSize);
+		}
+		alphabet[alphabetSize] = c;
+		alphabetSize++;
+		//Stored plus one, so an empty entry is 0
+		page[c & ((1 << PAGE_BITS) - 1)] = alphabetSize;
+		return alphabetSize - 1;
+	}
+
+	/**
+	 * Method to choose the table of every context, and compute the code lengths of the tables.
+	 * A context gets its own table only if its codes and its table take fewer bits than its codes
+	 * from the table of the whole file; the others share a table built from their added counts
+	 */
+	private void buildTables(){
+		long[] total = new long[alphabetSize];
+		for(int c = 0; c <= contexts; c++){
+			for(int i = 0; i < alphabetSize; i++){
+				total[i] += counts[c][i];
+			}
+		}
+		int[] order0 = codeLengths(total);
+		tableOf = new int[contexts + 1];
+		int[][] own = new int[contexts + 1][];
+		long[] shared = new long[alphabetSize];
+		int tables = 1;
+		for(int c = 0; c <= contexts; c++){
+			long[] row = counts[c];
+			int[] l = codeLengths(row);
+			long ownBits = lengthsSize(l);
+			long sharedBits = 0;
+			for(int i = 0; i < alphabetSize; i++){
+				ownBits += row[i] * l[i];
+				sharedBits += row[i] * order0[i];
+			}
+			if(ownBits < sharedBits){
+				own[c] = l;
+				tableOf[c] = tables;
+				tables++;
+			}else{
+				for(int i = 0; i < alphabetSize; i++){
+					shared[i] += row[i];
+				}
+			}
+		}
+		lengths = new int[tables][];
+		lengths[0] = codeLengths(shared);
+		for(int c = 0; c <= contexts; c++){
+			if(own[c] != null){
+				lengths[tableOf[c]] = own[c];
+			}
+		}
+	}
+
+	/**
+	 * Method to compute the code lengths for a histogram
+	 * @param row - the number of times each character of the alphabet appears, indexed by alphabet index
+	 * @return the code length of every character, or -1 for characters that do not appear
+	 */
+	private static int[] codeLengths(long[] row){
+		int n = 0;
+		for(int i = 0; i < row.length; i++){
+			if(row[i] > 0){
+				n++;
+			}
+		}
+		//Sort the characters by count, with the index in the low bits
+		long[] keys = new long[n];
+		n = 0;
+		for(int i = 0; i < row.length; i++){
+			if(row[i] > 0){
+				keys[n] = row[i] << 21 | i;
+				n++;
+			}
+		}
+		Arrays.sort(keys);
+		long[] freqs = new long[n];
+		for(int j = 0; j < n; j++){
+			freqs[j] = keys[j] >>> 21;
+		}
+		int[] sorted = CodeLengths.huffmanLengths(freqs);
+		if(n > 0 && sorted[0] > MAX_CODE_LENGTH){
+			sorted = CodeLengths.limitedLengths(freqs, MAX_CODE_LENGTH);
+		}
+		int[] lengths = new int[row.length];
+		Arrays.fill(lengths, -1);
+		for(int j = 0; j < n; j++){
+			lengths[(int) (keys[j] & 0x1fffff)] = sorted[j];
+		}
+		return lengths;
+	}
+
+	/**
+	 * Method to get the canonical codes of a table, with alphabet indexes as the characters
+	 * @param t - the table
+	 * @return the codes of the characters in the table
+	 */
+	private CodeTable codes(int t){
+		int[] indexes = new int[alphabetSize];
+		int[] present = new int[alphabetSize];
+		int used = 0;
+		for(int i = 0; i < alphabetSize; i++){
+			if(lengths[t][i] >= 0){
+				indexes[used] = i;
+				present[used] = lengths[t][i];
+				used++;
+			}
+		}
+		return new CodeTable(indexes, present, used);
+	}
+
+	/**
+	 * Method to write the header
+	 * @param out - the bit writer at the start of the file
+	 * @throws IOException if the header can not be written
+	 */
+	private void writeHeader(BitWriter out) throws IOException{
+		for(int i = 0; i < MAGIC.length; i++){
+			out.write(MAGIC[i], 8);
+		}
+		out.write(VERSION, 8);
+		out.write(symbolCount >>> 32, 32);
+		out.write(symbolCount, 32);
+		out.write(alphabetSize, 32);
+		for(int i = 0; i < alphabetSize; i++){
+			out.writeVarint(alphabet[i]);
+		}
+		out.write(lengths.length, 16);
+		int tableBits = CodeLengths.minimumMaxLength(lengths.length);
+		for(int c = 0; c <= contexts; c++){
+			out.write(tableOf[c], tableBits);
+		}
+		for(int t = 0; t < lengths.length; t++){
+			writeLengths(out, lengths[t]);
+		}
+	}
+
+	/**
+	 * Method to write the code lengths of a table: LENGTH_BITS bits holding the length plus one for
+	 * a character in the table, or 0 followed by RUN_BITS bits holding the number of characters after it
+	 * that are not in the table either
+	 * @param out - the bit writer to write to
+	 * @param l - the code length of every character, or -1 for characters not in the table
+	 * @throws IOException if the lengths can not be written
+	 */
+	private static void writeLengths(BitWriter out, int[] l) throws IOException{
+		int i = 0;
+		while(i < l.length){
+			if(l[i] >= 0){
+				out.write(l[i] + 1, LENGTH_BITS);
+				i++;
+			}else{
+				int run = 1;
+				while(i + run < l.length && l[i + run] < 0 && run < 1 << RUN_BITS){
+					run++;
+				}
+				out.write(0, LENGTH_BITS);
+				out.write(run - 1, RUN_BITS);
+				i += run;
+			}
+		}
+	}
+
+	/**
+	 * Method to get the number of bits writeLengths takes for a table
+	 * @param l - the code length of every character, or -1 for characters not in the table
+	 * @return the number of bits
+	 */
+	private static long lengthsSize(int[] l){
+		long bits = 0;
+		int i = 0;
+		while(i < l.length){
+			if(l[i] >= 0){
+				bits += LENGTH_BITS;
+				i++;
+			}else{
+				int run = 1;
+				while(i + run < l.length && l[i + run] < 0 && run < 1 << RUN_BITS){
+					run++;
+				}
+				bits += LENGTH_BITS + RUN_BITS;
+				i += run;
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Method to read the code lengths of a table written by writeLengths
+	 * @param in - the bit reader positioned at the table
+	 * @param n - the size of the alphabet
+	 * @return the code length of every character, or -1 for characters not in the table
+	 * @throws IOException if the file can not be read or the table is corrupt
+	 */
+	private static int[] readLengths(BitReader in, int n) throws IOException{
+		int[] l = new int[n];
+		int i = 0;
+		while(i < n){
+			int length = (int) in.read(LENGTH_BITS);
+			if(length > 0){
+				l[i] = length - 1;
+				i++;
+			}else{
+				int run = (int) in.read(RUN_BITS) + 1;
+				if(i + run > n){
+					throw new IOException("Corrupt context table");
+				}
+				Arrays.fill(l, i, i + run, -1);
+				i += run;
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Method to decode a context modeled file
+	 * @param sourceFile - a string representing the encoded file name
+	 * @param targetFile - a string representing the output file name
+	 * @return the number of characters decoded
+	 * @throws IOException if a file can not be read or written, or the encoded file is corrupt
+	 */
+	public static long decode(String sourceFile, String targetFile) throws IOException{
+		FileChannel inFile = FileChannel.open(Paths.get(sourceFile), StandardOpenOption.READ);
+		try {
+			BitReader in = new BitReader(inFile, 1 << 16);
+			for(int i = 0; i < MAGIC.length; i++){
+				if((byte) in.read(8) != MAGIC[i]){
+					throw new IOException(sourceFile + " is not a context modeled file");
+				}
+			}
+			int version = (int) in.read(8);
+			if(version != 1 && version != VERSION){
+				throw new IOException("Unsupported context modeled file version " + version);
+			}
+			long symbols = in.read(32) << 32 | in.read(32);
+			int n = (int) in.read(32);
+			if(symbols < 0 || n < 0 || n > Character.MAX_CODE_POINT + 1){
+				throw new IOException("Corrupt context modeled file header");
+			}
+			int[] alphabet = new int[n];
+			for(int i = 0; i < n; i++){
+				long c = version == 1 ? in.read(16) : in.readVarint();
+				if(c > Character.MAX_CODE_POINT){
+					throw new IOException("Corrupt context modeled file header");
+				}
+				alphabet[i] = (int) c;
+			}
+			int k = Math.min(n, MAX_CONTEXTS);
+			int tableCount = (int) in.read(16);
+			int tableBits = CodeLengths.minimumMaxLength(tableCount);
+			int[] tableOf = new int[k + 1];
+			for(int c = 0; c <= k; c++){
+				tableOf[c] = (int) in.read(tableBits);
+				if(tableOf[c] >= tableCount){
+					throw new IOException("Corrupt context modeled file header");
+				}
+			}
+			DecodeTable[] tables = new DecodeTable[tableCount];
+			for(int t = 0; t < tableCount; t++){
+				int[] l = readLengths(in, n);
+				int[] indexes = new int[n];
+				int[] present = new int[n];
+				int used = 0;
+				for(int i = 0; i < n; i++){
+					if(l[i] >= 0){
+						indexes[used] = i;
+						present[used] = l[i];
+						used++;
+					}
+				}
+				CodeLengths.checkLengths(present, used);
+				if(used > 0){
+					tables[t] = new DecodeTable(new CodeTable(indexes, present, used));
+				}
+			}
+			DecodeTable[] byContext = new DecodeTable[k + 1];
+			for(int c = 0; c <= k; c++){
+				byContext[c] = tables[tableOf[c]];
+			}
+
+			BufferedWriter output = new BufferedWriter(new FileWriter(targetFile), 1 << 16);
+			try {
+				char[] chunk = new char[8192];
+				int chunkLength = 0;
+				int context = k;
+				for(long s = 0; s < symbols; s++){
+					DecodeTable table = byContext[context];
+					int i = table == null ? -1 : table.decodeSymbol(in);
+					if(i < 0 || i >= n){
+						throw new IOException("Corrupt context modeled file: invalid code after " + s + " characters");
+					}
+					if(chunkLength >= chunk.length - 1){
+						//A symbol count larger than the codes would otherwise decode zero bits forever
+						if(in.isPastEnd()){
+							throw new IOException("Corrupt context modeled file: truncated after " + s + " characters");
+						}
+						output.write(chunk, 0, chunkLength);
+						chunkLength = 0;
+					}
+					chunkLength += Character.toChars(alphabet[i], chunk, chunkLength);
+					context = i < k ? i : k;
+				}
+				output.write(chunk, 0, chunkLength);
+			} finally {
+				output.close();
+			}
+			if(in.isPastEnd()){
+				throw new IOException("Corrupt context modeled file: truncated");
+			}
+			return symbols;
+		} finally {
+			inFile.close();
+		}
+	}
+
+	/**
+	 * Returns true if the file starts with the context modeled file magic bytes
+	 * @param fileName - a string representing the name of the file
+	 * @return isContextFile
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isContextFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ByteBuffer b = ByteBuffer.allocate(MAGIC.length);
+		while(b.hasRemaining()){
+			if(channel.read(b) < 0){
+				break;
+			}
+		}
+		channel.close();
+		if(b.hasRemaining()){
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++){
+			if(b.get(i) != MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
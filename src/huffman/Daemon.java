@@ -0,0 +1,383 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Method to run a daemon that encodes and decodes files for other processes on the same machine,
+ * so they do not pay for starting a JVM for every file, and share its compiled code and loaded tables.
+ * The daemon listens on the loopback address, on port 6061 or on PORT using the -port argument,
+ * and serves connections on a pool of THREADS threads set by the -threads argument, with a bounded
+ * number of connections waiting for a thread; connections beyond that are refused and closed.
+ * Any local process, and any web page that can make the browser post to the loopback address, can connect,
+ * so the first line of every connection must be the secret held in the token file, ~/.huffman-daemon-token
+ * or TOKEN_FILE using the -token argument. The daemon creates the file with a random secret, readable
+ * only by its owner, if it does not exist, and refuses to start if others can read it. A connection
+ * whose first line is not the secret gets back ERROR Not authorized and is closed, and one that sends
+ * nothing within SECRET_TIMEOUT is closed.
+ * After the secret, a connection sends one request per line, with the arguments Batch takes, for a single file:
+ * [-x] [-b BLOCK_SIZE] [-l MAX_CODE_LENGTH] [-raw] [-t TABLE_ID] [-d TABLE_DIR] [-a] [-i] [-ctx] [-crc] [-append] SOURCEFILE TARGETFILE
+ * Arguments are separated by spaces, and may be put in double quotes. File names and TABLE_DIR must be
+ * absolute paths inside ROOT_DIR, set by the -root argument, and TABLE_DIR is ROOT_DIR if it is not given.
+ * Every request gets one line back, OK BYTES_IN BYTES_OUT MICROSECONDS or ERROR MESSAGE, and is logged
+ * on standard output with its latency.
+ * The request STATS gets back OK REQUESTS FAILED MEAN_MICROSECONDS MAX_MICROSECONDS for every request so far
+ * Usage: java huffman.Daemon -root ROOT_DIR [-port PORT] [-token TOKEN_FILE] [-threads THREADS]
+ * @author Christopher Barnett
+ */
+public class Daemon {
+	/**
+	 * The port the daemon listens on by default
+	 */
+	public static final int DEFAULT_PORT = 6061;
+	/**
+	 * The number of connections that may wait for a thread before more are refused
+	 */
+	public static final int MAX_WAITING = 64;
+	/**
+	 * The time a new connection has to send the secret, in milliseconds
+	 */
+	public static final int SECRET_TIMEOUT = 10000;
+	private static final String USAGE = "Usage: java huffman.Daemon -root ROOT_DIR [-port PORT] [-token TOKEN_FILE] [-threads THREADS]";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private Path root;
+	private byte[] secret;
+	private long requests = 0;
+	private long failures = 0;
+	private long totalMicros = 0;
+	private long maxMicros = 0;
+
+	/**
+	 * Constructor for the daemon
+	 * @param root - the directory every file of a request must be inside
+	 * @param secret - the secret every connection must start with
+	 * @throws IOException if the root directory does not exist
+	 */
+	public Daemon(String root, String secret) throws IOException {
+		this.root = Paths.get(root).toRealPath();
+		if(!Files.isDirectory(this.root)){
+			throw new IOException(root + " is not a directory");
+		}
+		this.secret = secret.getBytes(UTF_8);
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		String root = null;
+		String tokenFile = new File(System.getProperty("user.home"), ".huffman-daemon-token").getPath();
+		int threads = Runtime.getRuntime().availableProcessors();
+		//Process the command line arguments
+				for(int i = 0; i < args.length; i++){
+					if(args[i].equals("-port")){
+						i++;
+						port = Integer.parseInt(args[i]);
+					}else if(args[i].equals("-root")){
+						i++;
+						root = args[i];
+					}else if(args[i].equals("-token")){
+						i++;
+						tokenFile = args[i];
+					}else if(args[i].equals("-threads")){
+						i++;
+						threads = Integer.parseInt(args[i]);
+					}
+				}
+		if(root == null || threads <= 0){
+			System.err.println(USAGE);
+			return;
+		}
+		try {
+			new Daemon(root, readToken(tokenFile)).serve(port, threads);
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method to read the secret from a token file, first creating the file with a random secret
+	 * that only its owner can read and write if it does not exist
+	 * @param tokenFile - a string representing the name of the token file
+	 * @return the secret
+	 * @throws IOException if the file can not be read or written, others can read it, or it is empty
+	 */
+	public static String readToken(String tokenFile) throws IOException{
+		Path path = Paths.get(tokenFile);
+		boolean posix = Files.getFileStore(path.toAbsolutePath().getParent()).supportsFileAttributeView("posix");
+		if(!Files.exists(path)){
+			byte[] random = new byte[32];
+			new SecureRandom().nextBytes(random);
+			StringBuilder token = new StringBuilder();
+			for(int i = 0; i < random.length; i++){
+				token.append(String.format("%02x", random[i] & 0xff));
+			}
+			try {
+				if(posix){
+					Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+				}else{
+					Files.createFile(path);
+				}
+				Files.write(path, Collections.singletonList(token.toString()), UTF_8);
+			} catch (FileAlreadyExistsException e) {
+				//Another daemon made it first, use its secret
+			}
+		}
+		if(posix){
+			Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+			permissions.remove(PosixFilePermission.OWNER_READ);
+			permissions.remove(PosixFilePermission.OWNER_WRITE);
+			if(!permissions.isEmpty()){
+				throw new IOException(tokenFile + " must only be readable and writable by its owner (chmod 600)");
+			}
+		}
+		List<String> lines = Files.readAllLines(path, UTF_8);
+		String token = lines.isEmpty() ? "" : lines.get(0).trim();
+		if(token.length() == 0){
+			throw new IOException(tokenFile + " holds no secret");
+		}
+		return token;
+	}
+
+	/**
+	 * Method to accept connections until the process is stopped
+	 * @param port - the port to listen on
+	 * @param threads - the number of connections to serve at the same time
+	 * @throws IOException if the port can not be listened on
+	 */
+	public void serve(int port, int threads) throws IOException{
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(null));
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_WAITING));
+		System.out.println("Listening on " + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort());
+		try {
+			while(true){
+				final Socket socket = server.accept();
+				try {
+					pool.execute(new Runnable() {
+						@Override
+						public void run() {
+							handle(socket);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					//Every thread is busy and too many connections are waiting
+					socket.close();
+				}
+			}
+		} finally {
+			pool.shutdown();
+			server.close();
+		}
+	}
+
+	/**
+	 * Method to answer the requests of a connection until it is closed
+	 * @param socket - the connection
+	 */
+	private void handle(Socket socket){
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+			socket.setSoTimeout(SECRET_TIMEOUT);
+			String line = in.readLine();
+			if(line == null || !MessageDigest.isEqual(line.trim().getBytes(UTF_8), secret)){
+				out.write("ERROR Not authorized\n");
+				out.flush();
+				return;
+			}
+			socket.setSoTimeout(0);
+			while((line = in.readLine()) != null){
+				line = line.trim();
+				if(line.length() == 0){
+					continue;
+				}
+				out.write(line.equals("STATS") ? stats() : request(line));
+				out.write("\n");
+				out.flush();
+			}
+		} catch (IOException e) {
+			//The client went away, there is no one to tell
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Method to encode or decode one file
+	 * @param line - the arguments of the request
+	 * @return the line to send back
+	 */
+	private String request(String line){
+		long start = System.nanoTime();
+		String result;
+		String log;
+		boolean failed = false;
+		try {
+			String[] args = split(line);
+			Batch batch = new Batch();
+			//Tables come from the root directory unless the request names another directory inside it
+			batch.parseArgument(new String[] {"-d", root.toString()}, 0);
+			ArrayList<String> files = new ArrayList<String>();
+			for(int i = 0; i < args.length; i++){
+				int last = batch.parseArgument(args, i);
+				if(last >= 0){
+					if(args[i].equals("-d")){
+						checkPath(args[last], false);
+					}
+					i = last;
+				}else{
+					files.add(args[i]);
+				}
+			}
+			if(files.size() != 2){
+				throw new IllegalArgumentException("Expected SOURCEFILE TARGETFILE");
+			}
+			checkPath(files.get(0), false);
+			checkPath(files.get(1), true);
+			batch.transcode(files.get(0), files.get(1));
+			long bytesIn = new File(files.get(0)).length();
+			long bytesOut = new File(files.get(1)).length();
+			long micros = (System.nanoTime() - start) / 1000;
+			result = "OK " + bytesIn + " " + bytesOut + " " + micros;
+			log = String.format("OK     %s -> %s  %d -> %d bytes %d us", files.get(0), files.get(1), bytesIn, bytesOut, micros);
+		} catch (IOException e) {
+			failed = true;
+			result = "ERROR " + e;
+			log = String.format("FAILED %s  %s %d us", line, e, (System.nanoTime() - start) / 1000);
+		} catch (RuntimeException e) {
+			failed = true;
+			result = "ERROR " + e;
+			log = String.format("FAILED %s  %s %d us", line, e, (System.nanoTime() - start) / 1000);
+		}
+		record((System.nanoTime() - start) / 1000, failed);
+		synchronized(System.out){
+			System.out.println(log);
+		}
+		return result.replace('\n', ' ').replace('\r', ' ');
+	}
+
+	/**
+	 * Method to check that a file named in a request is inside the root directory.
+	 * Symbolic links are followed, so a link inside the root can not lead outside it
+	 * @param name - the absolute name of the file
+	 * @param create - true if the file may not exist yet, in which case its directory is checked
+	 * @throws IOException if the name is not absolute or the file is outside the root directory
+	 */
+	private void checkPath(String name, boolean create) throws IOException{
+		Path path = Paths.get(name);
+		if(!path.isAbsolute()){
+			throw new IOException(name + " is not an absolute path");
+		}
+		path = path.normalize();
+		Path real;
+		try {
+			real = path.toRealPath();
+		} catch (NoSuchFileException e) {
+			if(!create || path.getParent() == null){
+				throw e;
+			}
+			real = path.getParent().toRealPath().resolve(path.getFileName());
+		}
+		if(!real.startsWith(root)){
+			throw new IOException(name + " is outside " + root);
+		}
+	}
+
+	/**
+	 * Method to add a request to the statistics
+	 * @param micros - the time the request took, in microseconds
+	 * @param failed - true if the request failed
+	 */
+	private synchronized void record(long micros, boolean failed){
+		requests++;
+		if(failed){
+			failures++;
+		}
+		totalMicros += micros;
+		maxMicros = Math.max(maxMicros, micros);
+	}
+
+	/**
+	 * Method to describe every request so far
+	 * @return the line to send back for a STATS request
+	 */
+	private synchronized String stats(){
+		long mean = requests == 0 ? 0 : totalMicros / requests;
+		return "OK " + requests + " " + failures + " " + mean + " " + maxMicros;
+	}
+
+	/**
+	 * Method to split a request into arguments at spaces, except inside double quotes
+	 * @param line - the request
+	 * @return the arguments
+	 * @throws IOException if a quote is not closed
+	 */
+	private static String[] split(String line) throws IOException{
+		ArrayList<String> args = new ArrayList<String>();
+		StringBuilder arg = null;
+		boolean quoted = false;
+		for(int i = 0; i < line.length(); i++){
+			char c = line.charAt(i);
+			if(c == '"'){
+				quoted = !quoted;
+				if(arg == null){
+					arg = new StringBuilder();
+				}
+			}else if(Character.isWhitespace(c) && !quoted){
+				if(arg != null){
+					args.add(arg.toString());
+					arg = null;
+				}
+			}else{
+				if(arg == null){
+					arg = new StringBuilder();
+				}
+				arg.append(c);
+			}
+		}
+		if(quoted){
+			throw new IOException("Unclosed quote in request");
+		}
+		if(arg != null){
+			args.add(arg.toString());
+		}
+		return args.toArray(new String[args.size()]);
+	}
+}
@@ -3,18 +3,35 @@
  */
 package huffman;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Method to decode a text file using Huffman's algorithm.
  * Produces a text file representation of the input file.
  * Optionally, output a dot graph representation of the canonical tree using the -c argument
- * Usage: java huffman.Encode [-c CANONICAL_TREE_FILE] SOURCEFILE TARGETFILE
+ * Block files written with Encode -b are recognized and decoded automatically, with the number of threads
+ * set by the -p argument. Optionally, decode only the characters (or bytes, for a -raw file) from position FROM
+ * up to position TO of a block file using the -r argument
+ * Files encoded with a table (Encode -t) are recognized automatically, and the table they name
+ * is read from TABLE_DIR using the -d argument, or from the current directory
+ * Adaptive files (Encode -a) are recognized automatically. SOURCEFILE and TARGETFILE may be - for standard input
+ * and output, in which case the input must be adaptive, and bytes are written out as soon as they are decoded
+ * Optionally, print the time taken and the data handled by each phase of a file with a single table using the -v argument
+ * Context modeled files (Encode -ctx) are recognized automatically
+ * Optionally, decode a file with a single table several short codes per table lookup using the -m argument
+ * Usage: java huffman.Decode [-c CANONICAL_TREE_FILE] [-p THREADS] [-r FROM:TO] [-d TABLE_DIR] [-v] [-m] SOURCEFILE TARGETFILE
  * @author Christopher Barnett
  */
 public class Decode {
+	private static final String USAGE = "Usage: java huffman.Decode [-c CANONICAL_TREE_FILE] [-p THREADS] [-r FROM:TO] [-d TABLE_DIR] [-v] [-m] SOURCEFILE TARGETFILE";
 
 	/**
 	 * @param args
@@ -23,24 +40,149 @@ public class Decode {
 		String sourceFile = "";
 		String targetFile = "";
 		String canonicalTreeFile = "";
+		long[] range = null;
+		String tableDirectory = ".";
+		boolean verbose = false;
+		boolean multiSymbol = false;
+		int parallelism = Runtime.getRuntime().availableProcessors();
 		//Process the command line arguments
 				for(int i = 0; i < args.length; i++){
 					if(args[i].equals("-c")){
 						i++;
 						canonicalTreeFile = args[i];
+					}else if(args[i].equals("-r")){
+						i++;
+						try {
+							range = parseRange(args[i]);
+						} catch (IllegalArgumentException e) {
+							System.err.println(e.getMessage());
+							System.err.println(USAGE);
+							return;
+						}
+					}else if(args[i].equals("-p")){
+						i++;
+						parallelism = Integer.parseInt(args[i]);
+					}else if(args[i].equals("-d")){
+						i++;
+						tableDirectory = args[i];
+					}else if(args[i].equals("-v")){
+						verbose = true;
+					}else if(args[i].equals("-m")){
+						multiSymbol = true;
 					}else{
 						sourceFile= args[i];
 						i++;
 						targetFile = args[i];
 					}
 				}
+		try {
+			if(sourceFile.equals("-") || AdaptiveEncoder.isAdaptiveFile(sourceFile)){
+				decodeAdaptive(sourceFile, targetFile);
+				if(canonicalTreeFile != ""){
+					System.err.println("Adaptive codes change with every byte, no canonical tree written.");
+				}
+				return;
+			}
+			if(ContextModel.isContextFile(sourceFile)){
+				ContextModel.decode(sourceFile, targetFile);
+				System.out.println("Done.");
+				if(canonicalTreeFile != ""){
+					System.err.println("Context modeled files have one tree per context, no canonical tree written.");
+				}
+				return;
+			}
+			if(StaticTable.isStaticFile(sourceFile)){
+				StaticTable table = StaticTable.load(tableDirectory, StaticTable.readTableId(sourceFile));
+				table.decode(sourceFile, targetFile);
+				System.out.println("Done.");
+				if(canonicalTreeFile != ""){
+					HuffmanTree canonicalTree = new HuffmanTree();
+					canonicalTree.buildTree(table.getCodes());
+					writeDotGraph(canonicalTreeFile, canonicalTree.generateDotGraph());
+				}
+				return;
+			}
+			if(BlockFormat.isBlockFile(sourceFile)){
+				BlockReader reader = new BlockReader(sourceFile);
+				if(range != null){
+					SymbolWriter output = reader.openOutput(targetFile);
+					reader.decodeRange(range[0], range[1], output);
+					output.close();
+				}else{
+					reader.decode(targetFile, parallelism);
+				}
+				System.out.println("Done.");
+				if(canonicalTreeFile != ""){
+					System.err.println("Block files have one tree per block, no canonical tree written.");
+				}
+				return;
+			}
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+			return;
+		}
 		HuffmanTree canonicalTree = new HuffmanTree();
+		canonicalTree.setMultiSymbol(multiSymbol);
 		canonicalTree.readBinaryInFile(sourceFile, targetFile);
+		if(verbose){
+			System.out.println(canonicalTree.getMetrics());
+		}
 		
 		if(canonicalTreeFile != ""){
 			writeDotGraph(canonicalTreeFile, canonicalTree.generateDotGraph());
 		}
 	}
+	/**
+	 * Method to read the range of positions to decode from a command line argument
+	 * @param value - the argument, FROM:TO
+	 * @return the position of the first symbol to decode and the position after the last
+	 * @throws IllegalArgumentException if it is not two numbers with 0 <= FROM <= TO
+	 */
+	static long[] parseRange(String value){
+		String[] bounds = value.split(":", -1);
+		if(bounds.length != 2){
+			throw new IllegalArgumentException("Range must be FROM:TO, not " + value);
+		}
+		long[] range = new long[2];
+		try {
+			range[0] = Long.parseLong(bounds[0]);
+			range[1] = Long.parseLong(bounds[1]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Range must be FROM:TO with two numbers, not " + value);
+		}
+		if(range[0] < 0 || range[0] > range[1]){
+			throw new IllegalArgumentException("Range must have 0 <= FROM <= TO, not " + value);
+		}
+		return range;
+	}
+
+	/**
+	 * Method to decode an adaptive file or standard input, writing out bytes as soon as they are decoded
+	 * @param sourceFile - a string representing the input file name, or - for standard input
+	 * @param targetFile - a string representing the output file name, or - for standard output
+	 * @throws IOException if the input can not be read or is corrupt, or the output can not be written
+	 */
+	public static void decodeAdaptive(String sourceFile, String targetFile) throws IOException{
+		InputStream in = sourceFile.equals("-") ? System.in : new FileInputStream(sourceFile);
+		OutputStream out = targetFile.equals("-") ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(targetFile);
+		AdaptiveDecoder decoder = new AdaptiveDecoder(in);
+		out = new BufferedOutputStream(out, 1 << 16);
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while((n = decoder.read(buffer, 0, buffer.length)) != -1){
+			out.write(buffer, 0, n);
+			if(n < buffer.length){
+				//Stopped at a flush point, pass the bytes on
+				out.flush();
+			}
+		}
+		out.close();
+		decoder.close();
+		//Standard output holds the decoded bytes, so report on standard error
+		(targetFile.equals("-") ? System.err : System.out).println("Done.");
+	}
+	
 	/**
 	 * @param file - the name of the file to write the dot graph to
 	 * @param dotGraph - a string containing all of the dot graph code
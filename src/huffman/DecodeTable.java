@@ -0,0 +1,81 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A class for the lookup table used to decode canonical Huffman codes.
+ * The table has one entry for every possible value of the next tableBits bits
+ * of input, so a whole symbol is resolved with a single lookup instead of
+ * walking the code one bit at a time.
+ * Each entry holds the symbol in its upper bits and the code length in its low 8 bits.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class DecodeTable {
+	private int tableBits;
+	private int[] entries;
+
+	/**
+	 * Constructor for the decode table
+	 * @param codes - the CharCodes of the alphabet, with codes assigned by generateCodes
+	 */
+	public DecodeTable(Collection<CharCode> codes) {
+		this(new CodeTable(codes));
+	}
+
+	/**
+	 * Constructor for the decode table
+	 * @param codes - the codes of the alphabet
+	 */
+	public DecodeTable(CodeTable codes) {
+		this.tableBits = codes.getMaxLength();
+		this.entries = new int[1 << tableBits];
+		for(int s = 0; s < codes.size(); s++){
+			int length = codes.getCodeLength(s);
+			int code = codes.getCode(s);
+			int entry = (codes.getSymbol(s) << 8) | length;
+			//Every index that starts with this code decodes to this symbol
+			int first = code << (tableBits - length);
+			int last = (code + 1) << (tableBits - length);
+			for(int i = first; i < last; i++){
+				entries[i] = entry;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bits looked at per lookup - AKA the longest code length
+	 */
+	public int getTableBits() {
+		return tableBits;
+	}
+
+	/**
+	 * @return the entries of the table, indexed by the next tableBits bits of input,
+	 * for decoders that keep their own bit buffers
+	 */
+	int[] getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Method to decode the next symbol from a bit reader
+	 * @param in - the bit reader positioned at the start of a code
+	 * @return the decoded symbol, or -1 if the bits are not a valid code
+	 * @throws IOException if the bit reader's channel can not be read
+	 */
+	public int decodeSymbol(BitReader in) throws IOException{
+		int entry = entries[(int) in.peek(tableBits)];
+		int length = entry & 0xff;
+		if(length == 0 && tableBits > 0){
+			return -1;
+		}
+		in.skip(length);
+		return entry >>> 8;
+	}
+}
@@ -0,0 +1,415 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A class for decoding records written by Encoder, in memory.
+ * The code lengths, codes and decode table are kept in arrays that belong to the
+ * decoder and are reused for every record, so once a decoder exists decoding into
+ * a caller's array or buffer allocates nothing.
+ * The decode table has one entry for every value of the next bits of input up to the
+ * longest code of the record, so a whole byte is decoded with a single lookup.
+ * A decoder is not thread safe, use one per thread.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class Decoder {
+	/**
+	 * The default longest record a decoder accepts
+	 */
+	public static final int DEFAULT_MAX_RECORD_LENGTH = 1 << 24;
+	private int maxRecordLength;
+	private int[] lengths;
+	private int[] codes;
+	private int[] nextCode;
+	private boolean[] present;
+	private int[] table;
+	private byte[] inArray;
+	private ByteBuffer inBuffer;
+	private int inPosition;
+	private int inLimit;
+	private long bitBuffer;
+	private int bitCount;
+	private int fillBits;
+	private int mode;
+	private int tableBits;
+	private int single;
+
+	/**
+	 * Constructor for the decoder, which allocates all of its scratch space up front,
+	 * accepting records of up to DEFAULT_MAX_RECORD_LENGTH bytes
+	 */
+	public Decoder() {
+		this(DEFAULT_MAX_RECORD_LENGTH);
+	}
+
+	/**
+	 * Constructor for the decoder, which allocates all of its scratch space up front
+	 * @param maxRecordLength - the longest record to accept. A record of a single repeated byte
+	 * takes no bits per byte, so only this limit bounds the length it claims
+	 */
+	public Decoder(int maxRecordLength) {
+		this.maxRecordLength = maxRecordLength;
+		this.lengths = new int[256];
+		this.codes = new int[256];
+		this.nextCode = new int[Encoder.MAX_CODE_LENGTH + 2];
+		this.present = new boolean[256];
+		this.table = new int[1 << Encoder.MAX_CODE_LENGTH];
+	}
+
+	/**
+	 * Method to get the length of a record once decoded, without decoding it
+	 * @param src - the array holding the encoded record
+	 * @param offset - the index of the first byte of the encoded record
+	 * @return the number of bytes in the decoded record, not checked against the rest of the record
+	 * @throws IOException if the length is not valid
+	 */
+	public static int decodedLength(byte[] src, int offset) throws IOException{
+		int length = 0;
+		for(int shift = 0; shift < 35; shift += 7){
+			if(offset >= src.length){
+				throw new IOException("Corrupt record: truncated length");
+			}
+			int b = src[offset] & 0xff;
+			offset++;
+			length |= (b & 0x7f) << shift;
+			if(b < 0x80){
+				if(length < 0){
+					break;
+				}
+				return length;
+			}
+		}
+		throw new IOException("Corrupt record: bad length");
+	}
+
+	/**
+	 * Method to decode a record into a new array
+	 * @param src - the encoded record
+	 * @return the bytes of the record
+	 * @throws IOException if the record is corrupt
+	 */
+	public byte[] decode(byte[] src) throws IOException{
+		inArray = src;
+		inBuffer = null;
+		inPosition = 0;
+		inLimit = src.length;
+		try {
+			byte[] dst = new byte[readRecordHeader()];
+			decodeRecordBody(dst, null, 0, dst.length);
+			return dst;
+		} finally {
+			inArray = null;
+		}
+	}
+
+	/**
+	 * @return the longest record the decoder accepts
+	 */
+	public int getMaxRecordLength() {
+		return maxRecordLength;
+	}
+
+	/**
+	 * Method to decode a record into an array
+	 * @param src - the array holding the encoded record
+	 * @param srcOffset - the index of the first byte of the encoded record
+	 * @param srcLength - the number of bytes of the encoded record
+	 * @param dst - the array to decode into
+	 * @param dstOffset - the index to write the first byte of the record to
+	 * @return the number of bytes in the record
+	 * @throws IOException if the record is corrupt
+	 * @throws IllegalArgumentException if dst does not have room for the record
+	 */
+	public int decode(byte[] src, int srcOffset, int srcLength, byte[] dst, int dstOffset) throws IOException{
+		inArray = src;
+		inBuffer = null;
+		inPosition = srcOffset;
+		inLimit = srcOffset + srcLength;
+		try {
+			return decodeRecord(dst, null, dstOffset, dst.length - dstOffset);
+		} finally {
+			inArray = null;
+		}
+	}
+
+	/**
+	 * Method to decode the remaining bytes of a buffer into another buffer, either of which may be direct.
+	 * The position of src is moved past the encoded record and the position of dst past the record.
+	 * @param src - the buffer holding the encoded record
+	 * @param dst - the buffer to decode into
+	 * @return the number of bytes in the record
+	 * @throws IOException if the record is corrupt
+	 * @throws IllegalArgumentException if dst does not have room for the record
+	 */
+	public int decode(ByteBuffer src, ByteBuffer dst) throws IOException{
+		if(src.hasArray()){
+			inArray = src.array();
+			inBuffer = null;
+			inPosition = src.arrayOffset() + src.position();
+			inLimit = src.arrayOffset() + src.limit();
+		}else{
+			inArray = null;
+			inBuffer = src;
+			inPosition = src.position();
+			inLimit = src.limit();
+		}
+		int start = inPosition;
+		try {
+			int n;
+			if(dst.hasArray()){
+				n = decodeRecord(dst.array(), null, dst.arrayOffset() + dst.position(), dst.remaining());
+			}else{
+				n = decodeRecord(null, dst, dst.position(), dst.remaining());
+			}
+			src.position(src.position() + inPosition - start);
+			dst.position(dst.position() + n);
+			return n;
+		} finally {
+			inArray = null;
+			inBuffer = null;
+		}
+	}
+
+	/**
+	 * Method to decode the record at the current input position
+	 * @param array - the array to decode into, or null
+	 * @param buffer - the buffer to decode into, if array is null
+	 * @param offset - the index to write the first byte of the record to
+	 * @param room - the number of bytes there is room for
+	 * @return the number of bytes in the record
+	 * @throws IOException if the record is corrupt
+	 */
+	private int decodeRecord(byte[] array, ByteBuffer buffer, int offset, int room) throws IOException{
+		int length = readRecordHeader();
+		if(length > room){
+			throw new IllegalArgumentException("Destination needs room for " + length + " bytes");
+		}
+		return decodeRecordBody(array, buffer, offset, length);
+	}
+
+	/**
+	 * Method to read the length, mode and code table of the record at the current input position,
+	 * building the decode table, and check the length before anything is allocated or written for it:
+	 * a stored byte takes a byte of input and a code at least a bit, except in a record of a single
+	 * repeated byte, and no record is longer than maxRecordLength
+	 * @return the number of bytes in the record
+	 * @throws IOException if the record is corrupt or longer than maxRecordLength
+	 */
+	private int readRecordHeader() throws IOException{
+		int length = 0;
+		for(int shift = 0; ; shift += 7){
+			if(shift >= 35){
+				throw new IOException("Corrupt record: bad length");
+			}
+			int b = getByte();
+			length |= (b & 0x7f) << shift;
+			if(b < 0x80){
+				break;
+			}
+		}
+		if(length < 0){
+			throw new IOException("Corrupt record: bad length");
+		}
+		if(length > maxRecordLength){
+			throw new IOException("Record of " + length + " bytes is longer than " + maxRecordLength);
+		}
+		if(length == 0){
+			return 0;
+		}
+
+		mode = getByte();
+		if(mode == Encoder.MODE_STORED){
+			if(length > inLimit - inPosition){
+				throw new IOException("Corrupt record: ends early");
+			}
+			return length;
+		}
+		if(mode != Encoder.MODE_HUFFMAN){
+			throw new IOException("Corrupt record: unknown mode " + mode);
+		}
+
+		//Read the code lengths
+		bitBuffer = 0;
+		bitCount = 0;
+		fillBits = 0;
+		for(int s = 0; s < 256; s++){
+			lengths[s] = 0;
+			present[s] = false;
+		}
+		int n = getBits(8) + 1;
+		tableBits = 0;
+		single = -1;
+		for(int i = 0; i < n; i++){
+			int s = getBits(8);
+			int l = getBits(4);
+			if(present[s] || (l == 0 && n > 1)){
+				throw new IOException("Corrupt record: bad code table");
+			}
+			present[s] = true;
+			lengths[s] = l;
+			tableBits = Math.max(tableBits, l);
+			single = s;
+		}
+		if(n == 1){
+			tableBits = 0;
+			return length;
+		}
+		int kraft = 0;
+		for(int s = 0; s < 256; s++){
+			if(lengths[s] > 0){
+				kraft += 1 << (Encoder.MAX_CODE_LENGTH - lengths[s]);
+			}
+		}
+		if(kraft > 1 << Encoder.MAX_CODE_LENGTH){
+			throw new IOException("Corrupt record: code lengths do not form a prefix code");
+		}
+		CodeTable.assignCodes(lengths, codes, lengths.length, nextCode);
+
+		//Every index that starts with a code decodes to its symbol, unused indexes stay 0
+		int size = 1 << tableBits;
+		for(int i = 0; i < size; i++){
+			table[i] = 0;
+		}
+		for(int s = 0; s < 256; s++){
+			int l = lengths[s];
+			if(l > 0){
+				int first = codes[s] << (tableBits - l);
+				int last = (codes[s] + 1) << (tableBits - l);
+				for(int i = first; i < last; i++){
+					table[i] = (s << 8) | l;
+				}
+			}
+		}
+		if(length > bitCount - fillBits + 8L * (inLimit - inPosition)){
+			throw new IOException("Corrupt record: ends early");
+		}
+		return length;
+	}
+
+	/**
+	 * Method to decode the bytes of a record whose header has been read by readRecordHeader
+	 * @param array - the array to decode into, or null
+	 * @param buffer - the buffer to decode into, if array is null
+	 * @param offset - the index to write the first byte of the record to
+	 * @param length - the number of bytes in the record
+	 * @return the number of bytes in the record
+	 * @throws IOException if the record is corrupt
+	 */
+	private int decodeRecordBody(byte[] array, ByteBuffer buffer, int offset, int length) throws IOException{
+		if(length == 0){
+			return 0;
+		}
+		if(mode == Encoder.MODE_STORED){
+			for(int i = offset; i < offset + length; i++){
+				putByte(array, buffer, i, getByte());
+			}
+			return length;
+		}
+		if(tableBits == 0){
+			for(int i = offset; i < offset + length; i++){
+				putByte(array, buffer, i, single);
+			}
+			unread();
+			return length;
+		}
+
+		//Decode the bytes
+		for(int i = offset; i < offset + length; i++){
+			if(bitCount < tableBits){
+				refill();
+			}
+			int entry = table[(int) (bitBuffer >>> (64 - tableBits))];
+			int l = entry & 0xff;
+			if(l == 0){
+				throw new IOException("Corrupt record: invalid code");
+			}
+			bitBuffer <<= l;
+			bitCount -= l;
+			putByte(array, buffer, i, entry >>> 8);
+		}
+		if(bitCount < fillBits){
+			throw new IOException("Corrupt record: ends early");
+		}
+		unread();
+		return length;
+	}
+
+	/**
+	 * Method to give back the whole bytes read ahead into the bit buffer,
+	 * so the input position ends right after the record
+	 */
+	private void unread(){
+		inPosition -= (bitCount - fillBits) / 8;
+	}
+
+	/**
+	 * Method to read the next byte of the encoded record
+	 * @return the byte
+	 * @throws IOException if the record ends early
+	 */
+	private int getByte() throws IOException{
+		if(inPosition >= inLimit){
+			throw new IOException("Corrupt record: ends early");
+		}
+		int b = inArray != null ? inArray[inPosition] : inBuffer.get(inPosition);
+		inPosition++;
+		return b & 0xff;
+	}
+
+	/**
+	 * Method to top up the bit buffer so that at least 57 bits are available,
+	 * with zero bits past the end of the record
+	 */
+	private void refill(){
+		while(bitCount <= 56){
+			if(inPosition < inLimit){
+				int b = inArray != null ? inArray[inPosition] : inBuffer.get(inPosition);
+				bitBuffer |= (long) (b & 0xff) << (56 - bitCount);
+				inPosition++;
+			}else{
+				fillBits += 8;
+			}
+			bitCount += 8;
+		}
+	}
+
+	/**
+	 * Method to read the next bits of the code table
+	 * @param n - the number of bits to read
+	 * @return the bits as the low bits of an int
+	 * @throws IOException if the record ends early
+	 */
+	private int getBits(int n) throws IOException{
+		if(bitCount < n){
+			refill();
+		}
+		int bits = (int) (bitBuffer >>> (64 - n));
+		bitBuffer <<= n;
+		bitCount -= n;
+		if(bitCount < fillBits){
+			throw new IOException("Corrupt record: ends early");
+		}
+		return bits;
+	}
+
+	/**
+	 * Method to write a byte of the record to the destination
+	 * @param array - the array to decode into, or null
+	 * @param buffer - the buffer to decode into, if array is null
+	 * @param index - the index to write to
+	 * @param b - the byte, in the low 8 bits
+	 */
+	private static void putByte(byte[] array, ByteBuffer buffer, int index, int b){
+		if(array != null){
+			array[index] = (byte) b;
+		}else{
+			buffer.put(index, (byte) b);
+		}
+	}
+}
@@ -3,18 +3,44 @@
  */
 package huffman;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Method to encode a text file using Huffman's algorithm.
  * Produces a binary file representation of the input file.
  * Optionally, output a dot graph representation of the huffman tree or canonical tree using the -h and/or -c arguments
- * Usage: java huffman.Encode [-h HUFFMAN_TREE_FILE] [-c CANONICAL_TREE_FILE] SOURCEFILE TARGETFILE
+ * Optionally, encode the file as independent blocks of BLOCK_SIZE characters in parallel using the -b argument,
+ * with the number of threads set by the -p argument
+ * Codes are limited to 15 bits, or to MAX_CODE_LENGTH bits (1 to 24) using the -l argument
+ * Optionally, encode the raw bytes of any file, with no character decoding, using the -raw argument.
+ * Raw files are always written as block files
+ * Optionally, encode the file in a single pass with a table trained by Train using the -t argument.
+ * The table is read from TABLE_DIR using the -d argument, or from the current directory
+ * Optionally, encode the bytes of the file in a single pass with adaptive Huffman codes using the -a argument.
+ * SOURCEFILE and TARGETFILE may be - for standard input and output, so pipes can be encoded as data arrives
+ * Optionally, print the time taken and the data handled by each phase of a file with a single table using the -v argument
+ * Optionally, deal the codes of a file with a single table out to four interleaved bitstreams using the -i argument,
+ * so they can be decoded four at a time
+ * Optionally, code every character with a table chosen by the character before it using the -ctx argument,
+ * which suits text that repeats the same pairs of characters, such as logs
+ * Optionally, store a CRC-32 of every block's symbols using the -crc argument, so damaged blocks are
+ * detected when decoding. Files with checksums are always written as block files
+ * Optionally, add SOURCEFILE to the end of TARGETFILE, a file with a single table, using the -append argument.
+ * The text already in TARGETFILE is not read again; the new text reuses its last table if that costs no more
+ * than a new one. A TARGETFILE that does not exist yet is encoded as usual
+ * Usage: java huffman.Encode [-h HUFFMAN_TREE_FILE] [-c CANONICAL_TREE_FILE] [-b BLOCK_SIZE] [-p THREADS] [-l MAX_CODE_LENGTH] [-raw] [-t TABLE_ID] [-d TABLE_DIR] [-a] [-v] [-i] [-ctx] [-crc] [-append] SOURCEFILE TARGETFILE
  * @author Christopher Barnett
  */
 public class Encode {
+	private static final String USAGE = "Usage: java huffman.Encode [-h HUFFMAN_TREE_FILE] [-c CANONICAL_TREE_FILE] [-b BLOCK_SIZE] [-p THREADS] [-l MAX_CODE_LENGTH] [-raw] [-t TABLE_ID] [-d TABLE_DIR] [-a] [-v] [-i] [-ctx] [-crc] [-append] SOURCEFILE TARGETFILE";
 
 	/**
 	 * @param args
@@ -24,6 +50,18 @@ public class Encode {
 		String targetFile = "";
 		String huffmanTreeFile = "";
 		String canonicalTreeFile = "";
+		int blockSize = 0;
+		int maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		boolean binary = false;
+		String tableId = "";
+		String tableDirectory = ".";
+		boolean adaptive = false;
+		boolean verbose = false;
+		boolean interleaved = false;
+		boolean context = false;
+		boolean checksums = false;
+		boolean append = false;
+		int parallelism = Runtime.getRuntime().availableProcessors();
 		//Process the command line arguments
 				for(int i = 0; i < args.length; i++){
 					if(args[i].equals("-h")){
@@ -32,17 +70,153 @@ public class Encode {
 					}else if(args[i].equals("-c")){
 						i++;
 						canonicalTreeFile = args[i];
+					}else if(args[i].equals("-b")){
+						i++;
+						try {
+							blockSize = BlockFormat.parseBlockSize(args[i]);
+						} catch (IllegalArgumentException e) {
+							System.err.println(e.getMessage());
+							System.err.println(USAGE);
+							return;
+						}
+					}else if(args[i].equals("-p")){
+						i++;
+						parallelism = Integer.parseInt(args[i]);
+					}else if(args[i].equals("-l")){
+						i++;
+						try {
+							maxCodeLength = CodeLengths.parseMaxLength(args[i]);
+						} catch (IllegalArgumentException e) {
+							System.err.println(e.getMessage());
+							System.err.println(USAGE);
+							return;
+						}
+					}else if(args[i].equals("-raw")){
+						binary = true;
+					}else if(args[i].equals("-t")){
+						i++;
+						tableId = args[i];
+					}else if(args[i].equals("-d")){
+						i++;
+						tableDirectory = args[i];
+					}else if(args[i].equals("-a")){
+						adaptive = true;
+					}else if(args[i].equals("-v")){
+						verbose = true;
+					}else if(args[i].equals("-i")){
+						interleaved = true;
+					}else if(args[i].equals("-ctx")){
+						context = true;
+					}else if(args[i].equals("-crc")){
+						checksums = true;
+					}else if(args[i].equals("-append")){
+						append = true;
 					}else{
 						sourceFile= args[i];
 						i++;
 						targetFile = args[i];
 					}
 				}
-		//Initialize the tree
+		if(append){
+			try {
+				HuffmanTree huffmanTree = new HuffmanTree();
+				huffmanTree.setParallelism(parallelism);
+				huffmanTree.setMaxCodeLength(maxCodeLength);
+				boolean reused = huffmanTree.appendFile(sourceFile, targetFile);
+				System.out.println("Finished Appending" + (reused ? " with the previous table" : " with a new table"));
+				if(verbose){
+					System.out.println(huffmanTree.getMetrics());
+				}
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			if(huffmanTreeFile != "" || canonicalTreeFile != ""){
+				System.err.println("Appended segments are not drawn, no tree graphs written.");
+			}
+			return;
+		}
+		if(adaptive){
+			try {
+				encodeAdaptive(sourceFile, targetFile);
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			if(huffmanTreeFile != "" || canonicalTreeFile != ""){
+				System.err.println("Adaptive codes change with every byte, no tree graphs written.");
+			}
+			return;
+		}
+		if(context){
+			try {
+				int tables = ContextModel.encode(sourceFile, targetFile);
+				System.out.println("Finished Encoding with " + tables + " tables");
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			if(huffmanTreeFile != "" || canonicalTreeFile != ""){
+				System.err.println("Context modeled files have one tree per context, no tree graphs written.");
+			}
+			return;
+		}
+		if(tableId != ""){
+			try {
+				StaticTable table = StaticTable.load(tableDirectory, tableId);
+				if(table.isBinary() != binary){
+					System.err.println("Table " + tableId + (table.isBinary() ? " is for -raw files." : " is not for -raw files."));
+					return;
+				}
+				table.encode(sourceFile, targetFile);
+				System.out.println("Finished Encoding");
+				if(canonicalTreeFile != ""){
+					HuffmanTree canonicalTree = new HuffmanTree();
+					canonicalTree.buildTree(table.getCodes());
+					writeDotGraph(canonicalTreeFile, canonicalTree.generateDotGraph());
+				}
+				if(huffmanTreeFile != ""){
+					System.err.println("Files encoded with a table have no Huffman tree, no Huffman tree graph written.");
+				}
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			return;
+		}
+		if((binary || checksums) && blockSize == 0){
+			blockSize = BlockWriter.DEFAULT_BLOCK_SIZE;
+		}
+		if(blockSize > 0){
+			try {
+				BlockWriter writer = new BlockWriter(blockSize, parallelism);
+				writer.setMaxCodeLength(maxCodeLength);
+				writer.setBinary(binary);
+				writer.setChecksums(checksums);
+				writer.write(sourceFile, targetFile);
+				System.out.println("Finished Encoding");
+			} catch (IOException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
+			if(huffmanTreeFile != "" || canonicalTreeFile != ""){
+				System.err.println("Block files have one tree per block, no tree graphs written.");
+			}
+			return;
+		}
+		//Initialize the tree, counting the characters in a first pass over the source file
 		HuffmanTree huffmanTree = new HuffmanTree();
+		huffmanTree.setRetainInput(false);
+		huffmanTree.setParallelism(parallelism);
+		huffmanTree.setMaxCodeLength(maxCodeLength);
+		huffmanTree.setInterleaved(interleaved);
 		huffmanTree.buildTree(sourceFile);
-		HuffmanTree canonicalTree = huffmanTree.canonize(targetFile, huffmanTree.getInputFileChars());
+		//Encode the source file in a second pass
+		HuffmanTree canonicalTree = huffmanTree.canonize(targetFile, sourceFile);
 		System.out.println("Finished Encoding");
+		if(verbose){
+			System.out.println(huffmanTree.getMetrics());
+		}
 		
 		if(huffmanTreeFile != ""){
 			writeDotGraph(huffmanTreeFile, huffmanTree.generateDotGraph());
@@ -52,6 +226,31 @@ public class Encode {
 			writeDotGraph(canonicalTreeFile, canonicalTree.generateDotGraph());
 		}
 	}
+	/**
+	 * Method to encode a file or standard input with adaptive Huffman codes.
+	 * Whenever no more input is ready, everything encoded so far is flushed to the output
+	 * @param sourceFile - a string representing the input file name, or - for standard input
+	 * @param targetFile - a string representing the output file name, or - for standard output
+	 * @throws IOException if the input can not be read or the output can not be written
+	 */
+	public static void encodeAdaptive(String sourceFile, String targetFile) throws IOException{
+		InputStream in = sourceFile.equals("-") ? System.in : new FileInputStream(sourceFile);
+		OutputStream out = targetFile.equals("-") ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(targetFile);
+		AdaptiveEncoder encoder = new AdaptiveEncoder(new BufferedOutputStream(out, 1 << 16));
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while((n = in.read(buffer)) != -1){
+			encoder.write(buffer, 0, n);
+			if(in.available() == 0){
+				encoder.flush();
+			}
+		}
+		encoder.close();
+		in.close();
+		//Standard output holds the encoded bytes, so report on standard error
+		(targetFile.equals("-") ? System.err : System.out).println("Finished Encoding");
+	}
+	
 	/**
 	 * @param file - the name of the file to write the dot graph to
 	 * @param dotGraph - a string containing all of the dot graph code
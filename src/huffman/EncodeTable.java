@@ -0,0 +1,53 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * A class for the table used to encode symbols with canonical Huffman codes.
+ * Codes and code lengths are kept in arrays indexed by symbol so that
+ * encoding a symbol is two array reads and a single write to a BitWriter.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class EncodeTable {
+	private int[] codes;
+	private int[] lengths;
+
+	/**
+	 * Constructor for the encode table
+	 * @param codes - the CharCodes of the alphabet, with codes assigned by generateCodes
+	 */
+	public EncodeTable(Collection<CharCode> codes) {
+		this(new CodeTable(codes));
+	}
+
+	/**
+	 * Constructor for the encode table
+	 * @param codes - the codes of the alphabet
+	 */
+	public EncodeTable(CodeTable codes) {
+		int size = codes.size() > 0 ? codes.getMaxSymbol() + 1 : 0;
+		this.codes = new int[size];
+		this.lengths = new int[size];
+		for(int s = 0; s < codes.size(); s++){
+			int symbol = codes.getSymbol(s);
+			this.codes[symbol] = codes.getCode(s);
+			this.lengths[symbol] = codes.getCodeLength(s);
+		}
+	}
+
+	/**
+	 * Method to write the code of a symbol
+	 * @param out - the bit writer to write the code to
+	 * @param symbol - the symbol to encode
+	 * @throws IOException if the bit writer's channel can not be written
+	 */
+	public void writeSymbol(BitWriter out, int symbol) throws IOException{
+		out.write(codes[symbol], lengths[symbol]);
+	}
+}
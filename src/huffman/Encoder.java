@@ -0,0 +1,347 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A class for encoding small records of bytes in memory, for callers that encode
+ * many records in-process and can not afford files, trees or collections per call.
+ * The histogram, code lengths, codes and Huffman tree are kept in arrays that belong
+ * to the encoder and are reused for every record, so once an encoder exists encoding
+ * into a caller's array or buffer allocates nothing.
+ * An encoded record is laid out as:
+ * <pre>
+ * length of the record (varint, 7 bits per byte, low bits first)
+ * mode (byte): MODE_STORED or MODE_HUFFMAN, left out for an empty record
+ * stored:  the bytes of the record
+ * huffman: number of symbols - 1 (8 bits),
+ *          for each symbol, in increasing order: the symbol (8 bits), its code length (4 bits),
+ *          the code of every byte of the record, padded with zeroes to a whole byte
+ * </pre>
+ * Codes are canonical, longest codes first as with generateCodes, and at most 15 bits long.
+ * Records that would not get smaller are stored as they are.
+ * An encoder is not thread safe, use one per thread. Records are decoded with Decoder.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class Encoder {
+	/**
+	 * The mode of a record stored without encoding
+	 */
+	public static final int MODE_STORED = 0;
+	/**
+	 * The mode of a record encoded with Huffman codes
+	 */
+	public static final int MODE_HUFFMAN = 1;
+	/**
+	 * The longest code given to a byte
+	 */
+	public static final int MAX_CODE_LENGTH = 15;
+	private int[] counts;
+	private int[] sorted;
+	private int[] weights;
+	private int[] parents;
+	private int[] depths;
+	private int[] lengths;
+	private int[] codes;
+	private int[] nextCode;
+	private byte[] outArray;
+	private ByteBuffer outBuffer;
+	private int outPosition;
+	private long bitBuffer;
+	private int bitCount;
+
+	/**
+	 * Constructor for the encoder, which allocates all of its scratch space up front
+	 */
+	public Encoder() {
+		this.counts = new int[256];
+		this.sorted = new int[256];
+		this.weights = new int[511];
+		this.parents = new int[511];
+		this.depths = new int[511];
+		this.lengths = new int[256];
+		this.codes = new int[256];
+		this.nextCode = new int[MAX_CODE_LENGTH + 2];
+	}
+
+	/**
+	 * Method to get the most bytes a record can take up once encoded
+	 * @param length - the number of bytes in the record
+	 * @return the size of the largest possible encoded record
+	 */
+	public static int maxEncodedLength(int length){
+		return length + 6;
+	}
+
+	/**
+	 * Method to encode a record into a new array
+	 * @param src - the bytes of the record
+	 * @return the encoded record
+	 */
+	public byte[] encode(byte[] src){
+		byte[] dst = new byte[maxEncodedLength(src.length)];
+		int n = encode(src, 0, src.length, dst, 0);
+		byte[] result = new byte[n];
+		System.arraycopy(dst, 0, result, 0, n);
+		return result;
+	}
+
+	/**
+	 * Method to encode a record into an array
+	 * @param src - the array holding the record
+	 * @param srcOffset - the index of the first byte of the record
+	 * @param length - the number of bytes in the record
+	 * @param dst - the array to encode into
+	 * @param dstOffset - the index to write the first encoded byte to
+	 * @return the number of encoded bytes written
+	 * @throws IllegalArgumentException if dst may not have room for the encoded record
+	 */
+	public int encode(byte[] src, int srcOffset, int length, byte[] dst, int dstOffset){
+		if(dst.length - dstOffset < maxEncodedLength(length)){
+			throw new IllegalArgumentException("Destination needs room for maxEncodedLength(" + length + ") bytes");
+		}
+		outArray = dst;
+		outBuffer = null;
+		outPosition = dstOffset;
+		count(src, null, srcOffset, length);
+		encodeRecord(src, null, srcOffset, length);
+		outArray = null;
+		return outPosition - dstOffset;
+	}
+
+	/**
+	 * Method to encode the remaining bytes of a buffer into another buffer, which may be direct.
+	 * The position of src is moved to its limit and the position of dst past the encoded record.
+	 * @param src - the buffer holding the record
+	 * @param dst - the buffer to encode into
+	 * @return the number of encoded bytes written
+	 * @throws IllegalArgumentException if dst may not have room for the encoded record
+	 */
+	public int encode(ByteBuffer src, ByteBuffer dst){
+		int length = src.remaining();
+		if(dst.remaining() < maxEncodedLength(length)){
+			throw new IllegalArgumentException("Destination needs room for maxEncodedLength(" + length + ") bytes");
+		}
+		int start = dst.position();
+		outArray = null;
+		outBuffer = dst;
+		outPosition = start;
+		if(src.hasArray()){
+			int offset = src.arrayOffset() + src.position();
+			count(src.array(), null, offset, length);
+			encodeRecord(src.array(), null, offset, length);
+		}else{
+			count(null, src, src.position(), length);
+			encodeRecord(null, src, src.position(), length);
+		}
+		outBuffer = null;
+		src.position(src.limit());
+		dst.position(outPosition);
+		return outPosition - start;
+	}
+
+	/**
+	 * Method to count the bytes of the record, from an array or else from a buffer
+	 * @param array - the array holding the record, or null
+	 * @param buffer - the buffer holding the record, if array is null
+	 * @param offset - the index of the first byte of the record
+	 * @param length - the number of bytes in the record
+	 */
+	private void count(byte[] array, ByteBuffer buffer, int offset, int length){
+		for(int i = 0; i < 256; i++){
+			counts[i] = 0;
+		}
+		if(array != null){
+			for(int i = offset; i < offset + length; i++){
+				counts[array[i] & 0xff]++;
+			}
+		}else{
+			for(int i = offset; i < offset + length; i++){
+				counts[buffer.get(i) & 0xff]++;
+			}
+		}
+	}
+
+	/**
+	 * Method to write the encoded record, once its bytes have been counted
+	 * @param array - the array holding the record, or null
+	 * @param buffer - the buffer holding the record, if array is null
+	 * @param offset - the index of the first byte of the record
+	 * @param length - the number of bytes in the record
+	 */
+	private void encodeRecord(byte[] array, ByteBuffer buffer, int offset, int length){
+		//Write the length as a varint
+		int v = length;
+		while(v >= 0x80){
+			putByte((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		putByte(v);
+		if(length == 0){
+			return;
+		}
+
+		int n = computeLengths();
+		long bits = 8 + 12L * n;
+		for(int s = 0; s < 256; s++){
+			bits += (long) counts[s] * lengths[s];
+		}
+		if((bits + 7) / 8 >= length){
+			putByte(MODE_STORED);
+			if(array != null){
+				for(int i = offset; i < offset + length; i++){
+					putByte(array[i]);
+				}
+			}else{
+				for(int i = offset; i < offset + length; i++){
+					putByte(buffer.get(i));
+				}
+			}
+			return;
+		}
+
+		putByte(MODE_HUFFMAN);
+		bitBuffer = 0;
+		bitCount = 0;
+		putBits(n - 1, 8);
+		for(int s = 0; s < 256; s++){
+			if(counts[s] > 0){
+				putBits(s, 8);
+				putBits(lengths[s], 4);
+			}
+		}
+		if(array != null){
+			for(int i = offset; i < offset + length; i++){
+				int s = array[i] & 0xff;
+				putBits(codes[s], lengths[s]);
+			}
+		}else{
+			for(int i = offset; i < offset + length; i++){
+				int s = buffer.get(i) & 0xff;
+				putBits(codes[s], lengths[s]);
+			}
+		}
+		//Pad the last byte with zeroes
+		while(bitCount > 0){
+			putByte((int) (bitBuffer >>> 56));
+			bitBuffer <<= 8;
+			bitCount -= 8;
+		}
+	}
+
+	/**
+	 * Method to compute code lengths and canonical codes from the counts
+	 * @return the number of different bytes in the record
+	 */
+	private int computeLengths(){
+		//Sort the bytes that appear by count, then by value, with an insertion sort
+		int n = 0;
+		for(int s = 0; s < 256; s++){
+			lengths[s] = 0;
+			if(counts[s] > 0){
+				int i = n;
+				while(i > 0 && counts[sorted[i - 1]] > counts[s]){
+					sorted[i] = sorted[i - 1];
+					i--;
+				}
+				sorted[i] = s;
+				n++;
+			}
+		}
+		if(n == 1){
+			//A single byte needs no bits at all
+			lengths[sorted[0]] = 0;
+			codes[sorted[0]] = 0;
+			return n;
+		}
+
+		//Build the tree with two queues: the sorted leaves, and the internal nodes in the order they are made,
+		//which is also sorted. Nodes 0 to n-1 are the leaves, n to 2n-2 the internal nodes.
+		for(int i = 0; i < n; i++){
+			weights[i] = counts[sorted[i]];
+		}
+		int leaf = 0;
+		int node = n;
+		for(int next = n; next < 2 * n - 1; next++){
+			int a;
+			if(leaf < n && (node == next || weights[leaf] <= weights[node])){
+				a = leaf++;
+			}else{
+				a = node++;
+			}
+			int b;
+			if(leaf < n && (node == next || weights[leaf] <= weights[node])){
+				b = leaf++;
+			}else{
+				b = node++;
+			}
+			weights[next] = weights[a] + weights[b];
+			parents[a] = next;
+			parents[b] = next;
+		}
+		//Depths from the root down, every parent comes after its children
+		depths[2 * n - 2] = 0;
+		for(int i = 2 * n - 3; i >= 0; i--){
+			depths[i] = depths[parents[i]] + 1;
+		}
+
+		//Limit the lengths, lengthening the rarest short codes until the code fits again,
+		//then use any room left over to shorten the most common codes
+		int kraft = 0;
+		for(int i = 0; i < n; i++){
+			depths[i] = Math.min(depths[i], MAX_CODE_LENGTH);
+			kraft += 1 << (MAX_CODE_LENGTH - depths[i]);
+		}
+		int i = 0;
+		while(kraft > 1 << MAX_CODE_LENGTH){
+			while(depths[i] == MAX_CODE_LENGTH){
+				i++;
+			}
+			depths[i]++;
+			kraft -= 1 << (MAX_CODE_LENGTH - depths[i]);
+		}
+		for(i = n - 1; i >= 0; i--){
+			while(depths[i] > 1 && kraft + (1 << (MAX_CODE_LENGTH - depths[i])) <= 1 << MAX_CODE_LENGTH){
+				kraft += 1 << (MAX_CODE_LENGTH - depths[i]);
+				depths[i]--;
+			}
+		}
+		for(i = 0; i < n; i++){
+			lengths[sorted[i]] = depths[i];
+		}
+		CodeTable.assignCodes(lengths, codes, lengths.length, nextCode);
+		return n;
+	}
+
+	/**
+	 * Method to write a byte to the destination
+	 * @param b - the byte, in the low 8 bits
+	 */
+	private void putByte(int b){
+		if(outArray != null){
+			outArray[outPosition] = (byte) b;
+		}else{
+			outBuffer.put(outPosition, (byte) b);
+		}
+		outPosition++;
+	}
+
+	/**
+	 * Method to write bits to the destination, most significant bit first
+	 * @param bits - the bits, in the low bits of the value
+	 * @param n - the number of bits, at most 32
+	 */
+	private void putBits(int bits, int n){
+		bitBuffer |= ((long) bits & ((1L << n) - 1)) << (64 - bitCount - n);
+		bitCount += n;
+		while(bitCount >= 8){
+			putByte((int) (bitBuffer >>> 56));
+			bitBuffer <<= 8;
+			bitCount -= 8;
+		}
+	}
+}
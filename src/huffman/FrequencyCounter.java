@@ -0,0 +1,378 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A class for counting how many times each character appears in a text file.
+ * Counts are kept in a primitive histogram indexed by character.
+ * Large files are cut into segments that are counted in parallel on a fork-join pool,
+ * each into its own histogram, and the histograms are added together at the end.
+ * Line terminators are counted the same way TextSymbolReader reads them, as one "\r"
+ * per line break. Characters are counted as UTF-16 chars, or with countCodePoints as whole
+ * Unicode code points, in which case the histogram only reaches past the Basic Multilingual Plane
+ * if the file has supplementary characters.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class FrequencyCounter {
+	/**
+	 * The number of entries in a histogram, one for every char value
+	 */
+	public static final int ALPHABET_SIZE = 65536;
+	private static final long MIN_SEGMENT_SIZE = 4 << 20;
+	private static final long MAX_SEGMENT_SIZE = 64 << 20;
+
+	/**
+	 * A class for the counts of one segment of the file, or of several adjacent segments
+	 */
+	private static class SegmentCount {
+		private long[] counts;
+		private long[] supplementary;
+		private long crlfPairs;
+		private int firstChar;
+		private int lastChar;
+
+		/**
+		 * Method to add the counts of the segment that follows this one
+		 * @param next - the counts of the next segment
+		 */
+		public void merge(SegmentCount next){
+			for(int i = 0; i < ALPHABET_SIZE; i++){
+				counts[i] += next.counts[i];
+			}
+			if(next.supplementary != null){
+				if(supplementary == null){
+					supplementary = next.supplementary;
+				}else{
+					for(int i = 0; i < supplementary.length; i++){
+						supplementary[i] += next.supplementary[i];
+					}
+				}
+			}
+			crlfPairs += next.crlfPairs;
+			if(lastChar == '\r' && next.firstChar == '\n'){
+				crlfPairs++;
+			}
+			if(firstChar == -1){
+				firstChar = next.firstChar;
+			}
+			if(next.lastChar != -1){
+				lastChar = next.lastChar;
+			}
+		}
+	}
+
+	/**
+	 * A task to count a range of segments, split in half until one segment is left
+	 */
+	private static class CountTask extends RecursiveTask<SegmentCount> {
+		private static final long serialVersionUID = 1L;
+		private FileChannel channel;
+		private Charset charset;
+		private long[] bounds;
+		private int from;
+		private int to;
+		private boolean codePoints;
+
+		/**
+		 * Constructor for the count task
+		 * @param channel - the file to count
+		 * @param charset - the character set of the file
+		 * @param bounds - the start of every segment, followed by the size of the file
+		 * @param from - the index of the first segment to count
+		 * @param to - the index after the last segment to count
+		 * @param codePoints - true to count code points rather than UTF-16 chars
+		 */
+		public CountTask(FileChannel channel, Charset charset, long[] bounds, int from, int to, boolean codePoints) {
+			this.channel = channel;
+			this.charset = charset;
+			this.bounds = bounds;
+			this.from = from;
+			this.to = to;
+			this.codePoints = codePoints;
+		}
+
+		@Override
+		protected SegmentCount compute() {
+			try {
+				if(to - from == 1){
+					return countSegment(channel, charset, bounds[from], bounds[to], codePoints);
+				}
+				int middle = (from + to) >>> 1;
+				CountTask left = new CountTask(channel, charset, bounds, from, middle, codePoints);
+				CountTask right = new CountTask(channel, charset, bounds, middle, to, codePoints);
+				left.fork();
+				SegmentCount rightCount = right.compute();
+				SegmentCount leftCount = left.join();
+				leftCount.merge(rightCount);
+				return leftCount;
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Method to count the characters of a text file
+	 * @param fileName - a string representing the name of the file
+	 * @param parallelism - the number of threads to count with
+	 * @return the histogram of the file's characters, indexed by character
+	 * @throws IOException if the file can not be read
+	 */
+	public static long[] count(String fileName, int parallelism) throws IOException{
+		return count(fileName, parallelism, false);
+	}
+
+	/**
+	 * Method to count the Unicode code points of a text file, the way TextSymbolReader reads them
+	 * when reading code points
+	 * @param fileName - a string representing the name of the file
+	 * @param parallelism - the number of threads to count with
+	 * @return the histogram of the file's code points, indexed by code point, ALPHABET_SIZE long
+	 * unless the file has supplementary characters
+	 * @throws IOException if the file can not be read
+	 */
+	public static long[] countCodePoints(String fileName, int parallelism) throws IOException{
+		return count(fileName, parallelism, true);
+	}
+
+	/**
+	 * Method to count the characters or code points of a text file
+	 * @param fileName - a string representing the name of the file
+	 * @param parallelism - the number of threads to count with
+	 * @param codePoints - true to count code points rather than UTF-16 chars
+	 * @return the histogram
+	 * @throws IOException if the file can not be read
+	 */
+	private static long[] count(String fileName, int parallelism, boolean codePoints) throws IOException{
+		Charset charset = Charset.defaultCharset();
+		if(!isSplittable(charset)){
+			return countSequential(fileName, codePoints);
+		}
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		try {
+			long[] bounds = segmentBounds(channel, parallelism);
+			SegmentCount total;
+			if(bounds.length == 2){
+				total = countSegment(channel, charset, bounds[0], bounds[1], codePoints);
+			}else{
+				ForkJoinPool pool = new ForkJoinPool(parallelism);
+				try {
+					total = pool.invoke(new CountTask(channel, charset, bounds, 0, bounds.length - 1, codePoints));
+				} catch (RuntimeException e) {
+					if(e.getCause() instanceof IOException){
+						throw (IOException) e.getCause();
+					}
+					throw e;
+				} finally {
+					pool.shutdown();
+				}
+			}
+			//Every line terminator is one line break, except a terminator at the very end
+			long breaks = total.counts['\r'] + total.counts['\n'] - total.crlfPairs;
+			if(total.lastChar == '\r' || total.lastChar == '\n'){
+				breaks--;
+			}
+			total.counts['\r'] = breaks;
+			total.counts['\n'] = 0;
+			if(total.supplementary == null){
+				return total.counts;
+			}
+			long[] counts = new long[Character.MAX_CODE_POINT + 1];
+			System.arraycopy(total.counts, 0, counts, 0, ALPHABET_SIZE);
+			System.arraycopy(total.supplementary, 0, counts, ALPHABET_SIZE, total.supplementary.length);
+			return counts;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Method to count the characters of a text file on the calling thread
+	 * @param fileName - a string representing the name of the file
+	 * @return the histogram of the file's characters, indexed by character
+	 * @throws IOException if the file can not be read
+	 */
+	public static long[] countSequential(String fileName) throws IOException{
+		return countSequential(fileName, false);
+	}
+
+	/**
+	 * Method to count the characters or code points of a text file on the calling thread
+	 * @param fileName - a string representing the name of the file
+	 * @param codePoints - true to count code points rather than UTF-16 chars
+	 * @return the histogram, indexed by character or code point
+	 * @throws IOException if the file can not be read
+	 */
+	public static long[] countSequential(String fileName, boolean codePoints) throws IOException{
+		long[] counts = new long[ALPHABET_SIZE];
+		TextSymbolReader reader = new TextSymbolReader(fileName, codePoints);
+		int c;
+		while((c = reader.next()) != -1){
+			if(c >= counts.length){
+				counts = Arrays.copyOf(counts, Character.MAX_CODE_POINT + 1);
+			}
+			counts[c]++;
+		}
+		reader.close();
+		return counts;
+	}
+
+	/**
+	 * Returns true if a file in the character set can be decoded in independent segments
+	 * @param charset - the character set
+	 * @return whether every segment can start at a known character boundary
+	 */
+	private static boolean isSplittable(Charset charset){
+		return charset.name().equals("UTF-8") || charset.newEncoder().maxBytesPerChar() == 1.0f;
+	}
+
+	/**
+	 * Method to cut the file into segments that start on character boundaries
+	 * @param channel - the file
+	 * @param parallelism - the number of threads that will count the segments
+	 * @return the start of every segment, followed by the size of the file
+	 * @throws IOException if the file can not be read
+	 */
+	private static long[] segmentBounds(FileChannel channel, int parallelism) throws IOException{
+		long size = channel.size();
+		long segments = Math.min(parallelism * 4L, size / MIN_SEGMENT_SIZE);
+		segments = Math.max(segments, (size + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+		segments = Math.max(segments, 1);
+		long[] bounds = new long[(int) segments + 1];
+		ByteBuffer b = ByteBuffer.allocate(1);
+		for(int i = 1; i < segments; i++){
+			long position = size / segments * i;
+			//Move forward past UTF-8 continuation bytes to the start of a character
+			while(position < size){
+				b.clear();
+				channel.read(b, position);
+				if((b.get(0) & 0xc0) != 0x80){
+					break;
+				}
+				position++;
+			}
+			bounds[i] = position;
+		}
+		bounds[(int) segments] = size;
+		return bounds;
+	}
+
+	/**
+	 * Method to count the characters of one segment of the file
+	 * @param channel - the file
+	 * @param charset - the character set of the file
+	 * @param start - the position of the first byte of the segment
+	 * @param end - the position after the last byte of the segment
+	 * @param codePoints - true to count surrogate pairs as the supplementary characters they stand for
+	 * @return the counts for the segment
+	 * @throws IOException if the file can not be read
+	 */
+	private static SegmentCount countSegment(FileChannel channel, Charset charset, long start, long end, boolean codePoints) throws IOException{
+		SegmentCount result = new SegmentCount();
+		result.counts = new long[ALPHABET_SIZE];
+		result.firstChar = -1;
+		result.lastChar = -1;
+		if(end <= start){
+			return result;
+		}
+		MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		CharsetDecoder decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		CharBuffer out = CharBuffer.allocate(8192);
+		int[] counts = new int[ALPHABET_SIZE];
+		int[] supplementary = null;
+		long crlfPairs = 0;
+		int previous = -1;
+		//A high surrogate waiting for its low surrogate, which may be in the next chunk
+		int high = -1;
+		boolean endOfInput = false;
+		boolean done = false;
+		while(!done){
+			CoderResult r = decoder.decode(in, out, endOfInput);
+			if(r.isUnderflow()){
+				//Any bytes left over are an incomplete character at the end of the segment
+				if(endOfInput){
+					decoder.flush(out);
+					done = true;
+				}else{
+					endOfInput = true;
+				}
+			}
+			out.flip();
+			char[] chars = out.array();
+			int limit = out.limit();
+			if(limit > 0 && result.firstChar == -1){
+				result.firstChar = chars[0];
+			}
+			for(int i = 0; i < limit; i++){
+				char c = chars[i];
+				if(codePoints && c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE){
+					if(high >= 0 && Character.isLowSurrogate(c)){
+						if(supplementary == null){
+							supplementary = new int[Character.MAX_CODE_POINT + 1 - ALPHABET_SIZE];
+						}
+						supplementary[Character.toCodePoint((char) high, c) - ALPHABET_SIZE]++;
+						high = -1;
+					}else{
+						if(high >= 0){
+							counts[high]++;
+						}
+						high = -1;
+						if(Character.isHighSurrogate(c)){
+							high = c;
+						}else{
+							counts[c]++;
+						}
+					}
+					previous = c;
+					continue;
+				}
+				if(high >= 0){
+					//An unpaired surrogate is counted as it is
+					counts[high]++;
+					high = -1;
+				}
+				counts[c]++;
+				if(c == '\n' && previous == '\r'){
+					crlfPairs++;
+				}
+				previous = c;
+			}
+			out.clear();
+		}
+		if(high >= 0){
+			counts[high]++;
+		}
+		for(int i = 0; i < ALPHABET_SIZE; i++){
+			result.counts[i] = counts[i];
+		}
+		if(supplementary != null){
+			result.supplementary = new long[supplementary.length];
+			for(int i = 0; i < supplementary.length; i++){
+				result.supplementary[i] = supplementary[i];
+			}
+		}
+		result.crlfPairs = crlfPairs;
+		result.lastChar = previous;
+		return result;
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that decodes a block file read from another stream, such as one
+ * written by HuffmanOutputStream or Encode -raw. Blocks are read and decoded one at a time,
+ * when the bytes of the previous block have all been read, so memory use only depends on
+ * the block size and a block can be read as soon as it has arrived.
+ * The block index at the end of the file is not needed and is not read.
+ * If the file has checksums each block is checked as soon as it is decoded.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class HuffmanInputStream extends FilterInputStream {
+	private DataInputStream data;
+	private int blockSize;
+	private int[] symbols;
+	private int position;
+	private int count;
+	private boolean endOfBlocks;
+	private boolean checksums;
+
+	/**
+	 * Constructor for the Huffman input stream, which reads the block file header straight away
+	 * @param in - the stream of encoded bytes
+	 * @throws IOException if the header can not be read or is not the header of a binary block file
+	 */
+	public HuffmanInputStream(InputStream in) throws IOException {
+		super(in);
+		this.data = new DataInputStream(in);
+		this.symbols = new int[0];
+		this.position = 0;
+		this.count = 0;
+		this.endOfBlocks = false;
+		for(int i = 0; i < BlockFormat.MAGIC.length; i++){
+			if(data.readByte() != BlockFormat.MAGIC[i]){
+				throw new IOException("Not a block file");
+			}
+		}
+		int version = data.readUnsignedByte();
+		int flags = data.readUnsignedByte();
+		BlockFormat.checkVersion(version, flags);
+		if((flags & BlockFormat.FLAG_BINARY) == 0){
+			throw new IOException("Block file holds characters, not bytes; decode it with BlockReader");
+		}
+		this.checksums = (flags & BlockFormat.FLAG_CHECKSUM) != 0;
+		//Every block is read into an array as long as its symbol count, which is at most the block size
+		this.blockSize = data.readInt();
+		if(blockSize <= 0 || blockSize > BlockFormat.MAX_BLOCK_SIZE){
+			throw new IOException("Corrupt block file: block size " + blockSize);
+		}
+	}
+
+	/**
+	 * Method to read and decode the next block, once the current one has been read
+	 * @return true if there are bytes left to read
+	 * @throws IOException if the stream can not be read or the block is corrupt
+	 */
+	private boolean nextBlock() throws IOException{
+		while(position == count && !endOfBlocks){
+			int symbolCount = data.readInt();
+			if(symbolCount == BlockFormat.END_OF_BLOCKS){
+				endOfBlocks = true;
+				break;
+			}
+			if(symbolCount < 0 || symbolCount > blockSize){
+				throw new IOException("Corrupt block file: block of " + symbolCount + " symbols");
+			}
+			int payloadSize = data.readInt();
+			if(payloadSize < 0 || payloadSize > BlockFormat.maxPayloadSize(symbolCount)){
+				throw new IOException("Corrupt block file: payload of " + payloadSize + " bytes");
+			}
+			int checksum = checksums ? data.readInt() : 0;
+			byte[] payload = new byte[payloadSize];
+			data.readFully(payload);
+			if(symbols.length < symbolCount){
+				symbols = new int[symbolCount];
+			}
+			BlockDecoder.decode(payload, symbolCount, symbols);
+			if(checksums && BlockFormat.checksum(symbols, symbolCount, true) != checksum){
+				throw new IOException("Corrupt block file: checksum does not match");
+			}
+			position = 0;
+			count = symbolCount;
+		}
+		return position < count;
+	}
+
+	@Override
+	public int read() throws IOException{
+		if(position == count && !nextBlock()){
+			return -1;
+		}
+		int b = symbols[position];
+		position++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException{
+		if(off < 0 || len < 0 || off + len > b.length){
+			throw new IndexOutOfBoundsException();
+		}
+		if(len == 0){
+			return 0;
+		}
+		if(position == count && !nextBlock()){
+			return -1;
+		}
+		//Only hand back what is already decoded, rather than wait for the next block
+		int n = Math.min(len, count - position);
+		for(int i = 0; i < n; i++){
+			b[off + i] = (byte) symbols[position + i];
+		}
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException{
+		long skipped = 0;
+		while(skipped < n && (position < count || nextBlock())){
+			int step = (int) Math.min(n - skipped, count - position);
+			position += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+
+	/**
+	 * @return the number of decoded bytes that can be read without reading another block
+	 */
+	@Override
+	public int available() throws IOException{
+		return count - position;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException{
+		throw new IOException("mark/reset not supported");
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * An output stream that encodes the bytes written to it and writes them to another stream
+ * as a block file. Bytes are collected into blocks of blockSize bytes, and every full block
+ * is encoded with its own canonical code table, so memory use only depends on the block size.
+ * Calling flush ends the current block early and sends it, so everything written before the
+ * flush can be decoded straight away, for example on the other end of a socket.
+ * Closing the stream ends the block records, so the output is a complete block file that
+ * Decode and BlockReader can read like one written by Encode -raw. By default the stream keeps
+ * no block index, so a stream that stays open for a long time does not grow in memory,
+ * and readers that need the index rebuild it from the block records; a stream made with
+ * indexed set keeps an entry for every block and writes the index and trailer when closed.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+	/**
+	 * The default number of bytes in a block
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+	private DataOutputStream data;
+	private int[] symbols;
+	private int count;
+	private int maxCodeLength;
+	private boolean indexed;
+	private ArrayList<Block> index;
+	private long offset;
+	private long firstSymbol;
+	private boolean closed;
+
+	/**
+	 * Constructor for the Huffman output stream, with the default block size
+	 * @param out - the stream to write the encoded bytes to
+	 * @throws IOException if the block file header can not be written
+	 */
+	public HuffmanOutputStream(OutputStream out) throws IOException {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor for the Huffman output stream, without a block index
+	 * @param out - the stream to write the encoded bytes to
+	 * @param blockSize - the most bytes to encode in a block
+	 * @throws IOException if the block file header can not be written
+	 */
+	public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException {
+		this(out, blockSize, false);
+	}
+
+	/**
+	 * Constructor for the Huffman output stream, which writes the block file header straight away
+	 * @param out - the stream to write the encoded bytes to
+	 * @param blockSize - the most bytes to encode in a block
+	 * @param indexed - true to keep an index entry for every block and write the index when closed
+	 * @throws IOException if the block file header can not be written
+	 * @throws IllegalArgumentException if the block size is not from 1 to BlockFormat.MAX_BLOCK_SIZE
+	 */
+	public HuffmanOutputStream(OutputStream out, int blockSize, boolean indexed) throws IOException {
+		super(out);
+		BlockFormat.checkBlockSize(blockSize);
+		this.data = new DataOutputStream(out);
+		this.symbols = new int[blockSize];
+		this.count = 0;
+		this.maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		this.indexed = indexed;
+		this.index = indexed ? new ArrayList<Block>() : null;
+		this.offset = BlockFormat.HEADER_SIZE;
+		this.firstSymbol = 0;
+		this.closed = false;
+		BlockFormat.writeHeader(data, BlockFormat.FLAG_BINARY | (indexed ? 0 : BlockFormat.FLAG_NO_INDEX), blockSize);
+	}
+
+	/**
+	 * Returns true if the stream writes a block index when closed
+	 * @return isIndexed
+	 */
+	public boolean isIndexed() {
+		return indexed;
+	}
+
+	/**
+	 * @return the longest code a byte is given
+	 */
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	/**
+	 * @param maxCodeLength the longest code a byte is given
+	 * @throws IllegalArgumentException if it is not from 1 to CodeLengths.MAX_LENGTH
+	 */
+	public void setMaxCodeLength(int maxCodeLength) {
+		this.maxCodeLength = CodeLengths.checkMaxLength(maxCodeLength);
+	}
+
+	@Override
+	public void write(int b) throws IOException{
+		checkOpen();
+		symbols[count] = b & 0xff;
+		count++;
+		if(count == symbols.length){
+			writeBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException{
+		checkOpen();
+		if(off < 0 || len < 0 || off + len > b.length){
+			throw new IndexOutOfBoundsException();
+		}
+		while(len > 0){
+			int n = Math.min(len, symbols.length - count);
+			for(int i = 0; i < n; i++){
+				symbols[count + i] = b[off + i] & 0xff;
+			}
+			count += n;
+			off += n;
+			len -= n;
+			if(count == symbols.length){
+				writeBlock();
+			}
+		}
+	}
+
+	/**
+	 * Method to encode the bytes written since the last block as a block of their own,
+	 * and flush the underlying stream
+	 * @throws IOException if the stream can not be written
+	 */
+	@Override
+	public void flush() throws IOException{
+		checkOpen();
+		writeBlock();
+		out.flush();
+	}
+
+	/**
+	 * Method to encode the last block, end the block records, write the block index and trailer
+	 * if the stream is indexed and close the underlying stream
+	 * @throws IOException if the stream can not be written or closed
+	 */
+	@Override
+	public void close() throws IOException{
+		if(closed){
+			return;
+		}
+		try {
+			writeBlock();
+			data.writeInt(BlockFormat.END_OF_BLOCKS);
+			if(indexed){
+				data.writeInt(index.size());
+				for(Block b : index){
+					data.writeLong(b.getOffset());
+					data.writeInt(b.getPayloadSize());
+					data.writeInt(b.getSymbolCount());
+				}
+				data.writeLong(offset);
+			}
+			data.flush();
+		} finally {
+			closed = true;
+			out.close();
+		}
+	}
+
+	/**
+	 * Method to encode and write the bytes collected so far, if there are any
+	 * @throws IOException if the stream can not be written
+	 */
+	private void writeBlock() throws IOException{
+		if(count == 0){
+			return;
+		}
+		byte[] payload = BlockEncoder.encode(symbols, count, 256, maxCodeLength);
+		data.writeInt(count);
+		data.writeInt(payload.length);
+		data.write(payload);
+		if(indexed){
+			index.add(new Block(offset, payload.length, count, firstSymbol));
+		}
+		offset += BlockFormat.RECORD_HEADER_SIZE + payload.length;
+		firstSymbol += count;
+		count = 0;
+	}
+
+	/**
+	 * Method to make sure the stream has not been closed
+	 * @throws IOException if the stream has been closed
+	 */
+	private void checkOpen() throws IOException{
+		if(closed){
+			throw new IOException("Stream closed");
+		}
+	}
+}
@@ -3,193 +3,163 @@
  */
 package huffman;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.FileReader;
+import java.io.File;
 import java.io.FileWriter;
+import java.io.Writer;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.PriorityQueue;
 
 /**
  * A class for the Huffman Tree object.
+ * Encoding only needs code lengths, which are computed from the sorted frequencies,
+ * so the nodes of the tree are only made when generateDotGraph draws it.
+ * Characters are Unicode code points. Files whose characters all fit the original header,
+ * up to 255 characters of up to 8 bits, keep it, others get a wide header, see writeHeader.
+ * More text can be added to the end of an encoded file with appendFile, see SegmentFormat.
  * 
  * @author Christopher Barnett
  *
  */
 public class HuffmanTree {
 	/**
-	 * A class for the Huffman Tree Node object.
+	 * The first bytes of a header for an alphabet the original header can not describe:
+	 * more than 255 characters, or characters past 0xFF
 	 */
-	private class HuffTreeNode implements Comparable<HuffTreeNode>{
-		private HuffTreeNode leftChild;
-		private HuffTreeNode rightChild;
-		private String character;
-		private int freq;
-		
-		/**
-		 * Default constructor for the Huffman Tree Node
-		 */
-		public HuffTreeNode(){
-			this.leftChild = null;
-			this.rightChild = null;
-			this.character = null;
-			this.freq = 0;
-		}
-		
-		/**
-		 * Parameterized constructor for the Huffman Tree Node
-		 * @param character - the character for the node
-		 * @param freq - the frequency the character appears in the source file
-		 */
-		public HuffTreeNode(String character, int freq){
-			this.leftChild = null;
-			this.rightChild = null;
-			this.character = character;
-			this.freq = freq;
-		}
-
-		/**
-		 * @return the leftChild
-		 */
-		public HuffTreeNode getLeftChild() {
-			return leftChild;
-		}
-
-		/**
-		 * @param leftChild the leftChild to set
-		 */
-		public void setLeftChild(HuffTreeNode leftChild) {
-			this.leftChild = leftChild;
-		}
-
-		/**
-		 * @return the rightChild
-		 */
-		public HuffTreeNode getRightChild() {
-			return rightChild;
-		}
-
-		/**
-		 * @param rightChild the rightChild to set
-		 */
-		public void setRightChild(HuffTreeNode rightChild) {
-			this.rightChild = rightChild;
-		}
-
-		/**
-		 * @return the character
-		 */
-		public String getCharacter() {
-			return character;
-		}
-
-		/**
-		 * @return the freq
-		 */
-		public int getFreq() {
-			return freq;
-		}
-
-		/**
-		 * @param freq the freq to set
-		 */
-		public void setFreq(int freq) {
-			this.freq = freq;
-		}
-
-		@Override
-		public int compareTo(HuffTreeNode n) {
-			if(n.getFreq() > this.freq){
-				return -1;
-			}
-			if(n.getFreq() < this.freq){
-				return 1;
-			}
-			return 0;
-		}
-		/**
-		 * Returns true if node is a leaf node
-		 * @return isLeaf
-		 */
-		public boolean isLeaf(){
-			if(this.leftChild == null && this.rightChild == null){
-				return true;
-			}
-			return false;
-		}
-		
-		/**
-		 * Returns a string representation of the node.
-		 * Used to populate the dot graphs
-		 * @return the string
-		 */
-		
-		public String toString(){
-			if(!this.isLeaf()){
-				if(this.freq == 0){
-					return this.character;
-				}
-				return "" + this.freq;
-			}
-			if(this.character == "\u0000" || ((byte) this.character.charAt(0)) == 0){
-				if(this.freq == 0){
-					return "EOF";
-				}
-				return "EOF:" + this.freq;
-			}
-			if(this.character == "\r" || this.character == "\u0013"){
-				if(this.freq == 0){
-					return "Carriage Return";
-				}
-				return "Carriage Return:" + this.freq;
-			}
-			if(this.character == "\"" || this.character == "\\u0022"){
-				if(this.freq == 0){
-					return "DblQuote";
-				}
-				return "DblQuote:" + this.freq;
-			}
-			if(this.freq == 0){
-				return "" + this.character;
-			}
-			return "" + this.character + ":" + this.freq;
+	public static final byte[] WIDE_HEADER_MAGIC = {0, 'H', 'U', 'W'};
+	private int[] leafSymbols;
+	private long[] leafWeights;
+	private int[] byWeight;
+	private ArrayList<CharCode> codes;
+	private int[] symbols;
+	private long[] weights;
+	private int[] leftChild;
+	private int[] rightChild;
+	private int size;
+	private int root;
+	private LinkedList<String> inputFileChars = null;
+	private boolean retainInput = true;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+	private Metrics metrics = new Metrics();
+	private boolean multiSymbol = false;
+	private boolean interleaved = false;
+	private static final Object[] APPEND_LOCKS = new Object[64];
+	static {
+		for(int i = 0; i < APPEND_LOCKS.length; i++){
+			APPEND_LOCKS[i] = new Object();
 		}
 	}
-	//-------------------------------------------------------------
-	private HuffTreeNode root;
-	private LinkedList<String> inputFileChars = null;
 	
 	/**
 	 * Default constructor for the Huffman Tree object
 	 */
 	public HuffmanTree() {
-		this.root = null;
+		this.leafSymbols = new int[0];
+		this.leafWeights = new long[0];
+		this.byWeight = new int[0];
+		this.codes = null;
+		this.size = 0;
+		this.root = -1;
+	}
+	
+	/**
+	 * @return the inputFileChars
+	 */
+	public LinkedList<String> getInputFileChars() {
+		return inputFileChars;
+	}
+	
+	/**
+	 * @return whether read keeps the characters of the input file in inputFileChars
+	 */
+	public boolean isRetainInput() {
+		return retainInput;
 	}
 
 	/**
-	 * @return the root
+	 * @param retainInput false to only count the characters of the input file,
+	 * for use with canonize(String, String)
 	 */
-	public HuffTreeNode getRoot() {
-		return root;
+	public void setRetainInput(boolean retainInput) {
+		this.retainInput = retainInput;
+	}
+	
+	/**
+	 * @return the number of threads used to count the input file
+	 */
+	public int getParallelism() {
+		return parallelism;
 	}
 
 	/**
-	 * @param root the root to set
+	 * @param parallelism the number of threads used to count the input file
 	 */
-	public void setRoot(HuffTreeNode root) {
-		this.root = root;
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
 	}
 	
 	/**
-	 * @return the inputFileChars
+	 * @return the longest code canonicalCodes will give a character
 	 */
-	public LinkedList<String> getInputFileChars() {
-		return inputFileChars;
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	/**
+	 * @param maxCodeLength the longest code canonicalCodes will give a character,
+	 * raised if the alphabet does not fit in codes of this length
+	 * @throws IllegalArgumentException if it is not from 1 to CodeLengths.MAX_LENGTH
+	 */
+	public void setMaxCodeLength(int maxCodeLength) {
+		this.maxCodeLength = CodeLengths.checkMaxLength(maxCodeLength);
+	}
+
+	/**
+	 * @return whether decodeFile decodes several short codes per table lookup
+	 */
+	public boolean isMultiSymbol() {
+		return multiSymbol;
+	}
+
+	/**
+	 * @param multiSymbol - true for decodeFile to decode with a MultiDecodeTable,
+	 * which decodes several short codes per table lookup
+	 */
+	public void setMultiSymbol(boolean multiSymbol) {
+		this.multiSymbol = multiSymbol;
+	}
+
+	/**
+	 * @return whether writeBinaryOutFile deals the codes out to four interleaved bitstreams
+	 */
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	/**
+	 * @param interleaved - true for writeBinaryOutFile to write an interleaved file, see InterleavedFormat,
+	 * which decodeFile recognizes automatically
+	 */
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	/**
+	 * @return the time taken and data handled by each phase of the last file encoded or decoded,
+	 * shared with the canonical tree made by canonize
+	 */
+	public Metrics getMetrics() {
+		return metrics;
 	}
 
 	/**
@@ -197,133 +167,485 @@ public class HuffmanTree {
 	 * @param inputFile - a string representing the name of the input file
 	 */
 	public void buildTree(String inputFile){
-		ArrayList<HuffTreeNode> h = read(inputFile);
-		int n = h.size();
-		PriorityQueue<HuffTreeNode> q = new PriorityQueue<HuffTreeNode>(h);
-		
-		for(int i = 1; i < n; i++){
-			HuffTreeNode z = new HuffTreeNode();
-			HuffTreeNode x = q.poll();
-			HuffTreeNode y = q.poll();
-			
-			z.setLeftChild(x);
-			z.setRightChild(y);
-			z.setFreq(x.getFreq() + y.getFreq());
-			
-			q.add(z);	
+		buildTree(read(inputFile), true);
+	}
+	
+	/**
+	 * Method to build the tree from a histogram of characters.
+	 * Unlike buildTree(String), no EOF character is added.
+	 * @param counts - the number of times each character appears, indexed by character
+	 */
+	public void buildTree(long[] counts){
+		buildTree(counts, false);
+	}
+	
+	/**
+	 * Method to get the leaves of the tree from a histogram of characters and sort them by frequency,
+	 * which is all canonicalCodes needs. The nodes of the tree are only made for generateDotGraph.
+	 * @param counts - the number of times each character appears, indexed by character
+	 * @param endOfFile - true to add the EOF character
+	 */
+	private void buildTree(long[] counts, boolean endOfFile){
+		long start = System.nanoTime();
+		int n = 0;
+		for(int i = 0; i < counts.length; i++){
+			if(counts[i] > 0 || (i == 0 && endOfFile)){
+				n++;
+			}
+		}
+		leafSymbols = new int[n];
+		leafWeights = new long[n];
+		byWeight = new int[n];
+		n = 0;
+		for(int i = 0; i < counts.length; i++){
+			if(counts[i] > 0 || (i == 0 && endOfFile)){
+				leafSymbols[n] = i;
+				leafWeights[n] = counts[i];
+				//EOF is character 0, appearing once
+				if(i == 0 && endOfFile){
+					leafWeights[n]++;
+				}
+				byWeight[n] = n;
+				n++;
+			}
 		}
-		root = q.poll();
+		sortByWeight(byWeight);
+		codes = null;
+		size = 0;
+		root = -1;
+		metrics.record(Metrics.Phase.BUILD_TREE, start, 0, 0);
 	}
 	
 	/**
-	 * Method to build the tree from a priority queue of CharCodes
+	 * Method to build the tree from a priority queue of CharCodes.
+	 * The codes are kept, and the nodes of the tree are only made for generateDotGraph.
 	 * @param p - a priority queue of CharCodes
 	 */
 	public void buildTree(PriorityQueue<CharCode> p){
-		CharCode c;
-		HuffTreeNode curr;
-		PriorityQueue<CharCode> q = new PriorityQueue<CharCode>();
-		q.addAll(p);
-		
-		root = new HuffTreeNode("root", 0);
-		curr = root;
-		while(q.size() > 0){
-			c = q.poll();
-			String s = Integer.toBinaryString(c.getCode());
-			//Pad right side with zeroes until lengths match
-			while(s.length() < c.getCodeLength()){
-				s = "0" + s;
-			}
-			//Traverse Tree
-			int i;
-			for(i = 0; i < s.length() - 1; i++){
-				if(s.charAt(i) == "0".charAt(0)){
-					if(curr.getLeftChild() == null){
-						if(curr.getCharacter() == "root"){
-							curr.setLeftChild(new HuffTreeNode("0", 0));
-						}else{
-							curr.setLeftChild(new HuffTreeNode(curr.getCharacter() + "0", 0));
+		codes = new ArrayList<CharCode>(p);
+		leafSymbols = new int[0];
+		leafWeights = new long[0];
+		byWeight = new int[0];
+		size = 0;
+		root = -1;
+	}
+	
+	/**
+	 * Method to make the nodes of the tree, from the codes it was built from, or else from
+	 * the sorted leaves with the two queue method: the leaves, and the internal nodes in the order
+	 * they are made, which is also sorted, so the two lightest nodes are always at the front of the queues
+	 */
+	private void buildNodes(){
+		if(codes != null){
+			allocate(2 * codes.size() + 1);
+			root = addNode(-1, 0, -1, -1);
+			for(CharCode c : codes){
+				int code = c.getCode();
+				//A code of length 0 is stored as a single 0 bit, the same as the file header
+				int length = Math.max(c.getCodeLength(), 1);
+				//Traverse Tree, adding the internal nodes on the code's path
+				int curr = root;
+				for(int i = length - 1; i > 0; i--){
+					if(((code >>> i) & 1) == 0){
+						if(leftChild[curr] == -1){
+							leftChild[curr] = addNode(-1, 0, -1, -1);
 						}
-					}
-					curr = curr.getLeftChild();
-				}else{
-					if(curr.getRightChild() == null){
-						if(curr.getCharacter() == "root"){
-							curr.setRightChild(new HuffTreeNode("1", 0));
-						}else{
-							curr.setRightChild(new HuffTreeNode(curr.getCharacter() + "1", 0));
+						curr = leftChild[curr];
+					}else{
+						if(rightChild[curr] == -1){
+							rightChild[curr] = addNode(-1, 0, -1, -1);
 						}
+						curr = rightChild[curr];
 					}
-					curr = curr.getRightChild();
 				}
+				int leaf = addNode(c.getSymbol(), 0, -1, -1);
+				if((code & 1) == 0){
+					leftChild[curr] = leaf;
+				}else{
+					rightChild[curr] = leaf;
+				}
+			}
+			return;
+		}
+		int n = leafSymbols.length;
+		allocate(Math.max(2 * n - 1, 1));
+		for(int i = 0; i < n; i++){
+			addNode(leafSymbols[byWeight[i]], leafWeights[byWeight[i]], -1, -1);
+		}
+		int leaf = 0;
+		int node = n;
+		for(int i = 1; i < n; i++){
+			int x;
+			if(leaf < n && (node == size || weights[leaf] <= weights[node])){
+				x = leaf++;
+			}else{
+				x = node++;
 			}
-			if(s.charAt(i) == "0".charAt(0)){
-				curr.setLeftChild(new HuffTreeNode(c.getCharacter(), 0));
-				curr = root;
+			int y;
+			if(leaf < n && (node == size || weights[leaf] <= weights[node])){
+				y = leaf++;
 			}else{
-				curr.setRightChild(new HuffTreeNode(c.getCharacter(), 0));
-				curr = root;
+				y = node++;
 			}
+			addNode(-1, weights[x] + weights[y], x, y);
+		}
+		root = size - 1;
+	}
+	
+	/**
+	 * Method to empty the tree's nodes and make room for a number of nodes
+	 * @param capacity - the number of nodes to make room for
+	 */
+	private void allocate(int capacity){
+		if(symbols == null || symbols.length < capacity){
+			symbols = new int[capacity];
+			weights = new long[capacity];
+			leftChild = new int[capacity];
+			rightChild = new int[capacity];
+		}
+		size = 0;
+		root = -1;
+	}
+	
+	/**
+	 * Method to add a node to the tree, making more room if needed
+	 * @param symbol - the character of a leaf node, -1 for an internal node
+	 * @param weight - the frequency of the node
+	 * @param left - the index of the left child, -1 for none
+	 * @param right - the index of the right child, -1 for none
+	 * @return the index of the new node
+	 */
+	private int addNode(int symbol, long weight, int left, int right){
+		if(size == symbols.length){
+			symbols = Arrays.copyOf(symbols, 2 * size);
+			weights = Arrays.copyOf(weights, 2 * size);
+			leftChild = Arrays.copyOf(leftChild, 2 * size);
+			rightChild = Arrays.copyOf(rightChild, 2 * size);
+		}
+		symbols[size] = symbol;
+		weights[size] = weight;
+		leftChild[size] = left;
+		rightChild[size] = right;
+		size++;
+		return size - 1;
+	}
+	
+	/**
+	 * Returns true if a node is a leaf node
+	 * @param node - the index of the node
+	 * @return isLeaf
+	 */
+	private boolean isLeaf(int node){
+		return leftChild[node] == -1 && rightChild[node] == -1;
+	}
+	
+	/**
+	 * Method to sort leaves by frequency, ties by character, with a merge sort
+	 * @param leaves - the indexes of the leaves to sort, in order of character
+	 */
+	private void sortByWeight(int[] leaves){
+		int n = leaves.length;
+		int[] from = leaves;
+		int[] to = new int[n];
+		for(int width = 1; width < n; width *= 2){
+			for(int low = 0; low < n; low += 2 * width){
+				int middle = Math.min(low + width, n);
+				int high = Math.min(low + 2 * width, n);
+				int i = low;
+				int j = middle;
+				for(int k = low; k < high; k++){
+					if(j == high || (i < middle && leafWeights[from[i]] <= leafWeights[from[j]])){
+						to[k] = from[i++];
+					}else{
+						to[k] = from[j++];
+					}
+				}
+			}
+			int[] t = from;
+			from = to;
+			to = t;
+		}
+		if(from != leaves){
+			System.arraycopy(from, 0, leaves, 0, n);
 		}
 	}
 	
 	/**
 	 * Method to read the characters from the input file
-	 * and put them into a hash table.
+	 * and count them in a histogram indexed by character.
+	 * The characters are only kept in inputFileChars if retainInput is set,
+	 * otherwise large files are counted in parallel.
 	 * @param fileName - a string representing the input file name
+	 * @return the histogram of the file's characters, indexed by character
 	 */
-	public ArrayList<HuffTreeNode> read(String fileName){
-		ArrayList<HuffTreeNode> h = new ArrayList<HuffTreeNode>();
-		Hashtable<String, Integer> table = new Hashtable<String, Integer>();
-		String line = "";
-		String character = "";
-		boolean firstLine = true;
+	public long[] read(String fileName){
+		long[] counts = new long[FrequencyCounter.ALPHABET_SIZE];
 		try {
-			BufferedReader reader = new BufferedReader(new FileReader(fileName));
+			counts = count(fileName);
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * Method to count the characters of the input file, keeping them in inputFileChars if retainInput is set
+	 * @param fileName - a string representing the input file name
+	 * @return the histogram of the file's characters, indexed by character
+	 * @throws IOException if the file can not be read
+	 */
+	private long[] count(String fileName) throws IOException{
+		metrics = new Metrics();
+		long start = System.nanoTime();
+		long[] counts;
+		if(retainInput){
+			counts = new long[FrequencyCounter.ALPHABET_SIZE];
+			TextSymbolReader reader = new TextSymbolReader(fileName, true);
 			inputFileChars = new LinkedList<String>();
-			while((line = reader.readLine()) != null){
-				if(firstLine){
-					firstLine = false;
-				}else{
-					character = "\r";
-					inputFileChars.add(character);
-					if(table.containsKey(character)){
-						int freq = table.get(character);
-						table.remove(character);
-						table.put(character, freq + 1);
-					}else{
-						table.put(character, 1);
-					}
-				}
-				for(int i = 0; i < line.length(); i++){
-					character = "" + line.charAt(i);
-					inputFileChars.add(character);
-					if(table.containsKey(character)){
-						int freq = table.get(character);
-						table.remove(character);
-						table.put(character, freq + 1);
-					}else{
-						table.put(character, 1);
-					}
+			int c;
+			while((c = reader.next()) != -1){
+				inputFileChars.add(new String(Character.toChars(c)));
+				if(c >= counts.length){
+					counts = Arrays.copyOf(counts, Character.MAX_CODE_POINT + 1);
 				}
+				counts[c]++;
 			}
 			reader.close();
-			Object[] alphabet = table.keySet().toArray();
-			
-			for(int i = 0; i < alphabet.length; i++){
-				String s = alphabet[i].toString();
-				h.add(new HuffTreeNode(s, table.get(s)));
-			}
-			h.add(new HuffTreeNode("\u0000", 1));
 			inputFileChars.add("\u0000");
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		}else{
+			inputFileChars = null;
+			counts = FrequencyCounter.countCodePoints(fileName, parallelism);
 		}
+		metrics.record(Metrics.Phase.COUNT, start, new File(fileName).length(), 0);
+		return counts;
+	}
+	
+	/**
+	 * Method to encode a text file: count its characters, build the tree and
+	 * canonize it, then read the file again to encode it.
+	 * Unlike buildTree and canonize, errors are thrown rather than printed,
+	 * so callers such as Batch can tell which files failed
+	 * @param sourceFile - a string representing the input file name
+	 * @param targetFile - a string representing the binary output file name
+	 * @return the canonical tree
+	 * @throws IOException if a file can not be read or written
+	 */
+	public HuffmanTree encodeFile(String sourceFile, String targetFile) throws IOException{
+		retainInput = false;
+		buildTree(count(sourceFile), true);
+		HuffmanTree h = new HuffmanTree();
+		PriorityQueue<CharCode> newCodes = canonicalCodes();
+		
+		h.buildTree(newCodes);
+		h.metrics = metrics;
+		h.interleaved = interleaved;
 		
+		h.writeSourceFile(targetFile, sourceFile, newCodes);
 		return h;
 	}
 	
+	/**
+	 * Method to add a text file to the end of a file written by encodeFile or canonize as a new segment,
+	 * without decoding or encoding again what the file already holds. The segment reuses the table of
+	 * the last segment if its codes for the new text take no more bits than a new table and its header would,
+	 * otherwise it gets a table of its own, see SegmentFormat. The way lines are read drops the terminator
+	 * at the end of a file, so the new text starts on a new line, the same as if the two files had been
+	 * encoded as one. A target that does not exist yet, or is empty, is encoded as usual, and an empty source
+	 * adds nothing. The target is locked while it is appended to, against other threads and processes,
+	 * and if the segment can not be written for any reason the target is cut back to its old size
+	 * @param sourceFile - a string representing the input file name
+	 * @param targetFile - a string representing the binary file name to append to
+	 * @return true if the segment reuses the table of the last segment
+	 * @throws IOException if a file can not be read or written, the target can not be locked
+	 * or the target does not have a single table
+	 */
+	public boolean appendFile(String sourceFile, String targetFile) throws IOException{
+		retainInput = false;
+		long[] counts = count(sourceFile);
+		synchronized(appendLock(targetFile)){
+			FileChannel outFile = FileChannel.open(Paths.get(targetFile), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			//The size is only known once the file is locked, until then there is nothing to roll back
+			long end = -1;
+			boolean written = false;
+			try {
+				//Closing the channel releases the lock
+				try {
+					outFile.lock();
+				} catch (OverlappingFileLockException e) {
+					throw new IOException(targetFile + " is already locked by this program", e);
+				}
+				end = outFile.size();
+				if(end == 0){
+					buildTree(counts, true);
+					writeSourceFile(outFile, sourceFile, canonicalCodes());
+					written = true;
+					return false;
+				}
+				boolean reuse = true;
+				if(new File(sourceFile).length() > 0){
+					reuse = appendSegment(outFile, sourceFile, targetFile, counts);
+				}
+				written = true;
+				return reuse;
+			} finally {
+				try {
+					if(!written && end >= 0){
+						outFile.truncate(end);
+					}
+				} finally {
+					outFile.close();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Method to get the object appends to a file synchronize on, since a file lock is held by the whole
+	 * JVM and a second lock of the same file from another thread would fail rather than wait
+	 * @param targetFile - a string representing the binary file name to append to
+	 * @return the lock object for the file
+	 */
+	private static Object appendLock(String targetFile){
+		int hash = Paths.get(targetFile).toAbsolutePath().normalize().hashCode();
+		return APPEND_LOCKS[(hash & 0x7fffffff) % APPEND_LOCKS.length];
+	}
+	
+	/**
+	 * Method to write a segment at the end of a locked single table file
+	 * @param outFile - the channel of the file, locked
+	 * @param sourceFile - a string representing the input file name, not empty
+	 * @param targetFile - a string representing the binary file name, for error messages
+	 * @param counts - the number of times each character of the source appears, indexed by character
+	 * @return true if the segment reuses the table of the last segment
+	 * @throws IOException if a file can not be read or written, or the target does not have a single table
+	 */
+	private boolean appendSegment(FileChannel outFile, String sourceFile, String targetFile, long[] counts) throws IOException{
+		long end = outFile.size();
+		//Only the original and wide headers can start a single table file, without or with the interleaved magic
+		ByteBuffer magic = ByteBuffer.allocate(InterleavedFormat.MAGIC.length);
+		while(magic.hasRemaining()){
+			if(outFile.read(magic, magic.position()) < 0){
+				throw new IOException(targetFile + " is too short to be an encoded file");
+			}
+		}
+		boolean interleavedFile = Arrays.equals(magic.array(), InterleavedFormat.MAGIC);
+		if(magic.array()[0] == 0 && !interleavedFile && !Arrays.equals(magic.array(), WIDE_HEADER_MAGIC)){
+			throw new IOException(targetFile + " does not have a single table, it can not be appended to");
+		}
+		long tableOffset = SegmentFormat.findTable(outFile);
+		//A trailer that does not lead to a table may just be codes that look like one, so the last
+		//table is only reused if it was found; the table at the start still tells if there is a line to end
+		boolean canReuse = tableOffset >= 0;
+		CodeTable previous = readTable(outFile, Math.max(tableOffset, 0), interleavedFile);
+		//A table of just EOF is only written for an empty file, anything else means there is a line to end
+		boolean newLine = previous.size() > 1;
+		if(newLine){
+			counts['\r']++;
+		}
+		buildTree(counts, true);
+		CodeTable newCodes = canonicalTable();
+		int distinct = newCodes.size();
+		long start = System.nanoTime();
+		
+		//Compare the cost of the codes of the last table with that of new codes and their header
+		long reuseBits = segmentBits(counts, previous);
+		long ownBits = segmentBits(counts, newCodes);
+		BitWriter header = new BitWriter(1 << 12);
+		EncodeTable c = writeHeader(header, newCodes.toCharCodes());
+		byte[] headerBytes = header.toByteArray();
+		ownBits += 8L * headerBytes.length;
+		boolean reuse = canReuse && reuseBits >= 0 && reuseBits <= ownBits;
+		
+		outFile.position(end);
+		BitWriter out = new BitWriter(outFile, 1 << 16);
+		SegmentFormat.writeMagic(out);
+		if(reuse){
+			out.write(SegmentFormat.PREVIOUS_TABLE, 8);
+			c = new EncodeTable(previous);
+		}else{
+			out.write(SegmentFormat.OWN_TABLE, 8);
+			for(int i = 0; i < headerBytes.length; i++){
+				out.write(headerBytes[i], 8);
+			}
+			tableOffset = end;
+		}
+		long symbols = 0;
+		if(newLine){
+			c.writeSymbol(out, '\r');
+			symbols++;
+		}
+		TextSymbolReader reader = new TextSymbolReader(sourceFile, true);
+		try {
+			int inputChar;
+			while((inputChar = reader.next()) != -1){
+				c.writeSymbol(out, inputChar);
+				symbols++;
+			}
+		} finally {
+			reader.close();
+		}
+		c.writeSymbol(out, 0);
+		out.alignToByte();
+		SegmentFormat.writeTrailer(out, tableOffset);
+		out.flush();
+		metrics.record(Metrics.Phase.WRITE, start, new File(sourceFile).length(), outFile.size() - end);
+		metrics.recordSymbols(symbols, distinct);
+		return reuse;
+	}
+	
+	/**
+	 * Method to read the table of a segment of a single table file
+	 * @param in - the channel of the file
+	 * @param offset - the offset of the segment, 0 for the file as first encoded
+	 * @param interleavedFile - true if the file starts with the interleaved file magic bytes
+	 * @return the codes of the table
+	 * @throws IOException if the file can not be read or the segment has no table
+	 */
+	private CodeTable readTable(FileChannel in, long offset, boolean interleavedFile) throws IOException{
+		in.position(offset);
+		BitReader bits = new BitReader(in, 1 << 12);
+		if(offset > 0){
+			SegmentFormat.readMagic(bits);
+			if(bits.read(8) != SegmentFormat.OWN_TABLE){
+				throw new IOException("Corrupt segment: no table at offset " + offset);
+			}
+		}else if(interleavedFile){
+			bits.read(InterleavedFormat.MAGIC.length * 8);
+		}
+		return readHeader(bits);
+	}
+	
+	/**
+	 * Method to estimate the size of the codes of a segment
+	 * @param counts - the number of times each character of the segment appears, indexed by character
+	 * @param table - the codes of a table
+	 * @return the number of bits of the codes of every character and of EOF,
+	 * or -1 if a character of the segment has no code in the table
+	 */
+	private static long segmentBits(long[] counts, CodeTable table){
+		long bits = 0;
+		long covered = 0;
+		boolean endOfFile = false;
+		for(int i = 0; i < table.size(); i++){
+			int symbol = table.getSymbol(i);
+			long count = symbol < counts.length ? counts[symbol] : 0;
+			bits += count * table.getCodeLength(i);
+			covered += count;
+			if(symbol == 0){
+				bits += table.getCodeLength(i);
+				endOfFile = true;
+			}
+		}
+		long total = 0;
+		for(int i = 0; i < counts.length; i++){
+			total += counts[i];
+		}
+		return endOfFile && covered == total ? bits : -1;
+	}
+	
 	/**
 	 * Method to produce a canonical Huffman Tree
 	 * @param binaryOutputFile - a string representing the binary output file name
@@ -331,19 +653,85 @@ public class HuffmanTree {
 	 */
 	public HuffmanTree canonize(String binaryOutputFile, LinkedList<String> infile){
 		HuffmanTree h = new HuffmanTree();
-		PriorityQueue<CharCode> codes = new PriorityQueue<CharCode>();
-		
-		canonExpand(root, codes, 0);
-		
-		PriorityQueue<CharCode> newCodes = generateCodes(codes);
+		PriorityQueue<CharCode> newCodes = canonicalCodes();
 		
 		h.buildTree(newCodes);
+		h.metrics = metrics;
+		h.interleaved = interleaved;
 		
 		h.writeBinaryOutFile(binaryOutputFile, infile, newCodes);
 		return h;
 		
 	}
 	
+	/**
+	 * Method to produce a canonical Huffman Tree, re-reading the source file
+	 * to encode it instead of keeping its characters in memory
+	 * @param binaryOutputFile - a string representing the binary output file name
+	 * @param sourceFile - a string representing the name of the input file the tree was built from
+	 */
+	public HuffmanTree canonize(String binaryOutputFile, String sourceFile){
+		HuffmanTree h = new HuffmanTree();
+		PriorityQueue<CharCode> newCodes = canonicalCodes();
+		
+		h.buildTree(newCodes);
+		h.metrics = metrics;
+		h.interleaved = interleaved;
+		
+		h.writeBinaryOutFile(binaryOutputFile, sourceFile, newCodes);
+		return h;
+	}
+	
+	/**
+	 * Method to get the canonical codes for the characters of the tree.
+	 * The code lengths come straight from the sorted frequencies, without the nodes of the tree,
+	 * and the codes from the number of codes of each length
+	 * @return a priority queue of CharCodes with their code lengths and codes set
+	 */
+	public PriorityQueue<CharCode> canonicalCodes(){
+		return canonicalTable().toCharCodes();
+	}
+	
+	/**
+	 * Method to get the canonical codes for the characters of the tree as a table of int arrays,
+	 * without a CharCode per character
+	 * @return the code table
+	 */
+	public CodeTable canonicalTable(){
+		long start = System.nanoTime();
+		if(codes != null){
+			//A tree built from codes already has canonical code lengths
+			int n = codes.size();
+			int[] symbols = new int[n];
+			int[] lengths = new int[n];
+			for(int i = 0; i < n; i++){
+				symbols[i] = codes.get(i).getSymbol();
+				lengths[i] = codes.get(i).getCodeLength();
+			}
+			return new CodeTable(symbols, lengths, n);
+		}
+		int n = leafSymbols.length;
+		long[] freqs = new long[n];
+		for(int i = 0; i < n; i++){
+			freqs[i] = leafWeights[byWeight[i]];
+		}
+		int[] sortedLengths = CodeLengths.huffmanLengths(freqs);
+		//The lightest character has the longest code
+		int maxLength = n > 0 ? sortedLengths[0] : 0;
+		if(maxLength > maxCodeLength){
+			sortedLengths = CodeLengths.limitedLengths(freqs, maxCodeLength);
+			maxLength = sortedLengths[0];
+		}
+		int[] lengths = new int[n];
+		for(int i = 0; i < n; i++){
+			lengths[byWeight[i]] = sortedLengths[i];
+		}
+		CodeTable table = new CodeTable(leafSymbols, lengths, n);
+		metrics.record(Metrics.Phase.GENERATE_CODES, start, 0, 0);
+		metrics.recordMaxCodeLength(maxLength);
+		return table;
+	}
+	
 	/**
 	 * Method to generate codes based on the tree, a canonical tree
 	 * should be used
@@ -352,7 +740,7 @@ public class HuffmanTree {
 	 */
 	public PriorityQueue<CharCode> generateCodes(PriorityQueue<CharCode> codes){
 		PriorityQueue<CharCode> newCodes = new PriorityQueue<CharCode>();
-		byte currentCode = 0b00000000;
+		int currentCode = 0;
 		int currentLength;
 		CharCode c;
 		
@@ -370,9 +758,10 @@ public class HuffmanTree {
 				c.setCode(currentCode);
 				newCodes.add(c);
 			}else{
-				currentLength = c.getCodeLength();
+				//Drop one bit for every level the code length goes up the tree
 				currentCode++;
-				currentCode = (byte) (currentCode >> 1);
+				currentCode = currentCode >> (currentLength - c.getCodeLength());
+				currentLength = c.getCodeLength();
 				c.setCode(currentCode);
 				newCodes.add(c);
 			}
@@ -381,25 +770,6 @@ public class HuffmanTree {
 		return newCodes;
 	}
 	
-	/**
-	 * Method for recursive calls to generate the canonical tree
-	 * @param curr - the current node of the tree traversal
-	 * @param codes - the current queue of codes
-	 * @param length - the length of the current code - AKA the current depth of the tree traversal
-	 */
-	private void canonExpand(HuffTreeNode curr, PriorityQueue<CharCode> codes, int length){
-		if(!curr.isLeaf()){
-			if(curr.getLeftChild() != null){
-				canonExpand(curr.getLeftChild(), codes, length + 1);
-			}
-			if(curr.getRightChild() != null){
-				canonExpand(curr.getRightChild(), codes, length + 1);
-			}
-		}else{
-			codes.add(new CharCode(curr.getCharacter(), length));
-		}
-	}
-	
 	/**
 	 * Method to write the binary output file
 	 * @param file - a string representing the output file name
@@ -408,53 +778,38 @@ public class HuffmanTree {
 	 */
 	public void writeBinaryOutFile(String file, LinkedList<String> infile, PriorityQueue<CharCode> q){
 		try {
-			FileOutputStream outFile = new FileOutputStream(file);
-			ArrayList<Byte> bytes = new ArrayList<Byte>(1024);
-			Hashtable<String, CharCode> c = new Hashtable<String, CharCode>();
-			String currentByte = "";
-			
-			//Start header
-			bytes.add((byte)q.size());
-			
-			//Build the table and rest of header
-			while(q.size() > 0){
-				CharCode cc = q.poll();
-				c.put(cc.getCharacter(), cc);
-				
-				bytes.add((byte) cc.getCharacter().charAt(0));
-				bytes.add((byte)cc.getCodeLength());
+			long start = System.nanoTime();
+			FileChannel outFile = openOutputFile(file);
+			BitWriter out = new BitWriter(outFile, 1 << 16);
+			int distinct = q.size();
+			BitWriter[] streams = null;
+			if(interleaved){
+				InterleavedFormat.writeMagic(out);
+				streams = InterleavedFormat.newStreams(infile.size());
 			}
+			EncodeTable c = writeHeader(out, q);
 			
 			//Process the input
+			long symbols = 0;
 			while(infile.size() > 0){
 				String inputChar = infile.poll();
 				if(inputChar == "\u0000"){
-					while(currentByte.length() < 8){
-						currentByte += "0";
-					}
-					bytes.add((byte) Integer.parseInt(currentByte, 2));
-				}else{
-					//Get the code for the character as a binary string
-					String s = Integer.toBinaryString(c.get(inputChar).getCode());
-					//Pad with 0s if necessary
-					while(s.length() < c.get(inputChar).getCodeLength()){
-						s = "0" + s;
-					}
-					//Add code to bytes
-					for(int i = 0; i < s.length(); i++){
-						if(currentByte.length() >= 8){
-							bytes.add((byte) Integer.parseInt(currentByte, 2));
-							currentByte = "";
-						}
-						currentByte += "" + s.charAt(i);
-					}
+					break;
+				}
+				c.writeSymbol(streams == null ? out : streams[(int) (symbols % InterleavedFormat.STREAMS)], inputChar.codePointAt(0));
+				symbols++;
+				if(streams != null && symbols % InterleavedFormat.CHUNK_SYMBOLS == 0){
+					InterleavedFormat.writeChunk(out, streams, InterleavedFormat.CHUNK_SYMBOLS);
 				}
 			}
-			byte[] buffer = new byte[bytes.size()];
-			for(int i = 0; i < bytes.size(); i++){
-				buffer[i] = bytes.get(i);
+			if(streams == null){
+				c.writeSymbol(out, 0);
+			}else{
+				InterleavedFormat.writeEnd(out, streams, (int) (symbols % InterleavedFormat.CHUNK_SYMBOLS));
 			}
-			outFile.write(buffer);
+			out.flush();
+			metrics.record(Metrics.Phase.WRITE, start, symbols, outFile.position());
+			metrics.recordSymbols(symbols, distinct);
 			outFile.close();
 			
 		} catch (IOException e) {
@@ -463,6 +818,200 @@ public class HuffmanTree {
 		}
 	}
 	
+	/**
+	 * Method to write the binary output file by reading the source file a second time
+	 * @param file - a string representing the output file name
+	 * @param sourceFile - a string representing the input file name
+	 * @param q - a priority queue of CharCodes
+	 */
+	public void writeBinaryOutFile(String file, String sourceFile, PriorityQueue<CharCode> q){
+		try {
+			writeSourceFile(file, sourceFile, q);
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Method to write the binary output file by reading the source file a second time
+	 * @param file - a string representing the output file name
+	 * @param sourceFile - a string representing the input file name
+	 * @param q - a priority queue of CharCodes
+	 * @throws IOException if a file can not be read or written
+	 */
+	private void writeSourceFile(String file, String sourceFile, PriorityQueue<CharCode> q) throws IOException{
+		FileChannel outFile = openOutputFile(file);
+		try {
+			writeSourceFile(outFile, sourceFile, q);
+		} finally {
+			outFile.close();
+		}
+	}
+	
+	/**
+	 * Method to write the binary output file to an open channel by reading the source file a second time
+	 * @param outFile - the channel of the output file, empty and at position 0
+	 * @param sourceFile - a string representing the input file name
+	 * @param q - a priority queue of CharCodes
+	 * @throws IOException if a file can not be read or written
+	 */
+	private void writeSourceFile(FileChannel outFile, String sourceFile, PriorityQueue<CharCode> q) throws IOException{
+		long start = System.nanoTime();
+		BitWriter out = new BitWriter(outFile, 1 << 16);
+		int distinct = q.size();
+		BitWriter[] streams = null;
+		if(interleaved){
+			InterleavedFormat.writeMagic(out);
+			streams = InterleavedFormat.newStreams(new File(sourceFile).length());
+		}
+		EncodeTable c = writeHeader(out, q);
+		
+		//Process the input
+		long symbols = 0;
+		TextSymbolReader reader = new TextSymbolReader(sourceFile, true);
+		try {
+			int inputChar;
+			if(streams == null){
+				while((inputChar = reader.next()) != -1){
+					c.writeSymbol(out, inputChar);
+					symbols++;
+				}
+			}else{
+				//Deal the codes out to the streams in turn, writing them out a chunk at a time
+				while((inputChar = reader.next()) != -1){
+					c.writeSymbol(streams[(int) (symbols % InterleavedFormat.STREAMS)], inputChar);
+					symbols++;
+					if(symbols % InterleavedFormat.CHUNK_SYMBOLS == 0){
+						InterleavedFormat.writeChunk(out, streams, InterleavedFormat.CHUNK_SYMBOLS);
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		if(streams == null){
+			c.writeSymbol(out, 0);
+		}else{
+			InterleavedFormat.writeEnd(out, streams, (int) (symbols % InterleavedFormat.CHUNK_SYMBOLS));
+		}
+		out.flush();
+		metrics.record(Metrics.Phase.WRITE, start, new File(sourceFile).length(), outFile.position());
+		metrics.recordSymbols(symbols, distinct);
+	}
+	
+	/**
+	 * Method to open a file for writing, replacing it if it exists
+	 * @param file - a string representing the file name
+	 * @return a channel for writing the file
+	 * @throws IOException if the file can not be opened
+	 */
+	private FileChannel openOutputFile(String file) throws IOException{
+		return FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * Method to write the header of the binary output file. Alphabets of up to 255 characters
+	 * of up to 8 bits get the original header: the number of characters (byte), then the character
+	 * and its code length (a byte each) in canonical order. Others get a wide header: WIDE_HEADER_MAGIC,
+	 * the number of characters, then in code point order the gap from the last character and the code length,
+	 * with the number and the gaps as varints, so large alphabets of nearby characters take two bytes a character
+	 * @param out - the bit writer to write the header to
+	 * @param q - a priority queue of CharCodes, emptied by this method
+	 * @return a table of the codes by character
+	 * @throws IOException if the header can not be written
+	 */
+	private EncodeTable writeHeader(BitWriter out, PriorityQueue<CharCode> q) throws IOException{
+		EncodeTable c = new EncodeTable(q);
+		int maxSymbol = 0;
+		for(CharCode cc : q){
+			maxSymbol = Math.max(maxSymbol, cc.getSymbol());
+		}
+		if(q.size() > 0xff || maxSymbol > 0xff){
+			CharCode[] sorted = q.toArray(new CharCode[q.size()]);
+			Arrays.sort(sorted, new Comparator<CharCode>() {
+				@Override
+				public int compare(CharCode a, CharCode b) {
+					return a.getSymbol() - b.getSymbol();
+				}
+			});
+			for(int i = 0; i < WIDE_HEADER_MAGIC.length; i++){
+				out.write(WIDE_HEADER_MAGIC[i], 8);
+			}
+			out.writeVarint(sorted.length);
+			int previous = 0;
+			for(CharCode cc : sorted){
+				out.writeVarint(cc.getSymbol() - previous);
+				out.write(cc.getCodeLength(), 8);
+				previous = cc.getSymbol();
+			}
+			q.clear();
+			return c;
+		}
+		
+		//Start header
+		out.write(q.size(), 8);
+		
+		//Rest of header
+		while(q.size() > 0){
+			CharCode cc = q.poll();
+			out.write(cc.getSymbol(), 8);
+			out.write(cc.getCodeLength(), 8);
+		}
+		return c;
+	}
+	
+	/**
+	 * Method to read the header written by writeHeader, original or wide
+	 * @param bits - the bit reader positioned at the header
+	 * @return the codes of the characters of the header
+	 * @throws IOException if the header can not be read or is corrupt, including code lengths
+	 * that are out of range or do not form a prefix code and characters listed twice
+	 */
+	private CodeTable readHeader(BitReader bits) throws IOException{
+		int numChars = (int) bits.read(8);
+		if(numChars > 0){
+			int[] chars = new int[numChars];
+			int[] lengths = new int[numChars];
+			boolean[] seen = new boolean[256];
+			for(int i = 0; i < numChars; i++){
+				chars[i] = (int) bits.read(8);
+				lengths[i] = (int) bits.read(8);
+				if(seen[chars[i]]){
+					throw new IOException("Corrupt header: character " + chars[i] + " listed twice");
+				}
+				seen[chars[i]] = true;
+			}
+			CodeLengths.checkLengths(lengths, numChars);
+			return new CodeTable(chars, lengths, numChars);
+		}
+		for(int i = 1; i < WIDE_HEADER_MAGIC.length; i++){
+			if((byte) bits.read(8) != WIDE_HEADER_MAGIC[i]){
+				throw new IOException("Corrupt header");
+			}
+		}
+		long count = bits.readVarint();
+		if(count > Character.MAX_CODE_POINT + 1){
+			throw new IOException("Corrupt header: " + count + " characters");
+		}
+		int n = (int) count;
+		int[] chars = new int[n];
+		int[] lengths = new int[n];
+		long symbol = 0;
+		for(int i = 0; i < n; i++){
+			long gap = bits.readVarint();
+			symbol += gap;
+			if(symbol > Character.MAX_CODE_POINT || (gap == 0 && i > 0)){
+				throw new IOException("Corrupt header: character " + symbol);
+			}
+			chars[i] = (int) symbol;
+			lengths[i] = (int) bits.read(8);
+		}
+		CodeLengths.checkLengths(lengths, n);
+		return new CodeTable(chars, lengths, n);
+	}
+	
 	/**
 	 * Method to read the bytes from the binary input file, build the tree from its header,
 	 * and write the output file
@@ -472,107 +1021,188 @@ public class HuffmanTree {
 	
 	public void readBinaryInFile(String inputFile, String outputFile){
 		try {
-			FileInputStream inFile = new FileInputStream(inputFile);
-			PriorityQueue<CharCode> q = new PriorityQueue<CharCode>();
-			PriorityQueue<CharCode> newq = new PriorityQueue<CharCode>();
-			byte[] buffer = new byte[1000000];
-			int currByte = 0;
-			inFile.read(buffer);
-			
-			//Read the header
-			int numChars = (int) buffer[currByte];
-			currByte++;
-			//Build queue of CharCodes
-			for(int i = 0; i < numChars; i++){
-				String c = "" + (char) buffer[currByte];
-				currByte++;
-				int length = buffer[currByte];
-				currByte++;
-				q.add(new CharCode(c, length));
+			System.out.println("Starting to decode...");
+			decodeFile(inputFile, outputFile);
+			System.out.println("Done.");
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Method to read the bytes from the binary input file, build the tree from its header,
+	 * and write the output file. Unlike readBinaryInFile, errors are thrown rather than printed
+	 * @param inputFile - a string representing the binary input file name
+	 * @param outputFile - a string representing the output file name
+	 * @throws IOException if a file can not be read or written
+	 */
+	public void decodeFile(String inputFile, String outputFile) throws IOException{
+		metrics = new Metrics();
+		long start = System.nanoTime();
+		boolean interleavedFile = InterleavedFormat.isInterleavedFile(inputFile);
+		FileChannel inFile = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+		try {
+			BitReader bits = new BitReader(inFile, 1 << 16);
+			if(interleavedFile){
+				bits.read(InterleavedFormat.MAGIC.length * 8);
 			}
-			newq.addAll(q);
-			buildTree(generateCodes(newq));
+			//Read the header into a table of codes
+			CodeTable table = readHeader(bits);
+			int numChars = table.size();
+			int maxLength = table.getMaxLength();
+			buildTree(table.toCharCodes());
 			
-			//Build a code reference table
-			Hashtable<String, String> table = new Hashtable<String, String>();
-			int maxLength = -1;
-			while(q.size() > 0){
-				CharCode c = q.poll();
-				String key = Integer.toBinaryString(c.getCode());
-				while(key.length() < c.getCodeLength()){
-					key = "0" + key;
-				}
-				table.put(key, c.getCharacter());
-				if(maxLength == -1){
-					maxLength = c.getCodeLength();
-				}
-			}
-			//Write file
-			System.out.println("Starting to decode...");
-			BufferedWriter output = new BufferedWriter(new FileWriter(outputFile));
-			String currCode = "";
-			String outputStr = "";
-			boolean finished = false;
-			while(!finished && currByte < buffer.length){
-				String s = Integer.toBinaryString(buffer[currByte] & 0xff);
-				currByte++;
-				//Pad with zeroes if necessary
-				while(s.length() < 8){
-					s = "0" + s;
+			//Build the code lookup table
+			//Write file, one chunk of characters at a time
+			long symbols = 0;
+			BufferedWriter output = new BufferedWriter(new FileWriter(outputFile), 1 << 16);
+			try {
+				if(interleavedFile){
+					//The first jump table follows the magic and the header
+					long position = bits.getPosition() / 8;
+					symbols = InterleavedFormat.decode(new DecodeTable(table), inFile, position, output);
+					inFile.position(InterleavedFormat.end(inFile, position));
+					bits = new BitReader(inFile, 1 << 16);
+				}else{
+					symbols = decodeSegment(table, bits, output);
+					bits.alignToByte();
 				}
-				for(int i = 0; i < s.length(); i++){
-					currCode = currCode + s.charAt(i);
-					if(table.containsKey(currCode)){
-						if(currCode.length() == maxLength && Integer.parseInt(currCode) == 0){
-							finished = true;
-							System.out.println("Done.");
-							break;
-						}else{
-							outputStr += table.get(currCode);
-							currCode = "";
-						}
+				
+				//Then any segments added by appendFile
+				while(bits.hasBits(8)){
+					SegmentFormat.readMagic(bits);
+					int mode = (int) bits.read(8);
+					if(mode == SegmentFormat.OWN_TABLE){
+						table = readHeader(bits);
+						numChars = Math.max(numChars, table.size());
+						maxLength = Math.max(maxLength, table.getMaxLength());
+					}else if(mode != SegmentFormat.PREVIOUS_TABLE){
+						throw new IOException("Corrupt segment: mode " + mode);
 					}
+					symbols += decodeSegment(table, bits, output);
+					bits.alignToByte();
+					SegmentFormat.readTrailer(bits);
 				}
+			} finally {
+				output.close();
 			}
-			output.write(outputStr);
-			output.close();
+			metrics.record(Metrics.Phase.DECODE, start, inFile.size(), new File(outputFile).length());
+			metrics.recordSymbols(symbols, numChars);
+			metrics.recordMaxCodeLength(maxLength);
+		} finally {
 			inFile.close();
-			
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Method to decode the codes of one segment, several codes per table lookup if multiSymbol is set
+	 * @param table - the codes of the segment's table
+	 * @param bits - the bit reader positioned at the start of the first code
+	 * @param output - the writer to write the characters to
+	 * @return the number of characters written
+	 * @throws IOException if the input can not be read or the output can not be written
+	 */
+	private long decodeSegment(CodeTable table, BitReader bits, Writer output) throws IOException{
+		if(multiSymbol && table.getMaxSymbol() <= MultiDecodeTable.MAX_SYMBOL){
+			MultiDecodeTable multiTable = new MultiDecodeTable(table, 0, MultiDecodeTable.DEFAULT_TABLE_BITS);
+			return multiTable.decode(bits, output);
+		}
+		return decodeSymbols(new DecodeTable(table), bits, output);
+	}
+	
+	/**
+	 * Method to decode characters one code per table lookup, until EOF, an invalid code or the end of the input
+	 * @param table - the lookup table of the codes
+	 * @param bits - the bit reader positioned at the start of the first code
+	 * @param output - the writer to write the characters to
+	 * @return the number of characters written
+	 * @throws IOException if the input can not be read or the output can not be written
+	 */
+	private long decodeSymbols(DecodeTable table, BitReader bits, Writer output) throws IOException{
+		long symbols = 0;
+		char[] chunk = new char[8192];
+		int chunkLength = 0;
+		while(true){
+			int symbol = table.decodeSymbol(bits);
+			if(symbol == 0 || symbol == -1 || bits.isPastEnd()){
+				break;
+			}
+			if(chunkLength >= chunk.length - 1){
+				output.write(chunk, 0, chunkLength);
+				chunkLength = 0;
+			}
+			chunkLength += Character.toChars(symbol, chunk, chunkLength);
+			symbols++;
+		}
+		output.write(chunk, 0, chunkLength);
+		return symbols;
+	}
+	
 	/**
 	 * Method to produce the code for a dot graph representation of the tree
 	 * @return a string representing the entire dot graph code representation
 	 */
 	public String generateDotGraph(){
-		String s = "digraph{\n";
-		s += dotGraphExpand(root);
-		s += "}";
-		return s;
+		if(size == 0){
+			buildNodes();
+		}
+		StringBuilder s = new StringBuilder("digraph{\n");
+		if(root != -1){
+			dotGraphExpand(root, "", s);
+		}
+		s.append("}");
+		return s.toString();
 	}
 	
 	/**
 	 * Recursive method to traverse the tree to build the dot graph code
-	 * @return a string with dot graph code for the current node
-	 */
-	private String dotGraphExpand(HuffTreeNode curr){
-		String str = "";
-		if(!curr.isLeaf()){
-			if(curr.getLeftChild() != null){
-				str += "\"" + curr + "\" -> \"" + curr.getLeftChild() + "\" [ label=\"0\" ];\n";
-				str += dotGraphExpand(curr.getLeftChild());
+	 * @param curr - the current node of the tree traversal
+	 * @param path - the code of the current node
+	 * @param s - the dot graph code to add the current node's edges to
+	 */
+	private void dotGraphExpand(int curr, String path, StringBuilder s){
+		if(!isLeaf(curr)){
+			if(leftChild[curr] != -1){
+				s.append("\"" + label(curr, path) + "\" -> \"" + label(leftChild[curr], path + "0") + "\" [ label=\"0\" ];\n");
+				dotGraphExpand(leftChild[curr], path + "0", s);
 			}
-			if(curr.getRightChild() != null){
-				str += "\"" + curr + "\" -> \"" + curr.getRightChild() + "\" [ label=\"1\" ];\n";
-				str += dotGraphExpand(curr.getRightChild());
+			if(rightChild[curr] != -1){
+				s.append("\"" + label(curr, path) + "\" -> \"" + label(rightChild[curr], path + "1") + "\" [ label=\"1\" ];\n");
+				dotGraphExpand(rightChild[curr], path + "1", s);
 			}
 		}
-		
-		return str;
+	}
+	
+	/**
+	 * Returns a string representation of a node.
+	 * Used to populate the dot graphs
+	 * @param node - the index of the node
+	 * @param path - the code of the node, which names the internal nodes of a canonical tree
+	 * @return the string
+	 */
+	private String label(int node, String path){
+		long freq = weights[node];
+		if(!isLeaf(node)){
+			if(freq == 0){
+				return path.length() == 0 ? "root" : path;
+			}
+			return "" + freq;
+		}
+		String name;
+		if(symbols[node] == 0){
+			name = "EOF";
+		}else if(symbols[node] == '\r'){
+			name = "Carriage Return";
+		}else if(symbols[node] == '"'){
+			name = "DblQuote";
+		}else{
+			name = new String(Character.toChars(symbols[node]));
+		}
+		if(freq == 0){
+			return name;
+		}
+		return name + ":" + freq;
 	}
 	
 }
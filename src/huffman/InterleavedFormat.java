@@ -0,0 +1,383 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class for the interleaved variant of the single table format.
+ * Decoding a single bitstream is serial, since every code starts where the last one ended.
+ * An interleaved file deals its symbols out to four bitstreams in turn, all sharing one
+ * canonical code table, so a decoder can follow four independent bit positions at once.
+ * The symbols are cut into chunks of CHUNK_SYMBOLS, each with its own jump table and streams,
+ * so neither the encoder nor the decoder holds more than one chunk in memory:
+ * <pre>
+ * magic:   00 'H' 'U' '4'
+ * header:  the same header as writeBinaryOutFile, original or wide
+ * chunks:  for every chunk
+ *   jump:    symbol count (int), then the size in bytes of each of the four streams (int)
+ *   streams: the four bitstreams, each padded to a byte, symbol i of the chunk being in stream i % 4
+ * end:     a symbol count of 0 (int)
+ * </pre>
+ * There is no EOF code, the symbol count of a chunk says where each of its streams stops.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public final class InterleavedFormat {
+	/**
+	 * The first bytes of every interleaved file
+	 */
+	public static final byte[] MAGIC = {0, 'H', 'U', '4'};
+	/**
+	 * The number of bitstreams the symbols are dealt out to
+	 */
+	public static final int STREAMS = 4;
+	/**
+	 * The number of symbols in every chunk but the last, a multiple of STREAMS
+	 */
+	public static final int CHUNK_SYMBOLS = 1 << 18;
+	/**
+	 * The size of the jump table of a chunk in bytes
+	 */
+	public static final int JUMP_TABLE_SIZE = 4 + 4 * STREAMS;
+
+	/**
+	 * Private constructor, the class only holds constants and helpers
+	 */
+	private InterleavedFormat() {
+	}
+
+	/**
+	 * Method to make the bit writers for the streams of a chunk, used again for every chunk
+	 * @param expectedBytes - a guess at the size of the whole encoded file in bytes
+	 * @return one in-memory bit writer for each stream
+	 */
+	public static BitWriter[] newStreams(long expectedBytes){
+		BitWriter[] streams = new BitWriter[STREAMS];
+		int capacity = (int) Math.min(expectedBytes / STREAMS + 16, CHUNK_SYMBOLS / STREAMS);
+		for(int i = 0; i < STREAMS; i++){
+			streams[i] = new BitWriter(capacity);
+		}
+		return streams;
+	}
+
+	/**
+	 * Method to write the magic bytes
+	 * @param out - the bit writer at the start of the file
+	 * @throws IOException if the bytes can not be written
+	 */
+	public static void writeMagic(BitWriter out) throws IOException{
+		for(int i = 0; i < MAGIC.length; i++){
+			out.write(MAGIC[i], 8);
+		}
+	}
+
+	/**
+	 * Method to write the jump table and the streams of a chunk, and empty the streams for the next chunk
+	 * @param out - the bit writer positioned after the code table or the last chunk
+	 * @param streams - the streams, with every symbol of the chunk written
+	 * @param symbols - the number of symbols written to the streams, at most CHUNK_SYMBOLS
+	 * @throws IOException if the chunk can not be written
+	 */
+	public static void writeChunk(BitWriter out, BitWriter[] streams, int symbols) throws IOException{
+		out.alignToByte();
+		out.write(symbols, 32);
+		for(int i = 0; i < STREAMS; i++){
+			streams[i].alignToByte();
+			out.write(streams[i].getByteCount(), 32);
+		}
+		for(int i = 0; i < STREAMS; i++){
+			streams[i].writeTo(out);
+		}
+	}
+
+	/**
+	 * Method to write the last chunk, if it has any symbols, and the end of the chunks
+	 * @param out - the bit writer positioned after the code table or the last chunk
+	 * @param streams - the streams, with every symbol of the last chunk written
+	 * @param symbols - the number of symbols written to the streams since the last chunk
+	 * @throws IOException if the chunk can not be written
+	 */
+	public static void writeEnd(BitWriter out, BitWriter[] streams, int symbols) throws IOException{
+		if(symbols > 0){
+			writeChunk(out, streams, symbols);
+		}
+		out.alignToByte();
+		out.write(0, 32);
+	}
+
+	/**
+	 * Method to decode the chunks of a file one after another
+	 * @param table - the lookup table of the codes
+	 * @param in - the channel of the file, read from position onwards
+	 * @param position - the position of the first jump table, just after the code table
+	 * @param out - the writer to write the characters to
+	 * @return the number of characters written
+	 * @throws IOException if the input can not be read, is truncated, has a corrupt jump table
+	 * or holds an invalid code, or the output can not be written
+	 */
+	public static long decode(DecodeTable table, FileChannel in, long position, Writer out) throws IOException{
+		ByteBuffer jump = ByteBuffer.allocate(JUMP_TABLE_SIZE);
+		ByteBuffer data = null;
+		int[] sizes = new int[STREAMS];
+		char[] chunk = new char[8192];
+		long symbols = 0;
+		while(true){
+			int count = readJumpTable(in, position, jump, sizes);
+			if(count == 0){
+				return symbols;
+			}
+			int total = 0;
+			for(int i = 0; i < STREAMS; i++){
+				total += sizes[i];
+			}
+			//A stream can be refilled an int at a time up to seven bytes past its end,
+			//which is padding after the last stream
+			if(data == null || data.capacity() < total + 8){
+				data = ByteBuffer.allocate(total + 8);
+			}
+			data.clear();
+			data.limit(total);
+			readFully(in, position + JUMP_TABLE_SIZE, data);
+			data.limit(data.capacity());
+			for(int i = total; i < total + 8; i++){
+				data.put(i, (byte) 0);
+			}
+			try {
+				decodeChunk(table, data, sizes, count, out, chunk);
+			} catch (IndexOutOfBoundsException e) {
+				//Codes that run on past the data of the chunk
+				throw new IOException("Truncated interleaved stream");
+			}
+			symbols += count;
+			position += JUMP_TABLE_SIZE + total;
+		}
+	}
+
+	/**
+	 * Method to read and check the jump table of a chunk
+	 * @param in - the channel of the file
+	 * @param position - the position of the jump table
+	 * @param jump - a buffer of JUMP_TABLE_SIZE bytes to read it into
+	 * @param sizes - the array to put the size of each stream into
+	 * @return the number of symbols of the chunk, 0 at the end of the chunks
+	 * @throws IOException if the jump table can not be read or a count or size is out of range
+	 */
+	private static int readJumpTable(FileChannel in, long position, ByteBuffer jump, int[] sizes) throws IOException{
+		jump.clear();
+		jump.limit(4);
+		readFully(in, position, jump);
+		int count = jump.getInt(0);
+		if(count == 0){
+			return 0;
+		}
+		if(count < 0 || count > CHUNK_SYMBOLS){
+			throw new IOException("Corrupt interleaved jump table: " + count + " symbols");
+		}
+		jump.limit(JUMP_TABLE_SIZE);
+		readFully(in, position + 4, jump);
+		//No code is longer than CodeLengths.MAX_LENGTH, which bounds the size of every stream
+		int limit = (count / STREAMS + 1) * CodeLengths.MAX_LENGTH / 8 + 1;
+		for(int i = 0; i < STREAMS; i++){
+			sizes[i] = jump.getInt(4 + 4 * i);
+			if(sizes[i] < 0 || sizes[i] > limit){
+				throw new IOException("Corrupt interleaved jump table: stream size " + sizes[i]);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Method to decode the streams of a chunk, four symbols per pass of the loop, one from each stream.
+	 * The bit buffer and position of each stream are kept in local variables rather than in a BitReader,
+	 * so the four decodes do not wait on each other and can run side by side
+	 * @param table - the lookup table of the codes
+	 * @param data - the streams of the chunk, one after another, then eight bytes of padding
+	 * @param sizes - the size of each stream in bytes
+	 * @param symbols - the number of symbols of the chunk
+	 * @param out - the writer to write the characters to
+	 * @param chunk - a buffer for the characters, at least 2 * STREAMS long
+	 * @throws IOException if a stream is truncated or holds an invalid code, or the output can not be written
+	 */
+	private static void decodeChunk(DecodeTable table, ByteBuffer data, int[] sizes, int symbols, Writer out, char[] chunk) throws IOException{
+		int[] entries = table.getEntries();
+		int shift = 64 - table.getTableBits();
+		long[] bits = new long[STREAMS];
+		int[] counts = new int[STREAMS];
+		int[] positions = new int[STREAMS];
+		int[] ends = new int[STREAMS];
+		for(int i = 0; i < STREAMS; i++){
+			positions[i] = i == 0 ? 0 : ends[i - 1];
+			ends[i] = positions[i] + sizes[i];
+		}
+
+		long b0 = 0, b1 = 0, b2 = 0, b3 = 0;
+		int n0 = 0, n1 = 0, n2 = 0, n3 = 0;
+		int p0 = positions[0], p1 = positions[1], p2 = positions[2], p3 = positions[3];
+		int chunkLength = 0;
+		for(int rounds = symbols / STREAMS; rounds > 0; rounds--){
+			//Room for four supplementary characters of two chars each
+			if(chunkLength > chunk.length - 2 * STREAMS){
+				out.write(chunk, 0, chunkLength);
+				chunkLength = 0;
+			}
+			//Top up each bit buffer to at least 32 bits, enough for the longest code
+			if(n0 < 32){
+				b0 |= (data.getInt(p0) & 0xffffffffL) << (32 - n0);
+				p0 += 4;
+				n0 += 32;
+			}
+			if(n1 < 32){
+				b1 |= (data.getInt(p1) & 0xffffffffL) << (32 - n1);
+				p1 += 4;
+				n1 += 32;
+			}
+			if(n2 < 32){
+				b2 |= (data.getInt(p2) & 0xffffffffL) << (32 - n2);
+				p2 += 4;
+				n2 += 32;
+			}
+			if(n3 < 32){
+				b3 |= (data.getInt(p3) & 0xffffffffL) << (32 - n3);
+				p3 += 4;
+				n3 += 32;
+			}
+			int e0 = entries[(int) (b0 >>> shift)];
+			int e1 = entries[(int) (b1 >>> shift)];
+			int e2 = entries[(int) (b2 >>> shift)];
+			int e3 = entries[(int) (b3 >>> shift)];
+			int l0 = e0 & 0xff;
+			int l1 = e1 & 0xff;
+			int l2 = e2 & 0xff;
+			int l3 = e3 & 0xff;
+			if(l0 == 0 || l1 == 0 || l2 == 0 || l3 == 0){
+				throw new IOException("Invalid code in interleaved stream");
+			}
+			b0 <<= l0;
+			b1 <<= l1;
+			b2 <<= l2;
+			b3 <<= l3;
+			n0 -= l0;
+			n1 -= l1;
+			n2 -= l2;
+			n3 -= l3;
+			if((e0 | e1 | e2 | e3) < FrequencyCounter.ALPHABET_SIZE << 8){
+				chunk[chunkLength] = (char) (e0 >>> 8);
+				chunk[chunkLength + 1] = (char) (e1 >>> 8);
+				chunk[chunkLength + 2] = (char) (e2 >>> 8);
+				chunk[chunkLength + 3] = (char) (e3 >>> 8);
+				chunkLength += STREAMS;
+			}else{
+				//At least one supplementary character, written as a surrogate pair
+				chunkLength += Character.toChars(e0 >>> 8, chunk, chunkLength);
+				chunkLength += Character.toChars(e1 >>> 8, chunk, chunkLength);
+				chunkLength += Character.toChars(e2 >>> 8, chunk, chunkLength);
+				chunkLength += Character.toChars(e3 >>> 8, chunk, chunkLength);
+			}
+		}
+		out.write(chunk, 0, chunkLength);
+		bits[0] = b0;
+		bits[1] = b1;
+		bits[2] = b2;
+		bits[3] = b3;
+		counts[0] = n0;
+		counts[1] = n1;
+		counts[2] = n2;
+		counts[3] = n3;
+		positions[0] = p0;
+		positions[1] = p1;
+		positions[2] = p2;
+		positions[3] = p3;
+
+		//The symbols left over after the last whole pass are in the first streams
+		for(int i = 0; i < symbols % STREAMS; i++){
+			if(counts[i] < 32){
+				bits[i] |= (data.getInt(positions[i]) & 0xffffffffL) << (32 - counts[i]);
+				positions[i] += 4;
+				counts[i] += 32;
+			}
+			int entry = entries[(int) (bits[i] >>> shift)];
+			int length = entry & 0xff;
+			if(length == 0){
+				throw new IOException("Invalid code in interleaved stream");
+			}
+			bits[i] <<= length;
+			counts[i] -= length;
+			out.write(Character.toChars(entry >>> 8));
+		}
+		//Any stream that used more bits than it holds ran into the next stream or the padding
+		for(int i = 0; i < STREAMS; i++){
+			if((long) positions[i] * 8 - counts[i] > (long) ends[i] * 8){
+				throw new IOException("Truncated interleaved stream");
+			}
+		}
+	}
+
+	/**
+	 * Method to find where the chunks of a file end, from their jump tables
+	 * @param in - the channel of the file
+	 * @param position - the position of the first jump table, just after the code table
+	 * @return the position just after the end of the chunks
+	 * @throws IOException if a jump table can not be read or is corrupt
+	 */
+	public static long end(FileChannel in, long position) throws IOException{
+		ByteBuffer jump = ByteBuffer.allocate(JUMP_TABLE_SIZE);
+		int[] sizes = new int[STREAMS];
+		while(readJumpTable(in, position, jump, sizes) > 0){
+			position += JUMP_TABLE_SIZE;
+			for(int i = 0; i < STREAMS; i++){
+				position += sizes[i];
+			}
+		}
+		return position + 4;
+	}
+
+	/**
+	 * Method to fill a buffer with bytes from a position of a channel
+	 * @param in - the channel
+	 * @param position - the position of the first byte
+	 * @param b - the buffer to fill up to its limit
+	 * @throws IOException if the channel can not be read or ends too soon
+	 */
+	private static void readFully(FileChannel in, long position, ByteBuffer b) throws IOException{
+		long start = position - b.position();
+		while(b.hasRemaining()){
+			if(in.read(b, start + b.position()) < 0){
+				throw new IOException("Truncated interleaved file");
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the file starts with the interleaved file magic bytes
+	 * @param fileName - a string representing the name of the file
+	 * @return isInterleavedFile
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isInterleavedFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ByteBuffer b = ByteBuffer.allocate(MAGIC.length);
+		while(b.hasRemaining()){
+			if(channel.read(b) < 0){
+				break;
+			}
+		}
+		channel.close();
+		if(b.hasRemaining()){
+			return false;
+		}
+		for(int i = 0; i < MAGIC.length; i++){
+			if(b.get(i) != MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * 
+ */
+package huffman;
+
+/**
+ * A class for the time taken and data handled by each phase of encoding or decoding a file.
+ * HuffmanTree keeps one for the last file it encoded or decoded, see getMetrics(), and every
+ * phase recorded is also added to the totals for the whole process, see getTotals(),
+ * which monitoring can read at any time.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class Metrics {
+	/**
+	 * The phases of encoding and decoding
+	 */
+	public enum Phase {
+		/**
+		 * Counting the characters of the source file
+		 */
+		COUNT("count"),
+		/**
+		 * Sorting the characters by their counts, the leaves of the Huffman tree
+		 */
+		BUILD_TREE("build tree"),
+		/**
+		 * Computing the code lengths from the sorted counts and generating the canonical codes
+		 */
+		GENERATE_CODES("generate codes"),
+		/**
+		 * Writing the header and the codes of the source file
+		 */
+		WRITE("write"),
+		/**
+		 * Reading the header and decoding the encoded file
+		 */
+		DECODE("decode");
+
+		private String label;
+
+		/**
+		 * Constructor for the phase
+		 * @param label - the name of the phase in reports
+		 */
+		private Phase(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @return the name of the phase in reports
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private static final Metrics totals = new Metrics();
+	private int[] runs;
+	private long[] nanos;
+	private long[] bytesIn;
+	private long[] bytesOut;
+	private long symbolCount;
+	private int distinctSymbols;
+	private int maxCodeLength;
+
+	/**
+	 * Constructor for an empty set of metrics
+	 */
+	public Metrics() {
+		int phases = Phase.values().length;
+		this.runs = new int[phases];
+		this.nanos = new long[phases];
+		this.bytesIn = new long[phases];
+		this.bytesOut = new long[phases];
+		this.symbolCount = 0;
+		this.distinctSymbols = 0;
+		this.maxCodeLength = 0;
+	}
+
+	/**
+	 * Method to get a copy of the totals for every file encoded or decoded by this process
+	 * @return the totals, which do not change after they are returned
+	 */
+	public static Metrics getTotals(){
+		Metrics copy = new Metrics();
+		synchronized(totals){
+			copy.add(totals);
+		}
+		return copy;
+	}
+
+	/**
+	 * Method to record a phase that has finished, here and in the totals
+	 * @param phase - the phase
+	 * @param start - the value of System.nanoTime() when the phase started
+	 * @param in - the number of bytes the phase read
+	 * @param out - the number of bytes the phase wrote
+	 */
+	void record(Phase phase, long start, long in, long out){
+		long elapsed = System.nanoTime() - start;
+		int i = phase.ordinal();
+		runs[i]++;
+		nanos[i] += elapsed;
+		bytesIn[i] += in;
+		bytesOut[i] += out;
+		synchronized(totals){
+			totals.runs[i]++;
+			totals.nanos[i] += elapsed;
+			totals.bytesIn[i] += in;
+			totals.bytesOut[i] += out;
+		}
+	}
+
+	/**
+	 * Method to record the characters of the file, here and in the totals
+	 * @param symbols - the number of characters encoded or decoded
+	 * @param distinct - the number of different characters
+	 */
+	void recordSymbols(long symbols, int distinct){
+		symbolCount += symbols;
+		distinctSymbols = Math.max(distinctSymbols, distinct);
+		synchronized(totals){
+			totals.symbolCount += symbols;
+			totals.distinctSymbols = Math.max(totals.distinctSymbols, distinct);
+		}
+	}
+
+	/**
+	 * Method to record the length of the longest code, here and in the totals
+	 * @param length - the length of the longest code
+	 */
+	void recordMaxCodeLength(int length){
+		maxCodeLength = Math.max(maxCodeLength, length);
+		synchronized(totals){
+			totals.maxCodeLength = Math.max(totals.maxCodeLength, length);
+		}
+	}
+
+	/**
+	 * Method to add another set of metrics to this one
+	 * @param m - the metrics to add
+	 */
+	private void add(Metrics m){
+		for(int i = 0; i < runs.length; i++){
+			runs[i] += m.runs[i];
+			nanos[i] += m.nanos[i];
+			bytesIn[i] += m.bytesIn[i];
+			bytesOut[i] += m.bytesOut[i];
+		}
+		symbolCount += m.symbolCount;
+		distinctSymbols = Math.max(distinctSymbols, m.distinctSymbols);
+		maxCodeLength = Math.max(maxCodeLength, m.maxCodeLength);
+	}
+
+	/**
+	 * @param phase - the phase
+	 * @return the number of times the phase was recorded
+	 */
+	public int getRuns(Phase phase) {
+		return runs[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase - the phase
+	 * @return the time taken by the phase, in nanoseconds
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase - the phase
+	 * @return the number of bytes read by the phase
+	 */
+	public long getBytesIn(Phase phase) {
+		return bytesIn[phase.ordinal()];
+	}
+
+	/**
+	 * @param phase - the phase
+	 * @return the number of bytes written by the phase
+	 */
+	public long getBytesOut(Phase phase) {
+		return bytesOut[phase.ordinal()];
+	}
+
+	/**
+	 * @return the number of characters encoded or decoded
+	 */
+	public long getSymbolCount() {
+		return symbolCount;
+	}
+
+	/**
+	 * @return the number of different characters, the most of any file
+	 */
+	public int getDistinctSymbols() {
+		return distinctSymbols;
+	}
+
+	/**
+	 * @return the length of the longest code, the most of any file
+	 */
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	/**
+	 * Method to get the size of the encoded data as a fraction of the original,
+	 * from the bytes written while encoding and read while decoding
+	 * @return the compression ratio, or 0 if nothing was encoded or decoded
+	 */
+	public double getRatio(){
+		long original = getBytesIn(Phase.WRITE) + getBytesOut(Phase.DECODE);
+		long encoded = getBytesOut(Phase.WRITE) + getBytesIn(Phase.DECODE);
+		if(original == 0){
+			return 0;
+		}
+		return (double) encoded / original;
+	}
+
+	/**
+	 * Returns a report of the metrics, one line for each phase that was recorded
+	 * followed by a line for the characters and codes
+	 * @return the report
+	 */
+	public String toString(){
+		StringBuilder s = new StringBuilder();
+		for(Phase phase : Phase.values()){
+			int i = phase.ordinal();
+			if(runs[i] > 0){
+				s.append(String.format("%-15s %10.3f ms %12d -> %12d bytes%n", phase.getLabel(),
+						nanos[i] / 1e6, bytesIn[i], bytesOut[i]));
+			}
+		}
+		s.append(String.format("%d characters, %d different, longest code %d bits, ratio %.1f%%",
+				symbolCount, distinctSymbols, maxCodeLength, 100 * getRatio()));
+		return s.toString();
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+
+/**
+ * A class for a lookup table that decodes several canonical Huffman codes at once.
+ * Like DecodeTable, the table has one entry for every possible value of the next tableBits bits
+ * of input, but each entry holds every whole code that fits in those bits, up to three,
+ * so short codes such as spaces and line ends are decoded two or three at a time.
+ * Each entry holds, from the low bits up: the number of bits the codes take up (8 bits),
+ * the number of symbols (8 bits), then each symbol (16 bits). A symbol that stops decoding,
+ * such as EOF, is always the last symbol of its entry.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class MultiDecodeTable {
+	/**
+	 * The default number of bits looked at per lookup, raised to the longest code length
+	 */
+	public static final int DEFAULT_TABLE_BITS = 13;
+	/**
+	 * The most symbols held by an entry
+	 */
+	public static final int MAX_SYMBOLS = 3;
+	/**
+	 * The largest symbol an entry can hold, the table is only for characters of the Basic Multilingual Plane
+	 */
+	public static final int MAX_SYMBOL = 0xffff;
+	private int tableBits;
+	private long[] entries;
+	private int[] lengths;
+	private int stopSymbol;
+	private long lookups;
+
+	/**
+	 * Constructor for the multi-symbol decode table
+	 * @param codes - the CharCodes of the alphabet, with codes assigned by generateCodes
+	 * @param stopSymbol - the symbol that stops decoding, or -1 for none
+	 * @param tableBits - the number of bits to look at per lookup, raised to the longest code length
+	 */
+	public MultiDecodeTable(Collection<CharCode> codes, int stopSymbol, int tableBits) {
+		this(new CodeTable(codes), stopSymbol, tableBits);
+	}
+
+	/**
+	 * Constructor for the multi-symbol decode table
+	 * @param codes - the codes of the alphabet
+	 * @param stopSymbol - the symbol that stops decoding, or -1 for none
+	 * @param tableBits - the number of bits to look at per lookup, raised to the longest code length
+	 */
+	public MultiDecodeTable(CodeTable codes, int stopSymbol, int tableBits) {
+		this.stopSymbol = stopSymbol;
+		this.lookups = 0;
+		tableBits = Math.max(tableBits, codes.getMaxLength());
+		this.tableBits = tableBits;
+		this.lengths = new int[codes.getMaxSymbol() + 1];
+
+		//First a table of single symbols, laid out the same as DecodeTable
+		int size = 1 << tableBits;
+		int[] single = new int[size];
+		for(int s = 0; s < codes.size(); s++){
+			int length = codes.getCodeLength(s);
+			int code = codes.getCode(s);
+			int symbol = codes.getSymbol(s);
+			lengths[symbol] = length;
+			int first = code << (tableBits - length);
+			int last = (code + 1) << (tableBits - length);
+			for(int i = first; i < last; i++){
+				single[i] = (symbol << 8) | length;
+			}
+		}
+
+		//Then follow each index through the single table while whole codes still fit in its bits
+		this.entries = new long[size];
+		for(int i = 0; i < size; i++){
+			int used = 0;
+			int count = 0;
+			long entry = 0;
+			while(count < MAX_SYMBOLS){
+				int s = single[(i << used) & (size - 1)];
+				int length = s & 0xff;
+				if((length == 0 && tableBits > 0) || used + length > tableBits){
+					break;
+				}
+				entry |= (long) (s >>> 8) << (16 + 16 * count);
+				used += length;
+				count++;
+				if((s >>> 8) == stopSymbol){
+					break;
+				}
+			}
+			entries[i] = entry | (count << 8) | used;
+		}
+	}
+
+	/**
+	 * @return the number of bits looked at per lookup
+	 */
+	public int getTableBits() {
+		return tableBits;
+	}
+
+	/**
+	 * @return the number of table lookups made while decoding, for measuring symbols per lookup
+	 */
+	public long getLookups() {
+		return lookups;
+	}
+
+	/**
+	 * Method to decode symbols as characters until the stop symbol, an invalid code or the end of the input
+	 * @param in - the bit reader positioned at the start of a code
+	 * @param out - the writer to write the characters to, the stop symbol is not written
+	 * @return the number of characters written
+	 * @throws IOException if the bit reader's channel can not be read or the writer can not be written
+	 */
+	public long decode(BitReader in, Writer out) throws IOException{
+		char[] chunk = new char[8192];
+		int chunkLength = 0;
+		long symbols = 0;
+		while(true){
+			if(chunkLength > chunk.length - MAX_SYMBOLS){
+				out.write(chunk, 0, chunkLength);
+				symbols += chunkLength;
+				chunkLength = 0;
+			}
+			long entry = entries[(int) in.peek(tableBits)];
+			lookups++;
+			int used = (int) entry & 0xff;
+			int count = (int) (entry >>> 8) & 0xff;
+			if(count == 0){
+				break;
+			}
+			if(!in.hasBits(used)){
+				//Near the end of the input only trust the first code, the rest may be padding
+				count = 1;
+				used = lengths[(int) (entry >>> 16) & 0xffff];
+				if(!in.hasBits(used)){
+					break;
+				}
+			}
+			in.skip(used);
+			int last = (int) (entry >>> (16 * count)) & 0xffff;
+			chunk[chunkLength] = (char) (entry >>> 16);
+			chunk[chunkLength + 1] = (char) (entry >>> 32);
+			chunk[chunkLength + 2] = (char) (entry >>> 48);
+			if(last == stopSymbol){
+				chunkLength += count - 1;
+				break;
+			}
+			chunkLength += count;
+		}
+		out.write(chunk, 0, chunkLength);
+		return symbols + chunkLength;
+	}
+}
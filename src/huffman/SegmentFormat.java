@@ -0,0 +1,152 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A class for the segments HuffmanTree.appendFile adds to the end of a single table file.
+ * The file as first encoded is the first segment; every appended segment starts on a byte boundary
+ * after the one before it:
+ * <pre>
+ * magic:   00 'H' 'U' '+'
+ * mode:    PREVIOUS_TABLE or OWN_TABLE (byte)
+ * header:  only for OWN_TABLE, the same header as writeBinaryOutFile, original or wide
+ * codes:   the codes of the segment's characters, then EOF, padded to a byte
+ * trailer: the offset of the segment holding the table the codes use (long), then the magic again
+ * </pre>
+ * A segment with PREVIOUS_TABLE uses the table of the last segment before it that has one,
+ * and the first segment always has one. The trailer lets the next append find that table
+ * without decoding the file. Decoders that do not know about segments stop at the first EOF.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public final class SegmentFormat {
+	/**
+	 * The first bytes of every appended segment, and the last bytes of its trailer
+	 */
+	public static final byte[] MAGIC = {0, 'H', 'U', '+'};
+	/**
+	 * The mode of a segment coded with the table of the segment before it
+	 */
+	public static final int PREVIOUS_TABLE = 0;
+	/**
+	 * The mode of a segment with a header of its own
+	 */
+	public static final int OWN_TABLE = 1;
+	/**
+	 * The size of the trailer in bytes
+	 */
+	public static final int TRAILER_SIZE = 8 + 4;
+
+	/**
+	 * Private constructor, the class only holds constants and helpers
+	 */
+	private SegmentFormat() {
+	}
+
+	/**
+	 * Method to write the magic bytes
+	 * @param out - the bit writer at a byte boundary
+	 * @throws IOException if the bytes can not be written
+	 */
+	public static void writeMagic(BitWriter out) throws IOException{
+		for(int i = 0; i < MAGIC.length; i++){
+			out.write(MAGIC[i], 8);
+		}
+	}
+
+	/**
+	 * Method to read and check the magic bytes
+	 * @param in - the bit reader at a byte boundary
+	 * @throws IOException if the bytes are not the magic bytes
+	 */
+	public static void readMagic(BitReader in) throws IOException{
+		for(int i = 0; i < MAGIC.length; i++){
+			if((byte) in.read(8) != MAGIC[i]){
+				throw new IOException("Corrupt segment: bad magic");
+			}
+		}
+	}
+
+	/**
+	 * Method to write the trailer of a segment
+	 * @param out - the bit writer after the codes of the segment, at a byte boundary
+	 * @param tableOffset - the offset of the segment holding the table the codes use
+	 * @throws IOException if the trailer can not be written
+	 */
+	public static void writeTrailer(BitWriter out, long tableOffset) throws IOException{
+		out.write(tableOffset >>> 32, 32);
+		out.write(tableOffset, 32);
+		writeMagic(out);
+	}
+
+	/**
+	 * Method to read and check the trailer of a segment
+	 * @param in - the bit reader after the codes of the segment, at a byte boundary
+	 * @return the offset of the segment holding the table the codes use
+	 * @throws IOException if the trailer can not be read or is corrupt
+	 */
+	public static long readTrailer(BitReader in) throws IOException{
+		long tableOffset = in.read(32) << 32 | in.read(32);
+		readMagic(in);
+		return tableOffset;
+	}
+
+	/**
+	 * Method to find the segment holding the table of the last segment of a file.
+	 * The codes of a file that has not been appended to may end in bytes that look like a trailer,
+	 * so a trailer only counts if it leads to the start of the file or to a segment with a table of its own
+	 * @param in - the channel of the file
+	 * @return the offset of the segment, 0 if the file has not been appended to,
+	 * or -1 if the file ends in something like a trailer that does not lead to a table
+	 * @throws IOException if the file can not be read
+	 */
+	public static long findTable(FileChannel in) throws IOException{
+		long size = in.size();
+		if(size < MAGIC.length + 1 + TRAILER_SIZE){
+			return 0;
+		}
+		ByteBuffer b = ByteBuffer.allocate(TRAILER_SIZE);
+		readFully(in, size - TRAILER_SIZE, b);
+		long tableOffset = b.getLong(0);
+		for(int i = 0; i < MAGIC.length; i++){
+			if(b.get(8 + i) != MAGIC[i]){
+				return 0;
+			}
+		}
+		if(tableOffset == 0){
+			return 0;
+		}
+		if(tableOffset < 0 || tableOffset > size - TRAILER_SIZE - MAGIC.length - 1){
+			return -1;
+		}
+		ByteBuffer segment = ByteBuffer.allocate(MAGIC.length + 1);
+		readFully(in, tableOffset, segment);
+		for(int i = 0; i < MAGIC.length; i++){
+			if(segment.get(i) != MAGIC[i]){
+				return -1;
+			}
+		}
+		return segment.get(MAGIC.length) == OWN_TABLE ? tableOffset : -1;
+	}
+
+	/**
+	 * Method to fill a buffer with bytes from a position of a channel
+	 * @param in - the channel
+	 * @param position - the position of the first byte
+	 * @param b - the buffer to fill
+	 * @throws IOException if the channel can not be read or ends too soon
+	 */
+	private static void readFully(FileChannel in, long position, ByteBuffer b) throws IOException{
+		while(b.hasRemaining()){
+			if(in.read(b, position + b.position()) < 0){
+				throw new IOException("Corrupt segment: unexpected end of file");
+			}
+		}
+	}
+}
@@ -0,0 +1,453 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A class for a canonical code table trained once from sample files and saved
+ * under a table ID, so that files can be encoded in a single pass with no counting
+ * or tree building. The encoded file only names the table instead of holding it:
+ * <pre>
+ * table file:   00 'H' 'U' 'T', version (byte), flags (byte), ID length (byte), ID,
+ *               symbol count (int), then for each symbol: symbol (char), code length (byte)
+ * encoded file: 00 'H' 'U' 'S', version (byte), ID length (byte), ID,
+ *               table checksum (int), symbol count (long), then the codes of the symbols
+ * </pre>
+ * Table files are named after their ID with the extension ".huft". Every byte value is
+ * always in the table, so any text in a single byte character set (or any file, for a binary
+ * table) can be encoded; other characters must appear in the samples. The table checksum
+ * makes sure a file is decoded with the same table it was encoded with.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class StaticTable {
+	/**
+	 * The first bytes of every table file
+	 */
+	public static final byte[] TABLE_MAGIC = {0, 'H', 'U', 'T'};
+	/**
+	 * The first bytes of every file encoded with a table
+	 */
+	public static final byte[] FILE_MAGIC = {0, 'H', 'U', 'S'};
+	/**
+	 * The version of the formats written by this class
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The extension of table files
+	 */
+	public static final String EXTENSION = ".huft";
+	private static final ConcurrentHashMap<String, StaticTable> loaded = new ConcurrentHashMap<String, StaticTable>();
+
+	private String id;
+	private boolean binary;
+	private int[] lengths;
+	private PriorityQueue<CharCode> codes;
+	private EncodeTable encodeTable;
+	private DecodeTable decodeTable;
+	private int checksum;
+
+	/**
+	 * Constructor for the static table
+	 * @param id - the table ID
+	 * @param binary - true if the symbols are bytes rather than characters
+	 * @param codes - the CharCodes of the alphabet, with codes assigned by generateCodes
+	 */
+	private StaticTable(String id, boolean binary, PriorityQueue<CharCode> codes) {
+		this.id = id;
+		this.binary = binary;
+		this.codes = codes;
+		this.encodeTable = new EncodeTable(codes);
+		this.decodeTable = new DecodeTable(codes);
+		this.lengths = new int[FrequencyCounter.ALPHABET_SIZE];
+		for(CharCode c : codes){
+			lengths[c.getSymbol()] = c.getCodeLength();
+		}
+		CRC32 crc = new CRC32();
+		PriorityQueue<CharCode> q = orderedCodes();
+		while(q.size() > 0){
+			CharCode c = q.poll();
+			int symbol = c.getSymbol();
+			crc.update(symbol >>> 8);
+			crc.update(symbol);
+			crc.update(c.getCodeLength());
+		}
+		this.checksum = (int) crc.getValue();
+	}
+
+	/**
+	 * @return the table ID
+	 */
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return whether the symbols are bytes rather than characters
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+
+	/**
+	 * @return the checksum of the code lengths, written to every file encoded with the table
+	 */
+	public int getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return a copy of the CharCodes of the table, with their codes set
+	 */
+	public PriorityQueue<CharCode> getCodes() {
+		return orderedCodes();
+	}
+
+	/**
+	 * Method to get a copy of the codes, since polling a priority queue empties it
+	 * @return a new priority queue of copies of the CharCodes
+	 */
+	private PriorityQueue<CharCode> orderedCodes(){
+		PriorityQueue<CharCode> q = new PriorityQueue<CharCode>();
+		for(CharCode c : codes){
+			CharCode copy = new CharCode(c.getSymbol(), c.getCodeLength());
+			copy.setCode(c.getCode());
+			q.add(copy);
+		}
+		return q;
+	}
+
+	/**
+	 * Method to train a table from sample files
+	 * @param id - the table ID, made of letters, digits, '.', '_' and '-'
+	 * @param sampleFiles - the names of the sample files
+	 * @param binary - true to train on the bytes of the samples rather than their characters
+	 * @param maxCodeLength - the longest code to give a symbol
+	 * @return the trained table
+	 * @throws IOException if a sample file can not be read or the ID is not valid
+	 */
+	public static StaticTable train(String id, List<String> sampleFiles, boolean binary, int maxCodeLength) throws IOException{
+		checkId(id);
+		long[] counts = new long[binary ? 256 : FrequencyCounter.ALPHABET_SIZE];
+		for(String file : sampleFiles){
+			if(binary){
+				ByteSymbolReader reader = new ByteSymbolReader(file);
+				int b;
+				while((b = reader.next()) != -1){
+					counts[b]++;
+				}
+				reader.close();
+			}else{
+				long[] fileCounts = FrequencyCounter.count(file, Runtime.getRuntime().availableProcessors());
+				for(int i = 0; i < counts.length; i++){
+					counts[i] += fileCounts[i];
+				}
+			}
+		}
+		//Every byte value gets a code, so files with symbols the samples lack can still be encoded
+		for(int i = 0; i < 256; i++){
+			counts[i]++;
+		}
+		HuffmanTree tree = new HuffmanTree();
+		tree.setMaxCodeLength(maxCodeLength);
+		tree.buildTree(counts);
+		return new StaticTable(id, binary, tree.canonicalCodes());
+	}
+
+	/**
+	 * Method to check that a table ID can be used as a file name and fits in a header
+	 * @param id - the table ID
+	 * @throws IOException if the ID is not valid
+	 */
+	private static void checkId(String id) throws IOException{
+		if(!id.matches("[A-Za-z0-9._-]{1,255}") || id.startsWith(".")){
+			throw new IOException("Invalid table ID: " + id);
+		}
+	}
+
+	/**
+	 * Method to get the file a table is saved in
+	 * @param directory - a string representing the table directory
+	 * @param id - the table ID
+	 * @return the table file
+	 */
+	public static File tableFile(String directory, String id){
+		return new File(directory, id + EXTENSION);
+	}
+
+	/**
+	 * Method to save the table to the table directory
+	 * @param directory - a string representing the table directory
+	 * @throws IOException if the table file can not be written
+	 */
+	public void save(String directory) throws IOException{
+		File file = tableFile(directory, id);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.write(TABLE_MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(binary ? BlockFormat.FLAG_BINARY : 0);
+			out.writeByte(id.length());
+			out.writeBytes(id);
+			PriorityQueue<CharCode> q = orderedCodes();
+			out.writeInt(q.size());
+			while(q.size() > 0){
+				CharCode c = q.poll();
+				out.writeChar(c.getSymbol());
+				out.writeByte(c.getCodeLength());
+			}
+		} finally {
+			out.close();
+		}
+		loaded.put(file.getCanonicalPath(), this);
+	}
+
+	/**
+	 * Method to load a table from the table directory. Tables are only read from disk
+	 * the first time they are asked for.
+	 * @param directory - a string representing the table directory
+	 * @param id - the table ID
+	 * @return the table
+	 * @throws IOException if the table file can not be read or is not a table
+	 */
+	public static StaticTable load(String directory, String id) throws IOException{
+		checkId(id);
+		File file = tableFile(directory, id);
+		String key = file.getCanonicalPath();
+		StaticTable table = loaded.get(key);
+		if(table != null){
+			return table;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			checkMagic(in, TABLE_MAGIC, file.getPath() + " is not a table file");
+			if(in.readUnsignedByte() != VERSION){
+				throw new IOException("Unsupported table version in " + file.getPath());
+			}
+			boolean binary = (in.readUnsignedByte() & BlockFormat.FLAG_BINARY) != 0;
+			byte[] name = new byte[in.readUnsignedByte()];
+			in.readFully(name);
+			if(!new String(name, "US-ASCII").equals(id)){
+				throw new IOException(file.getPath() + " holds table " + new String(name, "US-ASCII"));
+			}
+			int size = in.readInt();
+			if(size < 1 || size > FrequencyCounter.ALPHABET_SIZE){
+				throw new IOException("Corrupt table file: " + size + " symbols");
+			}
+			int[] chars = new int[size];
+			int[] lengths = new int[size];
+			boolean[] seen = new boolean[FrequencyCounter.ALPHABET_SIZE];
+			for(int i = 0; i < size; i++){
+				chars[i] = in.readChar();
+				lengths[i] = in.readUnsignedByte();
+				if(seen[chars[i]]){
+					throw new IOException("Corrupt table file: symbol " + chars[i] + " listed twice");
+				}
+				seen[chars[i]] = true;
+			}
+			CodeLengths.checkLengths(lengths, size);
+			table = new StaticTable(id, binary, new CodeTable(chars, lengths, size).toCharCodes());
+		} finally {
+			in.close();
+		}
+		loaded.put(key, table);
+		return table;
+	}
+
+	/**
+	 * Method to check the magic bytes at the start of a file
+	 * @param in - the input positioned at the start of the file
+	 * @param magic - the expected bytes
+	 * @param message - the message of the exception if they do not match
+	 * @throws IOException if the bytes do not match or can not be read
+	 */
+	private static void checkMagic(DataInputStream in, byte[] magic, String message) throws IOException{
+		for(int i = 0; i < magic.length; i++){
+			if(in.readByte() != magic[i]){
+				throw new IOException(message);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the file starts with the magic bytes of a file encoded with a table
+	 * @param fileName - a string representing the name of the file
+	 * @return isStaticFile
+	 * @throws IOException if the file can not be read
+	 */
+	public static boolean isStaticFile(String fileName) throws IOException{
+		FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		ByteBuffer b = ByteBuffer.allocate(FILE_MAGIC.length);
+		while(b.hasRemaining()){
+			if(channel.read(b) < 0){
+				break;
+			}
+		}
+		channel.close();
+		if(b.hasRemaining()){
+			return false;
+		}
+		for(int i = 0; i < FILE_MAGIC.length; i++){
+			if(b.get(i) != FILE_MAGIC[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Method to get the ID of the table a file was encoded with
+	 * @param fileName - a string representing the name of the encoded file
+	 * @return the table ID
+	 * @throws IOException if the file can not be read or was not encoded with a table
+	 */
+	public static String readTableId(String fileName) throws IOException{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), 512));
+		try {
+			return readHeaderId(in, fileName);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Method to read an encoded file's header up to and including the table ID
+	 * @param in - the input positioned at the start of the file
+	 * @param fileName - a string representing the name of the file, for error messages
+	 * @return the table ID
+	 * @throws IOException if the header can not be read or is not valid
+	 */
+	private static String readHeaderId(DataInputStream in, String fileName) throws IOException{
+		checkMagic(in, FILE_MAGIC, fileName + " was not encoded with a table");
+		if(in.readUnsignedByte() != VERSION){
+			throw new IOException("Unsupported version in " + fileName);
+		}
+		byte[] name = new byte[in.readUnsignedByte()];
+		in.readFully(name);
+		return new String(name, "US-ASCII");
+	}
+
+	/**
+	 * Method to encode a file with the table in a single pass
+	 * @param sourceFile - a string representing the input file name
+	 * @param targetFile - a string representing the output file name
+	 * @throws IOException if a file can not be read or written, or a symbol is not in the table
+	 */
+	public void encode(String sourceFile, String targetFile) throws IOException{
+		FileChannel outFile = FileChannel.open(Paths.get(targetFile), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		SymbolReader reader = binary ? new ByteSymbolReader(sourceFile) : new TextSymbolReader(sourceFile);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(FILE_MAGIC.length + 2 + id.length() + 12);
+			header.put(FILE_MAGIC);
+			header.put((byte) VERSION);
+			header.put((byte) id.length());
+			header.put(id.getBytes("US-ASCII"));
+			header.putInt(checksum);
+			int countPosition = header.position();
+			header.putLong(0);
+			header.flip();
+			while(header.hasRemaining()){
+				outFile.write(header);
+			}
+
+			BitWriter out = new BitWriter(outFile, 1 << 16);
+			int[] symbols = new int[8192];
+			long symbolCount = 0;
+			int n;
+			while((n = reader.read(symbols, symbols.length)) > 0){
+				for(int i = 0; i < n; i++){
+					int symbol = symbols[i];
+					if(symbol >= lengths.length || lengths[symbol] == 0){
+						throw new IOException("Character U+" + Integer.toHexString(symbol) + " is not in table " + id);
+					}
+					encodeTable.writeSymbol(out, symbol);
+				}
+				symbolCount += n;
+			}
+			out.flush();
+
+			//The symbol count is only known at the end, so fill it in afterwards
+			ByteBuffer count = ByteBuffer.allocate(8);
+			count.putLong(symbolCount);
+			count.flip();
+			long position = countPosition;
+			while(count.hasRemaining()){
+				position += outFile.write(count, position);
+			}
+		} finally {
+			reader.close();
+			outFile.close();
+		}
+	}
+
+	/**
+	 * Method to decode a file that was encoded with the table
+	 * @param inputFile - a string representing the encoded file name
+	 * @param outputFile - a string representing the output file name
+	 * @throws IOException if a file can not be read or written, or the file was encoded with another table
+	 */
+	public void decode(String inputFile, String outputFile) throws IOException{
+		FileChannel inFile = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+		try {
+			//Read the header straight from the channel so the bit reader starts right after it
+			DataInputStream in = new DataInputStream(Channels.newInputStream(inFile));
+			String fileId = readHeaderId(in, inputFile);
+			if(!fileId.equals(id)){
+				throw new IOException(inputFile + " was encoded with table " + fileId + ", not " + id);
+			}
+			if(in.readInt() != checksum){
+				throw new IOException(inputFile + " was encoded with a different version of table " + id);
+			}
+			long symbolCount = in.readLong();
+
+			BitReader bits = new BitReader(inFile, 1 << 16);
+			SymbolWriter output;
+			if(binary){
+				output = new ByteSymbolWriter(new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16));
+			}else{
+				output = new TextSymbolWriter(new BufferedWriter(new FileWriter(outputFile), 1 << 16));
+			}
+			try {
+				int[] chunk = new int[8192];
+				while(symbolCount > 0){
+					int n = (int) Math.min(chunk.length, symbolCount);
+					for(int i = 0; i < n; i++){
+						int symbol = decodeTable.decodeSymbol(bits);
+						if(symbol == -1 || bits.isPastEnd()){
+							throw new IOException("Corrupt file: " + inputFile + " ends early");
+						}
+						chunk[i] = symbol;
+					}
+					output.write(chunk, 0, n);
+					symbolCount -= n;
+				}
+			} finally {
+				output.close();
+			}
+		} finally {
+			inFile.close();
+		}
+	}
+}
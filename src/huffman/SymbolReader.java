@@ -0,0 +1,38 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+
+/**
+ * An interface for reading the symbols of an input file one after the other.
+ * Text files are read as characters by TextSymbolReader, other files as bytes by ByteSymbolReader.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public interface SymbolReader {
+
+	/**
+	 * Method to read the next symbol
+	 * @return the symbol, or -1 at the end of the input
+	 * @throws IOException if the input can not be read
+	 */
+	public int next() throws IOException;
+
+	/**
+	 * Method to read symbols into an array until it is full or the input ends
+	 * @param symbols - the array to read into
+	 * @param length - the number of symbols to read
+	 * @return the number of symbols read, less than length only at the end of the input
+	 * @throws IOException if the input can not be read
+	 */
+	public int read(int[] symbols, int length) throws IOException;
+
+	/**
+	 * Method to close the input
+	 * @throws IOException if the input can not be closed
+	 */
+	public void close() throws IOException;
+}
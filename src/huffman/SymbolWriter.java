@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+
+/**
+ * An interface for writing decoded symbols to an output file.
+ * Characters are written by TextSymbolWriter, bytes by ByteSymbolWriter.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public interface SymbolWriter {
+
+	/**
+	 * Method to write symbols
+	 * @param symbols - the symbols to write
+	 * @param offset - the index of the first symbol to write
+	 * @param length - the number of symbols to write
+	 * @throws IOException if the output can not be written
+	 */
+	public void write(int[] symbols, int offset, int length) throws IOException;
+
+	/**
+	 * Method to flush and close the output
+	 * @throws IOException if the output can not be closed
+	 */
+	public void close() throws IOException;
+}
@@ -0,0 +1,180 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A class for reading the characters of a text file one at a time, the same way
+ * the encoder has always seen them: every line terminator (\r\n, \r or \n) between
+ * two lines becomes a single "\r" and a terminator at the very end of the file is dropped.
+ * The file is read through a channel in fixed-size chunks, so it can be read
+ * once to count the characters and again to encode them without ever being held in memory.
+ * Characters are UTF-16 chars, or, for a reader made to read code points, whole Unicode code points,
+ * with each surrogate pair read as the single supplementary character it stands for.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class TextSymbolReader implements SymbolReader {
+	private FileChannel channel;
+	private Reader reader;
+	private char[] buffer;
+	private int position;
+	private int limit;
+	private boolean afterCarriageReturn;
+	private int pendingBreaks;
+	private int breaksToEmit;
+	private int pendingChar;
+	private boolean codePoints;
+	private int pushback;
+
+	/**
+	 * Constructor for the text symbol reader, which reads UTF-16 chars
+	 * @param fileName - a string representing the name of the file to read
+	 * @throws IOException if the file can not be opened
+	 */
+	public TextSymbolReader(String fileName) throws IOException {
+		this(fileName, false);
+	}
+
+	/**
+	 * Constructor for the text symbol reader
+	 * @param fileName - a string representing the name of the file to read
+	 * @param codePoints - true to read Unicode code points rather than UTF-16 chars
+	 * @throws IOException if the file can not be opened
+	 */
+	public TextSymbolReader(String fileName, boolean codePoints) throws IOException {
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+		this.reader = Channels.newReader(channel, Charset.defaultCharset().newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE), 1 << 16);
+		this.buffer = new char[8192];
+		this.position = 0;
+		this.limit = 0;
+		this.afterCarriageReturn = false;
+		this.pendingBreaks = 0;
+		this.breaksToEmit = 0;
+		this.pendingChar = -1;
+		this.codePoints = codePoints;
+		this.pushback = -1;
+	}
+
+	/**
+	 * Method to read the next raw character of the file, joining surrogate pairs when reading code points
+	 * @return the character, or -1 at the end of the file
+	 * @throws IOException if the file can not be read
+	 */
+	private int readChar() throws IOException{
+		int c;
+		if(pushback >= 0){
+			c = pushback;
+			pushback = -1;
+		}else{
+			c = readUnit();
+		}
+		if(codePoints && c >= 0 && Character.isHighSurrogate((char) c)){
+			int low = readUnit();
+			if(low >= 0 && Character.isLowSurrogate((char) low)){
+				return Character.toCodePoint((char) c, (char) low);
+			}
+			//An unpaired surrogate is read as it is
+			pushback = low;
+		}
+		return c;
+	}
+
+	/**
+	 * Method to read the next UTF-16 char of the file
+	 * @return the char, or -1 at the end of the file
+	 * @throws IOException if the file can not be read
+	 */
+	private int readUnit() throws IOException{
+		while(position == limit){
+			limit = reader.read(buffer);
+			position = 0;
+			if(limit < 0){
+				limit = 0;
+				return -1;
+			}
+		}
+		char c = buffer[position];
+		position++;
+		return c;
+	}
+
+	/**
+	 * Method to read the next symbol of the file
+	 * @return the next character or code point, "\r" for a line break, or -1 at the end of the file
+	 * @throws IOException if the file can not be read
+	 */
+	@Override
+	public int next() throws IOException{
+		while(true){
+			if(breaksToEmit > 0){
+				breaksToEmit--;
+				return '\r';
+			}
+			if(pendingChar >= 0){
+				int c = pendingChar;
+				pendingChar = -1;
+				return c;
+			}
+			int c = readChar();
+			if(c == -1){
+				//The last line terminator of the file does not start a new line
+				if(pendingBreaks > 1){
+					breaksToEmit = pendingBreaks - 1;
+					pendingBreaks = 0;
+					continue;
+				}
+				return -1;
+			}
+			if(c == '\n' && afterCarriageReturn){
+				afterCarriageReturn = false;
+				continue;
+			}
+			afterCarriageReturn = (c == '\r');
+			if(c == '\r' || c == '\n'){
+				pendingBreaks++;
+				continue;
+			}
+			if(pendingBreaks > 0){
+				breaksToEmit = pendingBreaks;
+				pendingBreaks = 0;
+				pendingChar = c;
+				continue;
+			}
+			return c;
+		}
+	}
+
+	@Override
+	public int read(int[] symbols, int length) throws IOException{
+		int n = 0;
+		int c;
+		while(n < length && (c = next()) != -1){
+			symbols[n] = c;
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Method to close the file
+	 * @throws IOException if the file can not be closed
+	 */
+	@Override
+	public void close() throws IOException{
+		reader.close();
+		channel.close();
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A class for writing symbols to a text file as characters.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class TextSymbolWriter implements SymbolWriter {
+	private Writer out;
+	private char[] buffer;
+
+	/**
+	 * Constructor for the text symbol writer
+	 * @param out - the writer to write to
+	 */
+	public TextSymbolWriter(Writer out) {
+		this.out = out;
+		this.buffer = new char[8192];
+	}
+
+	@Override
+	public void write(int[] symbols, int offset, int length) throws IOException{
+		while(length > 0){
+			int count = Math.min(length, buffer.length);
+			for(int i = 0; i < count; i++){
+				buffer[i] = (char) symbols[offset + i];
+			}
+			out.write(buffer, 0, count);
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public void close() throws IOException{
+		out.close();
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * 
+ */
+package huffman;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Method to train a static code table from sample files and save it under a table ID.
+ * Files encoded with Encode -t TABLE_ID are encoded in a single pass and only name the table in their header.
+ * The table is saved as TABLE_ID.huft in the current directory, or in TABLE_DIR using the -d argument
+ * Codes are limited to 15 bits, or to MAX_CODE_LENGTH bits (1 to 24) using the -l argument
+ * Optionally, train on the raw bytes of the samples, for use with Encode -raw, using the -raw argument
+ * Usage: java huffman.Train [-d TABLE_DIR] [-l MAX_CODE_LENGTH] [-raw] TABLE_ID SAMPLEFILE...
+ * @author Christopher Barnett
+ */
+public class Train {
+	private static final String USAGE = "Usage: java huffman.Train [-d TABLE_DIR] [-l MAX_CODE_LENGTH] [-raw] TABLE_ID SAMPLEFILE...";
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String tableId = "";
+		String tableDirectory = ".";
+		int maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		boolean binary = false;
+		ArrayList<String> sampleFiles = new ArrayList<String>();
+		//Process the command line arguments
+				for(int i = 0; i < args.length; i++){
+					if(args[i].equals("-d")){
+						i++;
+						tableDirectory = args[i];
+					}else if(args[i].equals("-l")){
+						i++;
+						try {
+							maxCodeLength = CodeLengths.parseMaxLength(args[i]);
+						} catch (IllegalArgumentException e) {
+							System.err.println(e.getMessage());
+							System.err.println(USAGE);
+							return;
+						}
+					}else if(args[i].equals("-raw")){
+						binary = true;
+					}else if(tableId == ""){
+						tableId = args[i];
+					}else{
+						sampleFiles.add(args[i]);
+					}
+				}
+		try {
+			StaticTable table = StaticTable.train(tableId, sampleFiles, binary, maxCodeLength);
+			table.save(tableDirectory);
+			System.out.println("Saved table " + tableId + " to " + StaticTable.tableFile(tableDirectory, tableId));
+		} catch (IOException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for the single-pass adaptive format, Encode -a.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class AdaptiveTest extends FileFormatTestBase {
+	@Test
+	public void binaryRoundTrip() throws IOException{
+		byte[] bytes = sampleBytes(2, 300000);
+		assertArrayEquals(bytes, roundTrip("-a", bytes));
+	}
+
+	@Test
+	public void textIsKeptByteForByte() throws IOException{
+		byte[] bytes = sampleText(1, 50000).getBytes(StandardCharsets.UTF_8);
+		assertArrayEquals(bytes, roundTrip("-a", bytes));
+	}
+
+	@Test
+	public void emptyFileRoundTrip() throws IOException{
+		assertArrayEquals(new byte[0], roundTrip("-a", new byte[0]));
+	}
+
+	@Test
+	public void flushedBytesCanBeDecodedStraightAway() throws IOException{
+		byte[] bytes = sampleBytes(3, 10000);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveEncoder encoder = new AdaptiveEncoder(encoded);
+		encoder.write(bytes, 0, 6000);
+		encoder.flush();
+		//Only what was sent before the end of stream marker is there to read
+		AdaptiveDecoder decoder = new AdaptiveDecoder(new ByteArrayInputStream(encoded.toByteArray()));
+		byte[] decoded = new byte[6000];
+		int n = 0;
+		while(n < decoded.length){
+			n += decoder.read(decoded, n, decoded.length - n);
+		}
+		assertArrayEquals(Arrays.copyOf(bytes, 6000), decoded);
+		encoder.write(bytes, 6000, bytes.length - 6000);
+		encoder.close();
+		decoder = new AdaptiveDecoder(new ByteArrayInputStream(encoded.toByteArray()));
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		int b;
+		while((b = decoder.read()) >= 0){
+			all.write(b);
+		}
+		assertArrayEquals(bytes, all.toByteArray());
+		assertEquals(-1, decoder.read());
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		assertTruncationRejected(encoded("-a", sampleBytes(5, 50000)));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("-a", sampleBytes(7, 20000)), 4);
+	}
+}
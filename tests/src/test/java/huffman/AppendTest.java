@@ -0,0 +1,108 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of adding segments to the end of a single table file, Encode -append.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class AppendTest extends FileFormatTestBase {
+	/**
+	 * Method to write text to a file and append it to a target
+	 * @param text - the text to append
+	 * @param target - the file to append to
+	 * @return true if the segment reuses the table of the last segment
+	 * @throws IOException if a file can not be read or written
+	 */
+	private boolean append(String text, Path target) throws IOException{
+		Path source = dir.resolve("part");
+		Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+		return new HuffmanTree().appendFile(source.toString(), target.toString());
+	}
+
+	@Test
+	public void appendedSegmentsRoundTrip() throws IOException{
+		Path target = dir.resolve("appended");
+		StringBuilder all = new StringBuilder();
+		for(int i = 0; i < 6; i++){
+			//Short pieces reuse the table before them, the CJK piece needs one of its own
+			String text = i == 3 ? sampleText(10 + i, 3000).replaceAll("[a-z ,]", "中") : sampleText(10 + i, 500 + 2000 * i);
+			Path source = dir.resolve("part" + i);
+			Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+			encode("-append", source, target);
+			all.append(text.replaceAll("(\r\n|\r|\n)$", "")).append('\n');
+		}
+		decode(null, target, dir.resolve("decoded.txt"));
+		assertEquals(decodedText(all.toString()), new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void tablesAreReusedWhenTheyFit() throws IOException{
+		Path target = dir.resolve("appended");
+		assertFalse(append(sampleText(1, 20000), target));
+		assertTrue(append(sampleText(2, 300), target));
+		assertFalse(append("中文中文中文中文中文中文中文中文", target));
+		assertTrue(append("", target));
+		decode(null, target, dir.resolve("decoded.txt"));
+		assertEquals(decodedText(sampleText(1, 20000).replaceAll("(\r\n|\r|\n)$", "") + "\n" + sampleText(2, 300).replaceAll("(\r\n|\r|\n)$", "")
+				+ "\n中文中文中文中文中文中文中文中文"), new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void targetIsUntouchedIfItCanNotBeLocked() throws IOException{
+		Path target = dir.resolve("appended");
+		append(sampleText(1, 20000), target);
+		byte[] before = Files.readAllBytes(target);
+		//A lock held elsewhere in the program, here through a link whose path leads to another lock stripe
+		Path link = Files.createSymbolicLink(dir.resolve("link"), target);
+		FileChannel channel = FileChannel.open(link, StandardOpenOption.WRITE);
+		try {
+			channel.lock();
+			assertThrows(IOException.class, () -> append(sampleText(2, 300), target));
+		} finally {
+			channel.close();
+		}
+		assertArrayEquals(before, Files.readAllBytes(target));
+		assertTrue(append(sampleText(2, 300), target));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"-crc", "-raw", "-a", "-ctx"})
+	public void appendRejectsOtherFormats(String arguments) throws IOException{
+		Path source = dir.resolve("source.txt");
+		Files.write(source, "some text".getBytes(StandardCharsets.UTF_8));
+		encode(arguments, source, dir.resolve("other"));
+		byte[] before = Files.readAllBytes(dir.resolve("other"));
+		assertThrows(IOException.class, () -> encode("-append", source, dir.resolve("other")));
+		assertArrayEquals(before, Files.readAllBytes(dir.resolve("other")));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		Path target = dir.resolve("appended");
+		append(sampleText(3, 10000), target);
+		append(sampleText(4, 2000), target);
+		append(sampleText(5, 8000).replaceAll("[a-z]", "é"), target);
+		assertDamageFailsCleanly(Files.readAllBytes(target), 5);
+	}
+}
@@ -0,0 +1,49 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of encoding and decoding whole directories with Batch.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BatchTest extends FileFormatTestBase {
+	@Test
+	public void directoryRoundTrip() throws IOException{
+		Path sources = Files.createDirectories(dir.resolve("sources/nested"));
+		byte[][] contents = new byte[8][];
+		for(int i = 0; i < contents.length; i++){
+			contents[i] = sampleBytes(i, 1000 * i);
+			Files.write((i % 2 == 0 ? sources : sources.getParent()).resolve("file" + i), contents[i]);
+		}
+		Path encoded = dir.resolve("encoded");
+		Batch.main(new String[] {"-p", "3", "-raw", "-o", encoded.toString(), dir.resolve("sources").toString()});
+		assertTrue(Files.exists(encoded.resolve("nested/file0" + Batch.EXTENSION)));
+		assertTrue(Files.exists(encoded.resolve("file1" + Batch.EXTENSION)));
+
+		//Encoding the directory in place skips nothing but encoded files
+		Files.write(sources.resolve("old" + Batch.EXTENSION), new byte[] {1, 2, 3});
+		Batch.main(new String[] {"-raw", sources.toString()});
+		assertTrue(Files.exists(sources.resolve("file0" + Batch.EXTENSION)));
+		assertFalse(Files.exists(sources.resolve("old" + Batch.EXTENSION + Batch.EXTENSION)));
+
+		Path decoded = dir.resolve("decoded");
+		Batch.main(new String[] {"-x", "-o", decoded.toString(), encoded.toString()});
+		for(int i = 0; i < contents.length; i++){
+			Path file = i % 2 == 0 ? decoded.resolve("nested/file" + i) : decoded.resolve("file" + i);
+			assertArrayEquals(contents[i], Files.readAllBytes(file), file.toString());
+		}
+	}
+}
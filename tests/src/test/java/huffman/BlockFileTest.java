@@ -0,0 +1,124 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Round trip and corrupt input tests for block files, which Encode -b writes with an index of their blocks,
+ * and tests of decoding them in parallel and in part through the index.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class BlockFileTest extends FileFormatTestBase {
+	@Test
+	public void textRoundTrip() throws IOException{
+		String text = sampleText(1, 200000);
+		assertEquals(decodedText(text), roundTrip("-b 4096", text));
+	}
+
+	@Test
+	public void asciiTextRoundTrip() throws IOException{
+		String text = "Only ASCII here.\nSecond line\n";
+		assertEquals(decodedText(text), roundTrip("-b 4096", text));
+	}
+
+	@Test
+	public void singleCharacterRoundTrip() throws IOException{
+		assertEquals("aaaaaaaaaa", roundTrip("-b 4096", "aaaaaaaaaa"));
+	}
+
+	@Test
+	public void emptyFileRoundTrip() throws IOException{
+		assertEquals("", roundTrip("-b 4096", ""));
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 3, 8})
+	public void parallelDecode(int parallelism) throws IOException{
+		String text = sampleText(2, 100000);
+		Path source = dir.resolve("source.txt");
+		Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+		encode("-b 1000", source, dir.resolve("encoded"));
+		new BlockReader(dir.resolve("encoded").toString()).decode(dir.resolve("decoded.txt").toString(), parallelism);
+		assertEquals(decodedText(text), new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void rangeDecode() throws IOException{
+		String text = decodedText(sampleText(3, 50000));
+		Path source = dir.resolve("source.txt");
+		Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+		encode("-b 1000", source, dir.resolve("encoded"));
+		BlockReader reader = new BlockReader(dir.resolve("encoded").toString());
+		int[][] ranges = {{0, 0}, {0, 1}, {0, 1000}, {999, 1001}, {1234, 5678}, {3000, 4000}, {text.length() - 10, text.length()},
+				{0, text.length()}};
+		for(int[] range : ranges){
+			assertEquals(text.substring(range[0], range[1]), reader.decodeRange(range[0], range[1]),
+					"Range " + range[0] + "-" + range[1]);
+		}
+		assertThrows(IOException.class, () -> reader.decodeRange(-1, 10));
+		assertThrows(IOException.class, () -> reader.decodeRange(10, 9));
+		assertThrows(IOException.class, () -> reader.decodeRange(0, text.length() + 1));
+	}
+
+	@Test
+	public void rangeArgumentsAreChecked(){
+		assertArrayEquals(new long[] {0, 0}, Decode.parseRange("0:0"));
+		assertArrayEquals(new long[] {12, 3456}, Decode.parseRange("12:3456"));
+		for(String range : new String[] {"", "5", "5:", ":5", "1:2:3", "a:b", "-1:5", "6:5"}){
+			assertThrows(IllegalArgumentException.class, () -> Decode.parseRange(range), range);
+		}
+	}
+
+		@Test
+	public void blockSizesAreBounded() throws IOException{
+		Path source = dir.resolve("source.txt");
+		Files.write(source, "some text".getBytes(StandardCharsets.UTF_8));
+		for(String blockSize : new String[] {"0", "-1", Integer.toString(BlockFormat.MAX_BLOCK_SIZE + 1), "2147483647", "x"}){
+			assertThrows(IllegalArgumentException.class, () -> encode("-b " + blockSize, source, dir.resolve("encoded")), blockSize);
+		}
+		assertThrows(IllegalArgumentException.class, () -> new BlockWriter(BlockFormat.MAX_BLOCK_SIZE + 1, 1));
+		encode("-b " + BlockFormat.MAX_BLOCK_SIZE, source, dir.resolve("encoded"));
+		decode(null, dir.resolve("encoded"), dir.resolve("decoded.txt"));
+		assertEquals("some text", new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		assertTruncationRejected(encoded("-b 4096", sampleText(5, 50000).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("-b 4096", sampleText(7, 20000).getBytes(StandardCharsets.UTF_8)), 2);
+	}
+
+	@Test
+	public void headerBlockSizesAreChecked() throws IOException{
+		String text = sampleText(8, 20000);
+		byte[] bytes = encoded("-b 4096", text.getBytes(StandardCharsets.UTF_8));
+		//The block size follows the magic number, version and flags, and bounds the blocks that follow
+		ByteBuffer.wrap(bytes).putInt(BlockFormat.MAGIC.length + 2, BlockFormat.MAX_BLOCK_SIZE);
+		assertEquals(decodedText(text), new String(decodeDamaged(bytes), StandardCharsets.UTF_8));
+		for(int blockSize : new int[] {BlockFormat.MAX_BLOCK_SIZE + 1, Integer.MAX_VALUE, 16, 0}){
+			ByteBuffer.wrap(bytes).putInt(BlockFormat.MAGIC.length + 2, blockSize);
+			Files.write(dir.resolve("damaged"), bytes);
+			assertThrows(IOException.class, () -> decode(null, dir.resolve("damaged"), dir.resolve("decoded")), "Block size " + blockSize);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of block files with a checksum of every block, Encode -crc.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ChecksumTest extends FileFormatTestBase {
+	@ParameterizedTest
+	@ValueSource(strings = {"-crc", "-b 4096 -crc"})
+	public void textRoundTrip(String arguments) throws IOException{
+		String text = sampleText(1, 200000);
+		assertEquals(decodedText(text), roundTrip(arguments, text));
+		assertTrue(new BlockReader(dir.resolve("encoded").toString()).hasChecksums());
+	}
+
+	@Test
+	public void binaryRoundTrip() throws IOException{
+		byte[] bytes = sampleBytes(2, 300000);
+		assertArrayEquals(bytes, roundTrip("-raw -crc", bytes));
+		assertTrue(new BlockReader(dir.resolve("encoded").toString()).hasChecksums());
+	}
+
+	@Test
+	public void filesWithoutChecksumsStillDecode() throws IOException{
+		String text = sampleText(3, 20000);
+		assertEquals(decodedText(text), roundTrip("-b 4096", text));
+		assertFalse(new BlockReader(dir.resolve("encoded").toString()).hasChecksums());
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"-crc", "-raw -crc", "-b 4096 -crc"})
+	public void checksumsCatchDamagedCodes(String arguments) throws IOException{
+		byte[] bytes = encoded(arguments, sampleText(8, 20000).getBytes(StandardCharsets.UTF_8));
+		for(int position = bytes.length / 4; position < bytes.length * 3 / 4; position += bytes.length / 16){
+			byte[] damaged = bytes.clone();
+			damaged[position] ^= 0x10;
+			Files.write(dir.resolve("damaged"), damaged);
+			assertThrows(IOException.class, () -> decode(null, dir.resolve("damaged"), dir.resolve("decoded")),
+					"Byte " + position + " damaged");
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"-crc", "-raw -crc"})
+	public void truncatedFilesAreRejected(String arguments) throws IOException{
+		assertTruncationRejected(encoded(arguments, sampleText(5, 50000).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"-crc", "-raw -crc"})
+	public void damagedFilesFailCleanly(String arguments) throws IOException{
+		assertDamageFailsCleanly(encoded(arguments, sampleText(7, 20000).getBytes(StandardCharsets.UTF_8)), arguments.hashCode());
+	}
+}
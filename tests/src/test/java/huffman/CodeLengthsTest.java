@@ -0,0 +1,114 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests of the code lengths CodeLengths computes and checks, and round trips of files encoded with a maximum code length.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class CodeLengthsTest extends FileFormatTestBase {
+	/**
+	 * Method to make sorted frequencies that grow like the Fibonacci numbers, which give the longest codes
+	 * @param n - the number of frequencies
+	 * @return the frequencies
+	 */
+	private static long[] fibonacciFreqs(int n){
+		long[] freqs = new long[n];
+		for(int i = 0; i < n; i++){
+			freqs[i] = i < 2 ? 1 : freqs[i - 1] + freqs[i - 2];
+		}
+		return freqs;
+	}
+
+	/**
+	 * Method to get the sum of 2^(MAX_LENGTH - length) over all code lengths, which is 2^MAX_LENGTH for a complete code
+	 * @param lengths - the code lengths
+	 * @return the sum
+	 */
+	private static long kraft(int[] lengths){
+		long kraft = 0;
+		for(int length : lengths){
+			kraft += 1L << (CodeLengths.MAX_LENGTH - length);
+		}
+		return kraft;
+	}
+
+	@Test
+	public void huffmanLengthsOfKnownFrequencies(){
+		assertArrayEquals(new int[] {3, 3, 2, 1}, CodeLengths.huffmanLengths(new long[] {1, 1, 2, 4}));
+		assertArrayEquals(new int[] {2, 2, 2, 2}, CodeLengths.huffmanLengths(new long[] {5, 5, 5, 5}));
+		assertArrayEquals(new int[] {0}, CodeLengths.huffmanLengths(new long[] {7}));
+	}
+
+	@Test
+	public void limitedLengthsStayWithinTheLimit(){
+		long[] freqs = fibonacciFreqs(30);
+		assertEquals(29, Arrays.stream(CodeLengths.huffmanLengths(freqs)).max().getAsInt());
+		for(int maxLength = CodeLengths.minimumMaxLength(freqs.length); maxLength <= 24; maxLength++){
+			int[] lengths = CodeLengths.limitedLengths(freqs, maxLength);
+			assertTrue(Arrays.stream(lengths).max().getAsInt() <= maxLength, "Limit " + maxLength);
+			assertEquals(1L << CodeLengths.MAX_LENGTH, kraft(lengths), "Limit " + maxLength);
+		}
+	}
+
+	@Test
+	public void limitedLengthsMatchHuffmanWhenTheLimitIsLoose(){
+		Random random = new Random(1);
+		long[] freqs = new long[200];
+		for(int i = 0; i < freqs.length; i++){
+			freqs[i] = 1 + random.nextInt(1000);
+		}
+		Arrays.sort(freqs);
+		int[] huffman = CodeLengths.huffmanLengths(freqs);
+		int[] limited = CodeLengths.limitedLengths(freqs, CodeLengths.MAX_LENGTH);
+		long huffmanBits = 0;
+		long limitedBits = 0;
+		for(int i = 0; i < freqs.length; i++){
+			huffmanBits += freqs[i] * huffman[i];
+			limitedBits += freqs[i] * limited[i];
+		}
+		assertEquals(huffmanBits, limitedBits);
+	}
+
+	@Test
+	public void maximumLengthsAreParsed(){
+		assertEquals(9, CodeLengths.parseMaxLength("9"));
+		assertEquals(CodeLengths.MAX_LENGTH, CodeLengths.parseMaxLength(Integer.toString(CodeLengths.MAX_LENGTH)));
+		for(String value : new String[] {"0", "-3", "25", "x", ""}){
+			assertThrows(IllegalArgumentException.class, () -> CodeLengths.parseMaxLength(value), value);
+		}
+	}
+
+	@Test
+	public void corruptLengthsAreRejected() throws IOException{
+		CodeLengths.checkLengths(new int[] {1, 2, 2}, 3);
+		CodeLengths.checkLengths(new int[] {0}, 1);
+		CodeLengths.checkLengths(new int[] {1, 2}, 2);
+		assertThrows(IOException.class, () -> CodeLengths.checkLengths(new int[] {1, 1, 2}, 3));
+		assertThrows(IOException.class, () -> CodeLengths.checkLengths(new int[] {0, 1}, 2));
+		assertThrows(IOException.class, () -> CodeLengths.checkLengths(new int[] {1, CodeLengths.MAX_LENGTH + 1}, 2));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"-l 9", "-l 5", "-b 4096 -l 9"})
+	public void textRoundTrip(String arguments) throws IOException{
+		String text = sampleText(1, 100000);
+		assertEquals(decodedText(text), roundTrip(arguments, text));
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that canonical codes are the same in every format and stay prefix free when the code is not complete.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class CodeTableTest {
+	/**
+	 * Method to get the codes the record codec gives bytes with some code lengths
+	 * @param lengths - the code length of every byte, 0 for a byte with no code
+	 * @return the code of every byte
+	 */
+	private static int[] recordCodes(int[] lengths){
+		int[] codes = new int[256];
+		CodeTable.assignCodes(lengths, codes, lengths.length, new int[Encoder.MAX_CODE_LENGTH + 2]);
+		return codes;
+	}
+
+	/**
+	 * Method to check that the record codec and a CodeTable give the same codes to the same lengths,
+	 * and that no code is a prefix of another
+	 * @param lengths - the code length of every byte, 0 for a byte with no code
+	 */
+	private static void assertSameCodes(int[] lengths){
+		int[] codes = recordCodes(lengths);
+		int[] symbols = new int[256];
+		int[] tableLengths = new int[256];
+		int n = 0;
+		//The symbols are given in reverse, a CodeTable sorts them
+		for(int s = 255; s >= 0; s--){
+			if(lengths[s] > 0){
+				symbols[n] = s;
+				tableLengths[n] = lengths[s];
+				n++;
+			}
+		}
+		CodeTable table = new CodeTable(symbols, tableLengths, n);
+		for(int i = 0; i < table.size(); i++){
+			int s = table.getSymbol(i);
+			assertEquals(lengths[s], table.getCodeLength(i));
+			assertEquals(codes[s], table.getCode(i), "Code of " + s);
+			for(int j = 0; j < table.size(); j++){
+				int shorter = table.getCodeLength(j);
+				if(j != i && shorter <= table.getCodeLength(i)){
+					assertFalse(table.getCode(i) >>> (table.getCodeLength(i) - shorter) == table.getCode(j),
+							"Code of " + table.getSymbol(j) + " is a prefix of the code of " + s);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void oneSymbolCodesAgree() throws IOException{
+		for(int length = 1; length <= Encoder.MAX_CODE_LENGTH; length++){
+			int[] lengths = new int[256];
+			lengths['a'] = length;
+			assertSameCodes(lengths);
+			assertEquals(0, recordCodes(lengths)['a']);
+		}
+		//A lone symbol has no code at all, in a CodeTable as in a record
+		CodeTable table = new CodeTable(new int[] {'a'}, new int[] {0}, 1);
+		assertEquals(0, table.getCode(0));
+		byte[] record = "aaaaaaaa".getBytes("US-ASCII");
+		assertArrayEquals(record, new Decoder().decode(new Encoder().encode(record)));
+	}
+
+	@Test
+	public void incompleteCodesAgree(){
+		int[] lengths = new int[256];
+		lengths['a'] = 1;
+		lengths['b'] = 3;
+		assertSameCodes(lengths);
+		lengths['c'] = 3;
+		lengths['d'] = 5;
+		assertSameCodes(lengths);
+	}
+
+	@Test
+	public void completeCodesAgree(){
+		long[] freqs = new long[256];
+		for(int s = 0; s < 256; s++){
+			freqs[s] = 1 + s * s;
+		}
+		int[] lengths = CodeLengths.limitedLengths(freqs, Encoder.MAX_CODE_LENGTH);
+		long kraft = 0;
+		for(int length : lengths){
+			kraft += 1L << (15 - length);
+		}
+		assertEquals(1L << 15, kraft);
+		assertSameCodes(lengths);
+	}
+}
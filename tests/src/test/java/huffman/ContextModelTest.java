@@ -0,0 +1,53 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for the order-1 context modeled format, Encode -ctx.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class ContextModelTest extends FileFormatTestBase {
+	@Test
+	public void textRoundTrip() throws IOException{
+		String text = sampleText(1, 200000);
+		assertEquals(decodedText(text), roundTrip("-ctx", text));
+	}
+
+	@Test
+	public void asciiTextRoundTrip() throws IOException{
+		String text = "Only ASCII here.\nSecond line\n";
+		assertEquals(decodedText(text), roundTrip("-ctx", text));
+	}
+
+	@Test
+	public void singleCharacterRoundTrip() throws IOException{
+		assertEquals("aaaaaaaaaa", roundTrip("-ctx", "aaaaaaaaaa"));
+	}
+
+	@Test
+	public void shortTextRoundTrip() throws IOException{
+		for(String text : new String[] {"", "a", "ab", "abc\nd"}){
+			assertEquals(decodedText(text), roundTrip("-ctx", text), text);
+		}
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		assertTruncationRejected(encoded("-ctx", sampleText(5, 50000).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("-ctx", sampleText(7, 20000).getBytes(StandardCharsets.UTF_8)), 6);
+	}
+}
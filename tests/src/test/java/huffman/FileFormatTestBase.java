@@ -0,0 +1,235 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * A base class for the tests of the file formats, which encodes files with the same arguments
+ * Encode and Batch take and decodes them the way Decode recognizes them, and makes sample inputs.
+ * Text formats read lines, so the expected output of a text file is the text with every
+ * line terminator turned into "\r" and the one at the very end dropped.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public abstract class FileFormatTestBase {
+	@TempDir
+	protected Path dir;
+
+	/**
+	 * Method to make text with a skewed mix of ASCII and accented characters and every kind of line terminator,
+	 * all of them below 256 so the original single table header can hold them
+	 * @param seed - the seed of the random characters
+	 * @param length - roughly the number of characters
+	 * @return the text
+	 */
+	static String sampleText(long seed, int length){
+		return randomText(seed, length, new String[] {"the ", "and ", "e", "t", "a", " ", ", ", "é", "\n", "\r\n", "\r"},
+				new int[] {20, 10, 30, 25, 20, 40, 5, 3, 4, 1, 1});
+	}
+
+	/**
+	 * Method to make text like sampleText that also holds CJK and supplementary characters
+	 * @param seed - the seed of the random characters
+	 * @param length - roughly the number of characters
+	 * @return the text
+	 */
+	static String wideText(long seed, int length){
+		return randomText(seed, length, new String[] {"the ", "and ", "e", "t", "a", " ", ", ", "é", "中文", "😀", "\n", "\r\n", "\r"},
+				new int[] {20, 10, 30, 25, 20, 40, 5, 3, 2, 1, 4, 1, 1});
+	}
+
+	/**
+	 * Method to make text from pieces picked at random
+	 * @param seed - the seed of the random pieces
+	 * @param length - roughly the number of characters
+	 * @param pieces - the pieces of text
+	 * @param weights - how often each piece is picked
+	 * @return the text
+	 */
+	private static String randomText(long seed, int length, String[] pieces, int[] weights){
+		Random random = new Random(seed);
+		int total = 0;
+		for(int w : weights){
+			total += w;
+		}
+		StringBuilder text = new StringBuilder(length + 8);
+		while(text.length() < length){
+			int r = random.nextInt(total);
+			int i = 0;
+			while(r >= weights[i]){
+				r -= weights[i];
+				i++;
+			}
+			text.append(pieces[i]);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Method to make bytes with a skewed distribution that still uses every byte value
+	 * @param seed - the seed of the random bytes
+	 * @param length - the number of bytes
+	 * @return the bytes
+	 */
+	static byte[] sampleBytes(long seed, int length){
+		Random random = new Random(seed);
+		byte[] bytes = new byte[length];
+		for(int i = 0; i < length; i++){
+			bytes[i] = (byte) (random.nextInt(8) == 0 ? random.nextInt(256) : random.nextInt(16));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Method to get the text a text format decodes a file to
+	 * @param text - the text of the file
+	 * @return the text with line terminators turned into "\r" and the last one dropped
+	 */
+	static String decodedText(String text){
+		String lines = text.replaceAll("\r\n|\r|\n", "\r");
+		return lines.endsWith("\r") ? lines.substring(0, lines.length() - 1) : lines;
+	}
+
+	/**
+	 * Method to encode a file the way Encode would
+	 * @param arguments - the encoding arguments separated by spaces, may be empty
+	 * @param source - the file to encode
+	 * @param target - the encoded file
+	 * @throws IOException if a file can not be read or written
+	 */
+	static void encode(String arguments, Path source, Path target) throws IOException{
+		Batch batch = new Batch();
+		String[] args = arguments.isEmpty() ? new String[0] : arguments.split(" ");
+		for(int i = 0; i < args.length; i++){
+			int last = batch.parseArgument(args, i);
+			assertTrue(last >= 0, "Unknown argument " + args[i]);
+			i = last;
+		}
+		batch.transcode(source.toString(), target.toString());
+	}
+
+	/**
+	 * Method to decode a file in whatever format it was encoded in
+	 * @param tableDirectory - the directory of static tables, or null for the default
+	 * @param source - the encoded file
+	 * @param target - the decoded file
+	 * @throws IOException if a file can not be read or written, or the encoded file is corrupt
+	 */
+	static void decode(Path tableDirectory, Path source, Path target) throws IOException{
+		Batch batch = new Batch();
+		batch.parseArgument(new String[] {"-x"}, 0);
+		if(tableDirectory != null){
+			batch.parseArgument(new String[] {"-d", tableDirectory.toString()}, 0);
+		}
+		batch.transcode(source.toString(), target.toString());
+	}
+
+	/**
+	 * Method to encode a text file and decode it again
+	 * @param arguments - the encoding arguments
+	 * @param text - the text of the file
+	 * @return the decoded text
+	 * @throws IOException if a file can not be read or written
+	 */
+	protected String roundTrip(String arguments, String text) throws IOException{
+		Path source = dir.resolve("source.txt");
+		Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+		encode(arguments, source, dir.resolve("encoded"));
+		decode(null, dir.resolve("encoded"), dir.resolve("decoded.txt"));
+		return new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Method to encode a file and decode it again
+	 * @param arguments - the encoding arguments
+	 * @param contents - the contents of the file
+	 * @return the decoded file
+	 * @throws IOException if a file can not be read or written
+	 */
+	protected byte[] roundTrip(String arguments, byte[] contents) throws IOException{
+		encoded(arguments, contents);
+		decode(null, dir.resolve("encoded"), dir.resolve("decoded"));
+		return Files.readAllBytes(dir.resolve("decoded"));
+	}
+
+	/**
+	 * Method to encode a file and return the encoded bytes
+	 * @param arguments - the encoding arguments
+	 * @param contents - the contents of the file
+	 * @return the encoded file
+	 * @throws IOException if a file can not be read or written
+	 */
+	protected byte[] encoded(String arguments, byte[] contents) throws IOException{
+		Path source = dir.resolve("source");
+		Files.write(source, contents);
+		encode(arguments, source, dir.resolve("encoded"));
+		return Files.readAllBytes(dir.resolve("encoded"));
+	}
+
+	/**
+	 * Method to decode bytes that may be corrupt, which must either decode or fail with an IOException,
+	 * never with another exception and never by running on
+	 * @param bytes - the encoded file
+	 * @return the decoded file, or null if decoding failed with an IOException
+	 */
+	protected byte[] decodeDamaged(byte[] bytes){
+		final Path damaged = dir.resolve("damaged");
+		final Path decoded = dir.resolve("damaged.out");
+		return assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+			Files.write(damaged, bytes);
+			try {
+				decode(null, damaged, decoded);
+			} catch (IOException e) {
+				return null;
+			} catch (RuntimeException e) {
+				fail("Corrupt input must fail with an IOException", e);
+			}
+			return Files.readAllBytes(decoded);
+		});
+	}
+
+	/**
+	 * Method to check that decoding a file cut short fails with an IOException
+	 * @param bytes - the encoded file
+	 * @throws IOException if a file can not be written
+	 */
+	protected void assertTruncationRejected(byte[] bytes) throws IOException{
+		for(int cut : new int[] {3, 11, bytes.length / 3, bytes.length / 2}){
+			Files.write(dir.resolve("truncated"), Arrays.copyOf(bytes, cut));
+			assertThrows(IOException.class, () -> decode(null, dir.resolve("truncated"), dir.resolve("decoded")),
+					"Cut to " + cut + " bytes");
+		}
+	}
+
+	/**
+	 * Method to flip single bits of a file, more often in its headers than in its codes as headers
+	 * are where decoders trust sizes, and check that decoding never fails other than with an IOException
+	 * @param bytes - the encoded file
+	 * @param seed - the seed of the random bits
+	 */
+	protected void assertDamageFailsCleanly(byte[] bytes, long seed){
+		Random random = new Random(seed);
+		for(int i = 0; i < 60; i++){
+			byte[] damaged = bytes.clone();
+			int position = i % 2 == 0 ? random.nextInt(Math.min(64, bytes.length)) : random.nextInt(bytes.length);
+			damaged[position] ^= 1 << random.nextInt(8);
+			decodeDamaged(damaged);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for the interleaved format, Encode -i, which writes several bitstreams decoded in step.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class InterleavedTest extends FileFormatTestBase {
+	@Test
+	public void textRoundTrip() throws IOException{
+		String text = sampleText(1, 200000);
+		assertEquals(decodedText(text), roundTrip("-i", text));
+	}
+
+	@Test
+	public void limitedTextRoundTrip() throws IOException{
+		String text = sampleText(2, 100000);
+		assertEquals(decodedText(text), roundTrip("-i -l 9", text));
+	}
+
+	@Test
+	public void asciiTextRoundTrip() throws IOException{
+		String text = "Only ASCII here.\nSecond line\n";
+		assertEquals(decodedText(text), roundTrip("-i", text));
+	}
+
+	@Test
+	public void singleCharacterRoundTrip() throws IOException{
+		assertEquals("aaaaaaaaaa", roundTrip("-i", "aaaaaaaaaa"));
+	}
+
+	@Test
+	public void shortTextRoundTrip() throws IOException{
+		for(String text : new String[] {"", "a", "ab", "abc\nd"}){
+			assertEquals(decodedText(text), roundTrip("-i", text), text);
+		}
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		assertTruncationRejected(encoded("-i", sampleText(5, 50000).getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("-i", sampleText(7, 20000).getBytes(StandardCharsets.UTF_8)), 5);
+	}
+}
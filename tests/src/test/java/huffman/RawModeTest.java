@@ -0,0 +1,51 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Round trip and corrupt input tests for files encoded byte by byte with Encode -raw.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class RawModeTest extends FileFormatTestBase {
+	@ParameterizedTest
+	@ValueSource(strings = {"-raw", "-raw -b 1000", "-raw -l 5"})
+	public void binaryRoundTrip(String arguments) throws IOException{
+		byte[] bytes = sampleBytes(2, 300000);
+		assertArrayEquals(bytes, roundTrip(arguments, bytes));
+	}
+
+	@Test
+	public void everyByteValueRoundTrip() throws IOException{
+		byte[] bytes = new byte[512];
+		for(int i = 0; i < bytes.length; i++){
+			bytes[i] = (byte) i;
+		}
+		assertArrayEquals(bytes, roundTrip("-raw", bytes));
+	}
+
+	@Test
+	public void emptyFileRoundTrip() throws IOException{
+		assertArrayEquals(new byte[0], roundTrip("-raw", new byte[0]));
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		assertTruncationRejected(encoded("-raw", sampleBytes(5, 50000)));
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("-raw", sampleBytes(7, 20000)), 3);
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for encoding records in memory with Encoder and Decoder.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class RecordCodecTest {
+
+	/**
+	 * Method to make records of every kind the encoder handles differently
+	 * @return empty, single byte, single symbol, skewed, every byte value and random records
+	 */
+	static byte[][] records(){
+		byte[] allBytes = new byte[256];
+		for(int i = 0; i < allBytes.length; i++){
+			allBytes[i] = (byte) i;
+		}
+		byte[] random = new byte[1000];
+		new Random(1).nextBytes(random);
+		byte[] same = new byte[500];
+		Arrays.fill(same, (byte) 'x');
+		return new byte[][] {new byte[0], {42}, same, FileFormatTestBase.sampleBytes(2, 5000),
+				FileFormatTestBase.sampleBytes(3, 70), allBytes, random};
+	}
+
+	@Test
+	public void arrayRoundTrip() throws IOException{
+		//One encoder and decoder for every record, as they are meant to be reused
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		for(byte[] record : records()){
+			byte[] encoded = encoder.encode(record);
+			assertTrue(encoded.length <= Encoder.maxEncodedLength(record.length));
+			assertEquals(record.length, Decoder.decodedLength(encoded, 0));
+			assertArrayEquals(record, decoder.decode(encoded));
+		}
+	}
+
+	@Test
+	public void offsetRoundTrip() throws IOException{
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		for(byte[] record : records()){
+			byte[] src = new byte[record.length + 7];
+			System.arraycopy(record, 0, src, 3, record.length);
+			byte[] encoded = new byte[Encoder.maxEncodedLength(record.length) + 5];
+			int n = encoder.encode(src, 3, record.length, encoded, 5);
+			byte[] decoded = new byte[record.length + 2];
+			assertEquals(record.length, decoder.decode(encoded, 5, n, decoded, 2));
+			assertArrayEquals(record, Arrays.copyOfRange(decoded, 2, decoded.length));
+		}
+	}
+
+	@Test
+	public void bufferRoundTrip() throws IOException{
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		for(byte[] record : records()){
+			for(boolean direct : new boolean[] {false, true}){
+				ByteBuffer src = direct ? ByteBuffer.allocateDirect(record.length) : ByteBuffer.allocate(record.length);
+				src.put(record).flip();
+				int room = Encoder.maxEncodedLength(record.length);
+				ByteBuffer encoded = direct ? ByteBuffer.allocateDirect(room) : ByteBuffer.allocate(room);
+				int n = encoder.encode(src, encoded);
+				assertEquals(n, encoded.position());
+				assertEquals(record.length, src.position());
+				encoded.flip();
+				ByteBuffer decoded = direct ? ByteBuffer.allocateDirect(record.length) : ByteBuffer.allocate(record.length);
+				assertEquals(record.length, decoder.decode(encoded, decoded));
+				assertEquals(n, encoded.position());
+				byte[] bytes = new byte[record.length];
+				decoded.flip();
+				decoded.get(bytes);
+				assertArrayEquals(record, bytes);
+			}
+		}
+	}
+
+	@Test
+	public void truncatedRecordsAreRejected() throws IOException{
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		for(byte[] record : records()){
+			byte[] encoded = encoder.encode(record);
+			for(int cut = 0; cut < encoded.length; cut += Math.max(1, encoded.length / 20)){
+				byte[] truncated = Arrays.copyOf(encoded, cut);
+				byte[] dst = new byte[record.length];
+				assertThrows(IOException.class, () -> decoder.decode(truncated, 0, truncated.length, dst, 0),
+						"Record of " + record.length + " bytes cut to " + cut + " bytes");
+			}
+		}
+	}
+
+	@Test
+	public void damagedRecordsFailCleanly() throws IOException{
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		Random random = new Random(4);
+		for(byte[] record : records()){
+			byte[] encoded = encoder.encode(record);
+			byte[] dst = new byte[record.length + 64];
+			for(int i = 0; i < 200 && encoded.length > 0; i++){
+				byte[] damaged = encoded.clone();
+				damaged[random.nextInt(damaged.length)] ^= 1 << random.nextInt(8);
+				try {
+					decoder.decode(damaged, 0, damaged.length, dst, 0);
+				} catch (IOException e) {
+					//Expected for most damage
+				} catch (IllegalArgumentException e) {
+					//A damaged length can ask for more room than dst has
+				} catch (RuntimeException e) {
+					fail("Corrupt record must fail with an IOException", e);
+				}
+			}
+			//The decoder is still good for the next record
+			assertArrayEquals(record, decoder.decode(encoded));
+		}
+	}
+
+	/**
+	 * Method to change the length an encoded record claims
+	 * @param encoded - the encoded record
+	 * @param length - the length to claim
+	 * @return a copy of the record with the new length
+	 */
+	private static byte[] withLength(byte[] encoded, int length){
+		int start = 0;
+		while((encoded[start] & 0x80) != 0){
+			start++;
+		}
+		start++;
+		byte[] header = new byte[5];
+		int n = 0;
+		while(length >= 0x80){
+			header[n++] = (byte) (length | 0x80);
+			length >>>= 7;
+		}
+		header[n++] = (byte) length;
+		byte[] changed = Arrays.copyOf(header, n + encoded.length - start);
+		System.arraycopy(encoded, start, changed, n, encoded.length - start);
+		return changed;
+	}
+
+	@Test
+	public void lengthsBeyondThePayloadAreRejected() throws IOException{
+		Encoder encoder = new Encoder();
+		Decoder decoder = new Decoder();
+		byte[] dst = new byte[1 << 20];
+		//Stored, coded and single byte records, each claiming more than it can hold or than the decoder accepts
+		byte[] same = new byte[500];
+		Arrays.fill(same, (byte) 'x');
+		byte[][] records = {FileFormatTestBase.sampleBytes(4, 5000), new byte[] {1, 2, 3}, same};
+		for(byte[] record : records){
+			byte[] encoded = encoder.encode(record);
+			int[] lengths = record == same ? new int[] {Decoder.DEFAULT_MAX_RECORD_LENGTH + 1, Integer.MAX_VALUE}
+					: new int[] {8 * encoded.length, 1 << 20, Decoder.DEFAULT_MAX_RECORD_LENGTH + 1, Integer.MAX_VALUE};
+			for(int length : lengths){
+				final byte[] damaged = withLength(encoded, length);
+				assertThrows(IOException.class, () -> decoder.decode(damaged), "Length " + length);
+				assertThrows(IOException.class, () -> decoder.decode(damaged, 0, damaged.length, dst, 0), "Length " + length);
+			}
+			assertArrayEquals(record, decoder.decode(encoded));
+		}
+		//A caller can accept longer records of a single byte, or only shorter records
+		assertEquals(1 << 20, new Decoder(1 << 20).decode(withLength(encoder.encode(same), 1 << 20)).length);
+		final byte[] encoded = encoder.encode(same);
+		assertThrows(IOException.class, () -> new Decoder(499).decode(encoded));
+		assertThrows(IOException.class, () -> new Decoder(499).decode(encoded, 0, encoded.length, dst, 0));
+	}
+
+	@Test
+	public void tooSmallDestinationIsRejected() throws IOException{
+		byte[] record = FileFormatTestBase.sampleBytes(5, 100);
+		byte[] encoded = new Encoder().encode(record);
+		assertThrows(IllegalArgumentException.class, () -> new Decoder().decode(encoded, 0, encoded.length, new byte[99], 0));
+	}
+}
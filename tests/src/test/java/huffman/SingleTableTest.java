@@ -0,0 +1,89 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for the original single table format, which HuffmanTree
+ * decodes with the table-driven decoder.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class SingleTableTest extends FileFormatTestBase {
+	@Test
+	public void textRoundTrip() throws IOException{
+		String text = sampleText(1, 200000);
+		assertEquals(decodedText(text), roundTrip("", text));
+	}
+
+	@Test
+	public void asciiTextRoundTrip() throws IOException{
+		String text = "Only ASCII here, so the original header is written.\nSecond line\n";
+		assertEquals(decodedText(text), roundTrip("", text));
+	}
+
+	@Test
+	public void singleCharacterRoundTrip() throws IOException{
+		assertEquals("aaaaaaaaaa", roundTrip("", "aaaaaaaaaa"));
+	}
+
+	@Test
+	public void multiSymbolDecode() throws IOException{
+		for(String text : new String[] {sampleText(2, 100000), "aaaaaaaaaa", "ab\nba"}){
+			Path source = dir.resolve("source.txt");
+			Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+			encode("", source, dir.resolve("encoded"));
+			HuffmanTree tree = new HuffmanTree();
+			tree.setMultiSymbol(true);
+			tree.decodeFile(dir.resolve("encoded").toString(), dir.resolve("decoded.txt").toString());
+			assertEquals(decodedText(text), new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void truncatedFileIsNotDecodedWhole() throws IOException{
+		String text = sampleText(6, 50000);
+		byte[] bytes = encoded("", text.getBytes(StandardCharsets.UTF_8));
+		//The single table format has no length, so it decodes up to where the file ends
+		byte[] decoded = decodeDamaged(Arrays.copyOf(bytes, bytes.length / 2));
+		if(decoded != null){
+			assertNotEquals(decodedText(text), new String(decoded, StandardCharsets.UTF_8));
+		}
+		assertThrows(IOException.class, () -> {
+			Files.write(dir.resolve("truncated"), Arrays.copyOf(bytes, 2));
+			decode(null, dir.resolve("truncated"), dir.resolve("decoded"));
+		});
+	}
+
+	@Test
+	public void damagedFilesFailCleanly() throws IOException{
+		assertDamageFailsCleanly(encoded("", sampleText(7, 20000).getBytes(StandardCharsets.UTF_8)), 1);
+	}
+
+	@Test
+	public void headersWithDuplicateSymbolsAreRejected() throws IOException{
+		byte[] bytes = encoded("", "abababababcc".getBytes(StandardCharsets.UTF_8));
+		//The original header lists each character once: count, then character and code length pairs
+		int characters = bytes[0];
+		assertTrue(characters >= 3);
+		byte[] damaged = bytes.clone();
+		damaged[3] = damaged[1];
+		damaged[4] = damaged[2];
+		Files.write(dir.resolve("damaged"), damaged);
+		assertThrows(IOException.class, () -> decode(null, dir.resolve("damaged"), dir.resolve("decoded")));
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip and corrupt input tests for files encoded with a pre-trained table, Encode -t.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class StaticTableTest extends FileFormatTestBase {
+	private Path tables;
+
+	@BeforeEach
+	public void createTableDirectory() throws IOException{
+		tables = Files.createDirectory(dir.resolve("tables"));
+	}
+
+	/**
+	 * Method to train a table on a sample and save it in the table directory
+	 * @param id - the id of the table
+	 * @param sample - the contents of the sample file
+	 * @param binary - true to train a table of bytes, false for characters
+	 * @throws IOException if a file can not be read or written
+	 */
+	private void train(String id, byte[] sample, boolean binary) throws IOException{
+		Path file = dir.resolve("sample-" + id);
+		Files.write(file, sample);
+		StaticTable.train(id, Collections.singletonList(file.toString()), binary, CodeLengths.DEFAULT_MAX_LENGTH)
+				.save(tables.toString());
+	}
+
+	@Test
+	public void textRoundTrip() throws IOException{
+		train("text", sampleText(3, 50000).getBytes(StandardCharsets.UTF_8), false);
+		String text = sampleText(4, 20000);
+		Path source = dir.resolve("source.txt");
+		Files.write(source, text.getBytes(StandardCharsets.UTF_8));
+		encode("-t text -d " + tables, source, dir.resolve("encoded"));
+		assertTrue(StaticTable.isStaticFile(dir.resolve("encoded").toString()));
+		assertEquals("text", StaticTable.readTableId(dir.resolve("encoded").toString()));
+		decode(tables, dir.resolve("encoded"), dir.resolve("decoded.txt"));
+		assertEquals(decodedText(text), new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void binaryRoundTrip() throws IOException{
+		train("bytes", sampleBytes(3, 50000), true);
+		byte[] bytes = sampleBytes(4, 20000);
+		Path source = dir.resolve("source");
+		Files.write(source, bytes);
+		encode("-raw -t bytes -d " + tables, source, dir.resolve("encoded"));
+		decode(tables, dir.resolve("encoded"), dir.resolve("decoded"));
+		assertArrayEquals(bytes, Files.readAllBytes(dir.resolve("decoded")));
+	}
+
+	@Test
+	public void missingCharacterIsRejected() throws IOException{
+		train("abc", "abc".getBytes(StandardCharsets.UTF_8), false);
+		//Every byte value is in the table, so only characters above 255 must come from the samples
+		Path source = dir.resolve("source.txt");
+		Files.write(source, "abcd".getBytes(StandardCharsets.UTF_8));
+		encode("-t abc -d " + tables, source, dir.resolve("encoded"));
+		decode(tables, dir.resolve("encoded"), dir.resolve("decoded.txt"));
+		assertEquals("abcd", new String(Files.readAllBytes(dir.resolve("decoded.txt")), StandardCharsets.UTF_8));
+		Files.write(source, "abc中".getBytes(StandardCharsets.UTF_8));
+		assertThrows(IOException.class, () -> encode("-t abc -d " + tables, source, dir.resolve("encoded")));
+	}
+
+	@Test
+	public void otherTablesAreRejected() throws IOException{
+		train("text", sampleText(3, 50000).getBytes(StandardCharsets.UTF_8), false);
+		Path source = dir.resolve("source.txt");
+		Files.write(source, sampleText(4, 20000).getBytes(StandardCharsets.UTF_8));
+		encode("-t text -d " + tables, source, dir.resolve("encoded"));
+		//A table trained again under the same id gives other codes, which its checksum tells apart
+		train("text", "just a few letters".getBytes(StandardCharsets.UTF_8), false);
+		assertThrows(IOException.class, () -> decode(tables, dir.resolve("encoded"), dir.resolve("decoded.txt")));
+		Files.delete(StaticTable.tableFile(tables.toString(), "text").toPath());
+		assertThrows(IOException.class, () -> decode(tables, dir.resolve("encoded"), dir.resolve("decoded.txt")));
+	}
+
+	@Test
+	public void truncatedFilesAreRejected() throws IOException{
+		train("text", sampleText(3, 50000).getBytes(StandardCharsets.UTF_8), false);
+		Path source = dir.resolve("source.txt");
+		Files.write(source, sampleText(5, 50000).getBytes(StandardCharsets.UTF_8));
+		encode("-t text -d " + tables, source, dir.resolve("encoded"));
+		byte[] bytes = Files.readAllBytes(dir.resolve("encoded"));
+		for(int cut : new int[] {3, 11, bytes.length / 3, bytes.length / 2}){
+			Files.write(dir.resolve("truncated"), Arrays.copyOf(bytes, cut));
+			assertThrows(IOException.class, () -> decode(tables, dir.resolve("truncated"), dir.resolve("decoded")),
+					"Cut to " + cut + " bytes");
+		}
+	}
+}
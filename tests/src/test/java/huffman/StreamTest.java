@@ -0,0 +1,221 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Round trip and corrupt input tests for HuffmanOutputStream and HuffmanInputStream,
+ * and for reading their output through the block index with BlockReader.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class StreamTest extends FileFormatTestBase {
+	private static final int BLOCK_SIZE = 4096;
+
+	/**
+	 * Method to write bytes to a Huffman output stream in pieces of varying size, flushing now and then
+	 * @param bytes - the bytes to write
+	 * @param indexed - true to write the block index
+	 * @return the encoded stream
+	 * @throws IOException if the stream can not be written
+	 */
+	static byte[] encode(byte[] bytes, boolean indexed) throws IOException{
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		HuffmanOutputStream out = new HuffmanOutputStream(encoded, BLOCK_SIZE, indexed);
+		Random random = new Random(bytes.length);
+		int position = 0;
+		while(position < bytes.length){
+			int n = Math.min(bytes.length - position, random.nextInt(3 * BLOCK_SIZE));
+			if(n == 1){
+				out.write(bytes[position]);
+			}else{
+				out.write(bytes, position, n);
+			}
+			position += n;
+			if(random.nextInt(4) == 0){
+				out.flush();
+			}
+		}
+		out.close();
+		return encoded.toByteArray();
+	}
+
+	/**
+	 * Method to read a whole Huffman input stream, one byte at a time and in pieces of varying size
+	 * @param encoded - the encoded stream
+	 * @return the decoded bytes
+	 * @throws IOException if the stream is corrupt
+	 */
+	static byte[] decode(byte[] encoded) throws IOException{
+		InputStream in = new HuffmanInputStream(new ByteArrayInputStream(encoded));
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		byte[] buffer = new byte[777];
+		Random random = new Random(encoded.length);
+		while(true){
+			if(random.nextBoolean()){
+				int b = in.read();
+				if(b < 0){
+					break;
+				}
+				decoded.write(b);
+			}else{
+				int n = in.read(buffer, 0, 1 + random.nextInt(buffer.length));
+				if(n < 0){
+					break;
+				}
+				decoded.write(buffer, 0, n);
+			}
+		}
+		in.close();
+		return decoded.toByteArray();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void streamRoundTrip(boolean indexed) throws IOException{
+		byte[] bytes = sampleBytes(1, 100000);
+		assertArrayEquals(bytes, decode(encode(bytes, indexed)));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void emptyStreamRoundTrip(boolean indexed) throws IOException{
+		assertArrayEquals(new byte[0], decode(encode(new byte[0], indexed)));
+	}
+
+	@Test
+	public void flushedBytesCanBeDecodedStraightAway() throws IOException{
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		HuffmanOutputStream out = new HuffmanOutputStream(encoded);
+		out.write("hello".getBytes("UTF-8"));
+		out.flush();
+		InputStream in = new HuffmanInputStream(new ByteArrayInputStream(encoded.toByteArray()));
+		byte[] hello = new byte[5];
+		for(int i = 0; i < hello.length; i++){
+			hello[i] = (byte) in.read();
+		}
+		assertEquals("hello", new String(hello, "UTF-8"));
+		out.close();
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void blockReaderDecodesStreams(boolean indexed) throws IOException{
+		byte[] bytes = sampleBytes(2, 100000);
+		Path file = dir.resolve("stream");
+		Files.write(file, encode(bytes, indexed));
+		BlockReader reader = new BlockReader(file.toString());
+
+		reader.decode(dir.resolve("whole").toString());
+		assertArrayEquals(bytes, Files.readAllBytes(dir.resolve("whole")));
+		reader.decode(dir.resolve("parallel").toString(), 3);
+		assertArrayEquals(bytes, Files.readAllBytes(dir.resolve("parallel")));
+
+		ArrayList<Block> index = reader.readIndex();
+		long symbols = 0;
+		for(Block b : index){
+			assertEquals(symbols, b.getFirstSymbol());
+			symbols += b.getSymbolCount();
+		}
+		assertEquals(bytes.length, symbols);
+	}
+
+	@Test
+	public void indexIsRebuiltTheSameWay() throws IOException{
+		byte[] bytes = sampleBytes(3, 50000);
+		Files.write(dir.resolve("indexed"), encode(bytes, true));
+		Files.write(dir.resolve("unindexed"), encode(bytes, false));
+		ArrayList<Block> indexed = new BlockReader(dir.resolve("indexed").toString()).readIndex();
+		ArrayList<Block> rebuilt = new BlockReader(dir.resolve("unindexed").toString()).readIndex();
+		assertEquals(indexed.size(), rebuilt.size());
+		for(int i = 0; i < indexed.size(); i++){
+			assertEquals(indexed.get(i).getOffset(), rebuilt.get(i).getOffset());
+			assertEquals(indexed.get(i).getPayloadSize(), rebuilt.get(i).getPayloadSize());
+			assertEquals(indexed.get(i).getSymbolCount(), rebuilt.get(i).getSymbolCount());
+		}
+	}
+
+	@Test
+	public void textBlockFilesAreRejected() throws IOException{
+		Path source = dir.resolve("source.txt");
+		Files.write(source, "some text".getBytes("UTF-8"));
+		encode("-b 16", source, dir.resolve("blocks"));
+		byte[] encoded = Files.readAllBytes(dir.resolve("blocks"));
+		assertThrows(IOException.class, () -> decode(encoded));
+	}
+
+	@Test
+	public void headerBlockSizesAreChecked() throws IOException{
+		byte[] encoded = encode(sampleBytes(6, 10000), false);
+		//The block size follows the magic number, version and flags
+		for(int blockSize : new int[] {BlockFormat.MAX_BLOCK_SIZE + 1, Integer.MAX_VALUE, 0, -5}){
+			final byte[] damaged = encoded.clone();
+			ByteBuffer.wrap(damaged).putInt(BlockFormat.MAGIC.length + 2, blockSize);
+			assertThrows(IOException.class, () -> decode(damaged), "Block size " + blockSize);
+			Files.write(dir.resolve("damaged"), damaged);
+			assertThrows(IOException.class, () -> new BlockReader(dir.resolve("damaged").toString()).readIndex(),
+					"Block size " + blockSize);
+		}
+		//The largest block size is still accepted
+		final byte[] huge = encoded.clone();
+		ByteBuffer.wrap(huge).putInt(BlockFormat.MAGIC.length + 2, BlockFormat.MAX_BLOCK_SIZE);
+		assertArrayEquals(sampleBytes(6, 10000), decode(huge));
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void truncatedStreamsAreRejected(boolean indexed) throws IOException{
+		byte[] encoded = encode(sampleBytes(4, 30000), indexed);
+		for(int cut : new int[] {0, 3, 9, 13, encoded.length / 2}){
+			byte[] truncated = Arrays.copyOf(encoded, cut);
+			assertThrows(IOException.class, () -> decode(truncated), "Cut to " + cut + " bytes");
+			Files.write(dir.resolve("truncated"), truncated);
+			assertThrows(IOException.class, () -> new BlockReader(dir.resolve("truncated").toString()).readIndex(),
+					"Cut to " + cut + " bytes");
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	public void damagedStreamsFailCleanly(boolean indexed) throws IOException{
+		byte[] encoded = encode(sampleBytes(5, 30000), indexed);
+		Random random = new Random(6);
+		for(int i = 0; i < 100; i++){
+			byte[] damaged = encoded.clone();
+			int position = i % 2 == 0 ? random.nextInt(32) : random.nextInt(encoded.length);
+			damaged[position] ^= 1 << random.nextInt(8);
+			assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+				try {
+					decode(damaged);
+				} catch (IOException e) {
+					//Expected for most damage
+				} catch (RuntimeException e) {
+					fail("Corrupt input must fail with an IOException", e);
+				}
+			});
+		}
+	}
+}
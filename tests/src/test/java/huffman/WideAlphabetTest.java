@@ -0,0 +1,51 @@
+/**
+ * 
+ */
+package huffman;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Round trip and corrupt input tests for text with characters above 255, CJK and supplementary
+ * characters among them, in every text format.
+ *
+ * @author Christopher Barnett
+ *
+ */
+public class WideAlphabetTest extends FileFormatTestBase {
+	@ParameterizedTest
+	@ValueSource(strings = {"", "-i", "-ctx", "-b 4096", "-crc", "-l 9", "-i -l 9"})
+	public void textRoundTrip(String arguments) throws IOException{
+		String text = wideText(1, 200000);
+		assertEquals(decodedText(text), roundTrip(arguments, text));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "-i", "-ctx", "-b 4096"})
+	public void singleWideCharacterRoundTrip(String arguments) throws IOException{
+		assertEquals("😀😀😀😀", roundTrip(arguments, "😀😀😀😀"));
+	}
+
+	@Test
+	public void manyDistinctCharactersRoundTrip() throws IOException{
+		StringBuilder text = new StringBuilder();
+		for(int c = 0x4E00; c < 0x4E00 + 5000; c++){
+			text.append((char) c).append((char) (0x4E00 + (c * 7) % 300));
+		}
+		text.appendCodePoint(0x10FFFF);
+		assertEquals(text.toString(), roundTrip("", text.toString()));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"", "-i", "-ctx", "-b 4096"})
+	public void damagedFilesFailCleanly(String arguments) throws IOException{
+		assertDamageFailsCleanly(encoded(arguments, wideText(7, 20000).getBytes(StandardCharsets.UTF_8)), arguments.hashCode());
+	}
+}